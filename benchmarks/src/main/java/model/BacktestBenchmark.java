@@ -0,0 +1,58 @@
+package model;
+
+import data.PriceSnapshot;
+import finance.Portfolio;
+import model.trade_policy.InferenceTradePolicy;
+import model.trade_policy.SingleStockPolicy;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Backtest steps per second of TimeGraphAlgorithm over the test split. Every invocation
+ * replays STEPS steps with a fresh Portfolio, so running it with -t > 1 also exercises
+ * independent portfolio/policy pairs sharing one dataset.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BacktestBenchmark {
+    static final int STEPS = 1000;
+
+    @Param({"25", "100", "500"})
+    public int numSymbols;
+    @Param({"3", "6"})
+    public int numLayers;
+
+    private TimeGraphDataset dataset;
+    private TimeGraphAlgorithm algorithm;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        // the test split is the last quarter of the rows after the history layers
+        File csv = SyntheticPrices.writeCsv(numSymbols, 4*STEPS+numLayers, 42L);
+        dataset = new TimeGraphDataset(PriceSnapshot.read(csv), numLayers);
+        algorithm = new TimeGraphAlgorithm(dataset.getTestAssignments());
+        csv.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public double inferencePolicy() {
+        Portfolio portfolio = new Portfolio(dataset.getTestStockPrices(), 10000d, 5d);
+        OnlineTimeGraphModel onlineModel = new OnlineTimeGraphModel(dataset.getClosedForm(), 2d, 7);
+        return portfolio.determineTrades(algorithm, new InferenceTradePolicy(portfolio, onlineModel, 1d, 1d));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public double buyAndHold() {
+        Portfolio portfolio = new Portfolio(dataset.getTestStockPrices(), 10000d, 5d);
+        return portfolio.determineTrades(algorithm, new SingleStockPolicy(dataset.getLayout().getCompanies().get(0), portfolio));
+    }
+}
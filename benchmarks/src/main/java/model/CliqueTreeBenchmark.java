@@ -0,0 +1,88 @@
+package model;
+
+import data.PriceSnapshot;
+import model.graphs.CliqueTree;
+import model.nodes.FactorNode;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Per step inference latency: rebuilding the GraphicalModeling clique tree every step
+ * against the ClosedFormMarginals fed by OnlineTimeGraphModel, over the dense network
+ * and one pruned to 8 learned cross parents per future node. rebuildCliqueTree needs the
+ * real GraphicalModeling jar in lib/; closedForm runs without it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CliqueTreeBenchmark {
+    @Param({"25", "100", "500"})
+    public int numSymbols;
+    @Param({"3"})
+    public int numLayers;
+    @Param({"200", "1000"})
+    public int numRows;
+    // -1 keeps every cross edge
+    @Param({"-1", "8"})
+    public int maxCrossParents;
+
+    private TimeGraphDataset dataset;
+    private AssignmentSeries steps;
+    private OnlineTimeGraphModel onlineModel;
+    private double[] marginals;
+    private Assignment assignment;
+    private int step;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        File csv = SyntheticPrices.writeCsv(numSymbols, numRows, 42L);
+        dataset = new TimeGraphDataset(PriceSnapshot.read(csv), numLayers, maxCrossParents);
+        steps = dataset.getTestAssignments();
+        onlineModel = new OnlineTimeGraphModel(dataset.getClosedForm(), 2d, 7);
+        marginals = new double[numSymbols];
+        assignment = new Assignment(steps.getLayout());
+        csv.delete();
+    }
+
+    // the GraphicalModeling network, only built by the benchmark that needs it
+    @State(Scope.Benchmark)
+    public static class Network {
+        private TimeGraph timeGraph;
+        private List<String> futureLabels;
+
+        @Setup(Level.Trial)
+        public void setup(CliqueTreeBenchmark benchmark) {
+            timeGraph = new TimeGraph(benchmark.dataset, 2d);
+            futureLabels = timeGraph.getNetwork().getAllNodesList().stream().map(n->n.getLabel()).filter(label->label.endsWith("_future")).collect(Collectors.toList());
+        }
+    }
+
+    private Assignment nextStep() {
+        step = (step+1)%steps.size();
+        return steps.get(step, assignment);
+    }
+
+    @Benchmark
+    public Map<String,FactorNode> rebuildCliqueTree(Network network) {
+        Assignment assignment = nextStep();
+        CliqueTree cliqueTree = network.timeGraph.getNetwork().createCliqueTree();
+        cliqueTree.setCurrentAssignment(assignment.toEvidenceMap());
+        return cliqueTree.runBeliefPropagation(network.futureLabels);
+    }
+
+    @Benchmark
+    public double[] closedForm() {
+        Assignment assignment = nextStep();
+        onlineModel.observe(assignment);
+        return onlineModel.futureMarginals(assignment, marginals);
+    }
+}
@@ -0,0 +1,115 @@
+package model;
+
+import data.CsvPriceReader;
+import data.PriceMatrix;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Readline + split + getPricesFromRow/createAssignment against the streaming CsvPriceReader.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CsvIngestBenchmark {
+    @Param({"25", "500"})
+    public int numSymbols;
+    @Param({"1000", "20000"})
+    public int numRows;
+    @Param({"4"})
+    public int numLayers;
+
+    private File csv;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        csv = SyntheticPrices.writeCsv(numSymbols, numRows, 42L);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        csv.delete();
+    }
+
+    @Benchmark
+    public void legacyReadLine(Blackhole blackhole) throws IOException {
+        try(BufferedReader reader = new BufferedReader(new FileReader(csv))) {
+            String[] headers = reader.readLine().split(",");
+            List<String> companies = new ArrayList<>();
+            for(int i = 1; i < headers.length; i++) {
+                companies.add(headers[i].split("_")[1]);
+            }
+            double[][] periodsAgo = new double[numLayers][];
+            for(int i = 0; i < numLayers; i++) {
+                periodsAgo[i] = TimeGraph.getPricesFromRow(reader.readLine());
+            }
+            String line = reader.readLine();
+            while(line != null) {
+                double[] pricesThisPeriod = TimeGraph.getPricesFromRow(line);
+                Map<String,Integer> assignment = TimeGraph.createAssignment(periodsAgo, pricesThisPeriod, companies);
+                blackhole.consume(assignment);
+                System.arraycopy(periodsAgo, 1, periodsAgo, 0, numLayers-1);
+                periodsAgo[numLayers-1] = pricesThisPeriod;
+                line = reader.readLine();
+            }
+        }
+    }
+
+    @Benchmark
+    public void legacyParseOnly(Blackhole blackhole) throws IOException {
+        try(BufferedReader reader = new BufferedReader(new FileReader(csv))) {
+            reader.readLine();
+            String line = reader.readLine();
+            while(line != null) {
+                blackhole.consume(TimeGraph.getPricesFromRow(line));
+                line = reader.readLine();
+            }
+        }
+    }
+
+    @Benchmark
+    public PriceMatrix streamingReader() throws IOException {
+        return CsvPriceReader.read(csv);
+    }
+
+    @Benchmark
+    public void streamingParseOnly(Blackhole blackhole) throws IOException {
+        try(CsvPriceReader reader = new CsvPriceReader(csv)) {
+            while(reader.next()) {
+                blackhole.consume(reader.getPrices());
+            }
+        }
+    }
+
+    // sanity check that both parsers agree to float precision
+    public static void main(String[] args) throws IOException {
+        File file = SyntheticPrices.writeCsv(10, 100, 7L);
+        PriceMatrix matrix = CsvPriceReader.read(file);
+        try(BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            reader.readLine();
+            for(int r = 0; r < matrix.size(); r++) {
+                double[] legacy = TimeGraph.getPricesFromRow(reader.readLine());
+                double[] streamed = matrix.row(r, new double[matrix.numSymbols()]);
+                for(int s = 0; s < legacy.length; s++) {
+                    if((float)streamed[s]!=(float)legacy[s]) {
+                        throw new IllegalStateException("Mismatch at row "+r+": "+Arrays.toString(legacy)+" vs "+Arrays.toString(streamed));
+                    }
+                }
+            }
+        }
+        System.out.println("Parsers agree on "+matrix.size()+" rows");
+    }
+}
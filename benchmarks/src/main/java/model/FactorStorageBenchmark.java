@@ -0,0 +1,65 @@
+package model;
+
+import data.PriceSnapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OnlineTimeGraphModel with its potentials on the heap against in an off-heap FactorArena:
+ * one learning step (observe), one exact inference (futureMarginals), and building a new
+ * model as a walk-forward fold or Monte Carlo path does. Run with -prof gc for the
+ * allocation rate and collector time of each.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FactorStorageBenchmark {
+    @Param({"100", "500"})
+    public int numSymbols;
+    @Param({"false", "true"})
+    public boolean offHeap;
+
+    private TimeGraphDataset dataset;
+    private OnlineTimeGraphModel model;
+    private Assignment[] steps;
+    private double[] marginals;
+    private int step;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        File csv = SyntheticPrices.writeCsv(numSymbols, 300, 42L);
+        dataset = new TimeGraphDataset(PriceSnapshot.read(csv), 4);
+        csv.delete();
+        AssignmentSeries all = dataset.getAllAssignments();
+        steps = new Assignment[all.size()];
+        for(int t = 0; t < steps.length; t++) steps[t] = all.get(t);
+        model = new OnlineTimeGraphModel(dataset.getClosedForm(), 2d, 50, offHeap);
+        for(int t = 0; t < 50; t++) model.observe(steps[t]);
+        marginals = new double[numSymbols];
+    }
+
+    @Benchmark
+    public OnlineTimeGraphModel observe() {
+        step = (step+1)%steps.length;
+        model.observe(steps[step]);
+        return model;
+    }
+
+    @Benchmark
+    public double[] infer() {
+        step = (step+1)%steps.length;
+        return model.futureMarginals(steps[step], marginals);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public OnlineTimeGraphModel build() {
+        return new OnlineTimeGraphModel(dataset.getClosedForm(), 2d, 50, offHeap);
+    }
+}
@@ -0,0 +1,111 @@
+package model;
+
+import data.PriceSnapshot;
+import model.inference.GibbsSampler;
+import model.inference.InferenceEngine;
+import model.inference.InferenceMethod;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accuracy vs latency of the inference engines over the test split of the sample data
+ * (synthetic prices of the same shape when sample_stock_output.csv is not in the working
+ * directory). The weights are learned once from the training split; each invocation infers
+ * the next test step, with hiddenFraction of its history nodes missing. The mean absolute
+ * error of a full pass over the test steps is printed at setup, against the closed form with
+ * full history and against a long Gibbs chain otherwise.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InferenceBenchmark {
+    @State(Scope.Benchmark)
+    public static class Data {
+        @Param({"sample_stock_output.csv"})
+        public String dataFile;
+        @Param({"3"})
+        public int numLayers;
+
+        TimeGraphDataset dataset;
+        OnlineTimeGraphModel model;
+        Assignment[] steps;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            File file = new File(dataFile);
+            if(!file.exists()) file = SyntheticPrices.writeCsv(24, 758, 42L);
+            dataset = new TimeGraphDataset(PriceSnapshot.read(file), numLayers);
+            AssignmentSeries training = dataset.getTrainingAssignments();
+            model = new OnlineTimeGraphModel(dataset.getClosedForm(), 2d, training.size());
+            for(int t = 0; t < training.size(); t++) model.observe(training.get(t));
+            AssignmentSeries test = dataset.getTestAssignments();
+            steps = new Assignment[test.size()];
+            for(int t = 0; t < steps.length; t++) steps[t] = test.get(t);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Engine {
+        @Param({"LOOPY_BP", "GIBBS"})
+        public InferenceMethod method;
+        @Param({"0", "0.1"})
+        public double hiddenFraction;
+
+        InferenceEngine engine;
+        Assignment[] observed;
+        double[] marginals;
+        int step;
+
+        @Setup(Level.Trial)
+        public void setup(Data data) {
+            TimeGraphLayout layout = data.dataset.getLayout();
+            SplittableRandom random = new SplittableRandom(7L);
+            observed = new Assignment[data.steps.length];
+            for(int t = 0; t < observed.length; t++) {
+                observed[t] = new Assignment(layout);
+                for(int node = 0; node < layout.numNodes(); node++) {
+                    if(!layout.isFuture(node)&&random.nextDouble()>=hiddenFraction) observed[t].set(node, 1);
+                }
+            }
+            marginals = new double[layout.numCompanies()];
+            engine = method.create(data.dataset.getClosedForm());
+            InferenceEngine reference = hiddenFraction==0 ? data.dataset.getClosedForm() : new GibbsSampler(data.dataset.getClosedForm().getFactors(), 1000, 5000, 1L);
+            double[] expected = new double[marginals.length];
+            double error = 0d;
+            for(int t = 0; t < observed.length; t++) {
+                data.model.futureMarginals(reference, data.steps[t], observed[t], expected);
+                data.model.futureMarginals(engine, data.steps[t], observed[t], marginals);
+                for(int d = 0; d < marginals.length; d++) error += Math.abs(marginals[d]-expected[d]);
+            }
+            System.out.println(method+" hiddenFraction="+hiddenFraction+" mean absolute error: "+error/(observed.length*marginals.length));
+        }
+    }
+
+    private double[] marginals;
+    private int step;
+
+    @Setup(Level.Trial)
+    public void setup(Data data) {
+        marginals = new double[data.dataset.getLayout().numCompanies()];
+    }
+
+    // the closed form, only defined with every history node observed
+    @Benchmark
+    public double[] exact(Data data) {
+        step = (step+1)%data.steps.length;
+        return data.model.futureMarginals(data.steps[step], marginals);
+    }
+
+    @Benchmark
+    public double[] approximate(Data data, Engine engine) {
+        engine.step = (engine.step+1)%data.steps.length;
+        return data.model.futureMarginals(engine.engine, data.steps[engine.step], engine.observed[engine.step], engine.marginals);
+    }
+}
@@ -0,0 +1,73 @@
+package model;
+
+import data.PriceSnapshot;
+import finance.Portfolio;
+import finance.Trade;
+import model.trade_policy.InferenceTradePolicy;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of one InferenceTradePolicy.getTrades call on the test split: the retrain path
+ * (applyLearningAlgorithm over the window, then createCliqueTree and runBeliefPropagation)
+ * against the incremental OnlineTimeGraphModel path. Each policy trades its own portfolio
+ * step after step, as in a backtest.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PolicyBenchmark {
+    @Param({"10", "25"})
+    public int numSymbols;
+    @Param({"3", "5"})
+    public int numLayers;
+    @Param({"400", "2000"})
+    public int numRows;
+
+    private TimeGraph timeGraph;
+    private AssignmentSeries steps;
+    private Assignment assignment;
+    private Portfolio retrainPortfolio;
+    private Portfolio incrementalPortfolio;
+    private InferenceTradePolicy retrainPolicy;
+    private InferenceTradePolicy incrementalPolicy;
+    private int step;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        File csv = SyntheticPrices.writeCsv(numSymbols, numRows, 42L);
+        timeGraph = new TimeGraph(PriceSnapshot.read(csv), numLayers, 2d);
+        steps = timeGraph.getTestAssignments();
+        assignment = new Assignment(steps.getLayout());
+        retrainPortfolio = new Portfolio(timeGraph.getTestStockPrices(), 10000d, 5d);
+        incrementalPortfolio = new Portfolio(timeGraph.getTestStockPrices(), 10000d, 5d);
+        retrainPolicy = new InferenceTradePolicy(timeGraph, retrainPortfolio, 1d, 1d);
+        incrementalPolicy = new InferenceTradePolicy(incrementalPortfolio, new OnlineTimeGraphModel(timeGraph.getClosedForm(), 2d, 7), 1d, 1d);
+        csv.delete();
+    }
+
+    @Benchmark
+    public List<Trade> retrain() {
+        return trade(retrainPortfolio, retrainPolicy);
+    }
+
+    @Benchmark
+    public List<Trade> incremental() {
+        return trade(incrementalPortfolio, incrementalPolicy);
+    }
+
+    private List<Trade> trade(Portfolio portfolio, InferenceTradePolicy policy) {
+        step = (step+1)%steps.size();
+        steps.get(step, assignment);
+        List<Trade> trades = TimeGraphAlgorithm.trade(portfolio, policy, assignment, step);
+        portfolio.endStep();
+        return trades;
+    }
+}
@@ -0,0 +1,25 @@
+package model;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar. Takes the usual JMH command line, but unless -rf picks
+ * another format the results are also written as JSON (to jmh-result.json, or -rff), so
+ * runs of the suite can be diffed against each other.
+ */
+public class RunBenchmarks {
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if(commandLine.shouldHelp()||commandLine.shouldList()||commandLine.shouldListProfilers()||commandLine.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if(!commandLine.getResultFormat().hasValue()) options.resultFormat(ResultFormatType.JSON);
+        new Runner(options.build()).run();
+    }
+}
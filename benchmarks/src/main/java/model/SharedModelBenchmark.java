@@ -0,0 +1,62 @@
+package model;
+
+import data.PriceSnapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starting one more policy variant on a network trained over a window of windowSize steps:
+ * training its own OnlineTimeGraphModel against taking an overlay of a FrozenTimeGraphModel
+ * shared by every variant, read only (overlay) or followed by the first learning step,
+ * which copies the tables (overlayObserve). Run with -prof gc for the bytes per variant.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SharedModelBenchmark {
+    @Param({"100", "500"})
+    public int numSymbols;
+    @Param({"250"})
+    public int windowSize;
+
+    private Assignment[] steps;
+    private ClosedFormMarginals closedForm;
+    private FrozenTimeGraphModel base;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        File csv = SyntheticPrices.writeCsv(numSymbols, windowSize+10, 42L);
+        TimeGraphDataset dataset = new TimeGraphDataset(PriceSnapshot.read(csv), 4);
+        csv.delete();
+        AssignmentSeries all = dataset.getAllAssignments();
+        steps = new Assignment[all.size()];
+        for(int t = 0; t < steps.length; t++) steps[t] = all.get(t);
+        closedForm = dataset.getClosedForm();
+        base = train().freeze();
+    }
+
+    @Benchmark
+    public OnlineTimeGraphModel train() {
+        OnlineTimeGraphModel model = new OnlineTimeGraphModel(closedForm, 2d, windowSize);
+        for(int t = 0; t < windowSize; t++) model.observe(steps[t]);
+        return model;
+    }
+
+    @Benchmark
+    public OnlineTimeGraphModel overlay() {
+        return base.overlay();
+    }
+
+    @Benchmark
+    public OnlineTimeGraphModel overlayObserve() {
+        OnlineTimeGraphModel model = base.overlay();
+        model.observe(steps[windowSize]);
+        return model;
+    }
+}
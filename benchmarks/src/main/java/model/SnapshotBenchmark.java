@@ -0,0 +1,52 @@
+package model;
+
+import data.PriceSnapshot;
+import org.openjdk.jmh.annotations.*;
+import server.PredictionService;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup of a PredictionService: loading the binary price snapshot and training on it
+ * (dataset, cross edge selection, clique tree, window replay) against loading the
+ * ModelSnapshot it wrote, which needs no price history.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SnapshotBenchmark {
+    @Param({"100", "500"})
+    public int numSymbols;
+    @Param({"4"})
+    public int numLayers;
+
+    private File priceFile;
+    private File modelFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        File csv = SyntheticPrices.writeCsv(numSymbols, 1000, 42L);
+        priceFile = File.createTempFile("prices_"+numSymbols+"_", ".snapshot");
+        priceFile.deleteOnExit();
+        PriceSnapshot.read(csv).write(priceFile);
+        csv.delete();
+        modelFile = File.createTempFile("model_"+numSymbols+"_", ".snapshot");
+        modelFile.deleteOnExit();
+        train().snapshot().write(modelFile);
+    }
+
+    @Benchmark
+    public PredictionService train() throws IOException {
+        return new PredictionService(PriceSnapshot.load(priceFile), numLayers, 2d, 7, 1d, 1d, 1d);
+    }
+
+    @Benchmark
+    public PredictionService load() throws IOException {
+        return new PredictionService(ModelSnapshot.load(modelFile), 1d, 1d, 1d);
+    }
+}
@@ -0,0 +1,45 @@
+package model;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Random-walk price files in the same layout as sample_stock_output.csv, so the
+ * benchmarks do not depend on market data being checked in.
+ */
+public class SyntheticPrices {
+    public static File writeCsv(int numSymbols, int numRows, long seed) throws IOException {
+        File file = File.createTempFile("synthetic_prices_"+numSymbols+"x"+numRows+"_", ".csv");
+        file.deleteOnExit();
+        Random random = new Random(seed);
+        double[] prices = new double[numSymbols];
+        for(int s = 0; s < numSymbols; s++) {
+            prices[s] = 10d + random.nextDouble()*500d;
+        }
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            StringBuilder header = new StringBuilder("date");
+            for(int s = 0; s < numSymbols; s++) {
+                header.append(",price_sym").append(s);
+            }
+            writer.write(header.toString());
+            writer.newLine();
+            LocalDate date = LocalDate.of(1990,1,1);
+            for(int r = 0; r < numRows; r++) {
+                StringBuilder row = new StringBuilder();
+                row.append(date.getMonthValue()).append('/').append(date.getDayOfMonth()).append('/').append(date.getYear());
+                for(int s = 0; s < numSymbols; s++) {
+                    prices[s] = Math.max(0.01d, prices[s]*(1d+random.nextGaussian()*0.02d));
+                    row.append(',').append(Math.round(prices[s]*100000d)/100000d);
+                }
+                writer.write(row.toString());
+                writer.newLine();
+                date = date.plusDays(1);
+            }
+        }
+        return file;
+    }
+}
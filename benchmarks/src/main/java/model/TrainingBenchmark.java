@@ -0,0 +1,72 @@
+package model;
+
+import data.PriceSnapshot;
+import model.graphs.Graph;
+import model.learning.algorithms.BayesianLearningAlgorithm;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One pass of learning over the training split: BayesianLearningAlgorithm through
+ * applyLearningAlgorithm on the GraphicalModeling net against counting the same
+ * sufficient statistics with FactorCounts, sequentially and sharded over the common
+ * fork-join pool. Setup checks the two counts agree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TrainingBenchmark {
+    @Param({"10", "25"})
+    public int numSymbols;
+    @Param({"3", "5"})
+    public int numLayers;
+    @Param({"400", "2000", "10000"})
+    public int numRows;
+
+    private TimeGraph timeGraph;
+    private FactorCounts counts;
+    private FactorCounts parallelCounts;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        File csv = SyntheticPrices.writeCsv(numSymbols, numRows, 42L);
+        timeGraph = new TimeGraph(PriceSnapshot.read(csv), numLayers, 2d);
+        counts = new FactorCounts(timeGraph.getClosedForm().getFactors());
+        parallelCounts = new FactorCounts(timeGraph.getClosedForm().getFactors());
+        csv.delete();
+        factorCounts();
+        factorCountsParallel();
+        if(!Arrays.equals(counts.probabilities(2d), parallelCounts.probabilities(2d))) {
+            throw new IllegalStateException("Parallel counts differ from the sequential counts");
+        }
+    }
+
+    @Benchmark
+    public Graph bayesianLearningAlgorithm() {
+        Graph network = timeGraph.getNetwork();
+        network.applyLearningAlgorithm(new BayesianLearningAlgorithm(network, 2d), 1);
+        return network;
+    }
+
+    @Benchmark
+    public FactorCounts factorCounts() {
+        counts.clear();
+        counts.addAll(timeGraph.getTrainingAssignments());
+        return counts;
+    }
+
+    @Benchmark
+    public FactorCounts factorCountsParallel() {
+        parallelCounts.clear();
+        parallelCounts.addAll(timeGraph.getTrainingAssignments(), ForkJoinPool.commonPool());
+        return parallelCounts;
+    }
+}
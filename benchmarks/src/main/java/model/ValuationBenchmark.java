@@ -0,0 +1,79 @@
+package model;
+
+import data.PriceMatrix;
+import finance.Portfolio;
+import finance.Trade;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per step mark to market of a portfolio holding every symbol: recomputing both ends
+ * of the step with computeRateOfReturnBetweenTimeSteps against Portfolio.endStep, which
+ * reuses the previous step's equity and only visits held symbols.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ValuationBenchmark {
+    static final int STEPS = 256;
+
+    @Param({"100", "1000", "5000"})
+    public int numSymbols;
+
+    private PriceMatrix prices;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<String> symbols = new ArrayList<>(numSymbols);
+        for(int s = 0; s < numSymbols; s++) symbols.add("sym"+s);
+        Random random = new Random(42L);
+        double[][] columns = new double[numSymbols][STEPS];
+        for(int s = 0; s < numSymbols; s++) {
+            double price = 10d+random.nextDouble()*500d;
+            for(int t = 0; t < STEPS; t++) {
+                price*=1d+random.nextGaussian()*0.01;
+                columns[s][t]=price;
+            }
+        }
+        prices = new PriceMatrix(symbols, columns, STEPS);
+    }
+
+    private Portfolio holdingEverything() {
+        Portfolio portfolio = new Portfolio(prices, 1e9, 0d);
+        for(int s = 0; s < numSymbols; s++) {
+            portfolio.applyTrade(new Trade(s, prices.symbol(s), 10d));
+        }
+        portfolio.endStep(0);
+        return portfolio;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS-1)
+    public double twoPassRate() {
+        Portfolio portfolio = holdingEverything();
+        double total = 0d;
+        for(int idx = 1; idx < STEPS; idx++) {
+            total+=portfolio.computeRateOfReturnBetweenTimeSteps(idx-1, idx);
+            portfolio.endStep();
+        }
+        return total;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS-1)
+    public double equityCurveRate() {
+        Portfolio portfolio = holdingEverything();
+        double total = 0d;
+        for(int idx = 1; idx < STEPS; idx++) {
+            total+=portfolio.endStep(idx);
+        }
+        return total;
+    }
+}
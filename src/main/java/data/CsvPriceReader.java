@@ -0,0 +1,221 @@
+package data;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Streams a "date,price_sym1,price_sym2,..." csv through a FileChannel and parses
+ * each price in place from the byte buffer at full double precision. Rows are pulled
+ * one at a time with next(), and getPrices() reuses the same array for every row.
+ * The date cell is only kept as byte offsets and decoded when getDate() is called, so
+ * a row costs no allocation unless its date is asked for. read() asks for every date,
+ * since the PriceMatrix keeps them, so it still makes one String per row.
+ */
+public class CsvPriceReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 20;
+    // powers of ten that are exactly representable as doubles
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final FileChannel channel;
+    private final List<String> symbols;
+    private final double[] prices;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private boolean endOfFile;
+    // offsets of the current row's date cell in buffer, valid until the next call to next()
+    private int dateStart;
+    private int dateEnd;
+    private String date;
+    private long rowNumber;
+
+    public CsvPriceReader(File csv) throws IOException {
+        this.channel=FileChannel.open(csv.toPath(), StandardOpenOption.READ);
+        this.buffer=new byte[BUFFER_SIZE];
+        try {
+            this.symbols=Collections.unmodifiableList(readHeader());
+        } catch(IOException|RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.prices=new double[symbols.size()];
+    }
+
+    public static PriceMatrix read(File csv) throws IOException {
+        try(CsvPriceReader reader = new CsvPriceReader(csv)) {
+            PriceMatrix.Builder builder = new PriceMatrix.Builder(reader.getSymbols(), 1024);
+            while(reader.next()) {
+                builder.addRow(reader.getDate(), reader.getPrices());
+            }
+            return builder.build();
+        }
+    }
+
+    public List<String> getSymbols() {
+        return symbols;
+    }
+
+    // Prices of the current row; the array is overwritten by the next call to next()
+    public double[] getPrices() {
+        return prices;
+    }
+
+    // Date cell of the current row, decoded on first call
+    public String getDate() {
+        if(date==null) date = new String(buffer, dateStart, dateEnd-dateStart, StandardCharsets.US_ASCII);
+        return date;
+    }
+
+    public boolean next() throws IOException {
+        int end;
+        do {
+            end = findLineEnd();
+            if(end<0) return false;
+        } while(isBlank(position,end) && skipLine(end));
+        rowNumber++;
+        parseRow(position, trimCarriageReturn(position,end));
+        position=end+1;
+        return true;
+    }
+
+    private List<String> readHeader() throws IOException {
+        int end = findLineEnd();
+        if(end<0) throw new IOException("Missing csv header");
+        String[] headers = new String(buffer, position, trimCarriageReturn(position,end)-position, StandardCharsets.UTF_8).split(",");
+        position=end+1;
+        List<String> companies = new ArrayList<>(headers.length);
+        // skip over date cell
+        for(int i = 1; i < headers.length; i++) {
+            String[] split = headers[i].split("_");
+            if(split.length<2) throw new IOException("Unexpected header cell: "+headers[i]);
+            companies.add(split[1]);
+        }
+        return companies;
+    }
+
+    private boolean skipLine(int end) {
+        position=end+1;
+        return true;
+    }
+
+    private boolean isBlank(int from, int to) {
+        return trimCarriageReturn(from,to)==from;
+    }
+
+    private int trimCarriageReturn(int from, int to) {
+        return to>from && buffer[to-1]=='\r' ? to-1 : to;
+    }
+
+    // Index of the '\n' terminating the current line, refilling the buffer as needed. -1 when exhausted.
+    private int findLineEnd() throws IOException {
+        int scanned = position;
+        while(true) {
+            for(int i = scanned; i < limit; i++) {
+                if(buffer[i]=='\n') return i;
+            }
+            if(endOfFile) {
+                if(position<limit) {
+                    // last line without a trailing newline
+                    if(limit==buffer.length) buffer=Arrays.copyOf(buffer,buffer.length+1);
+                    buffer[limit]='\n';
+                    return limit++;
+                }
+                return -1;
+            }
+            scanned = limit-position;
+            fill();
+        }
+    }
+
+    private void fill() throws IOException {
+        // keep the partial line at the front of the buffer
+        int remaining = limit-position;
+        if(position>0) {
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+        } else if(remaining==buffer.length) {
+            buffer=Arrays.copyOf(buffer,buffer.length*2);
+        }
+        position=0;
+        limit=remaining;
+        ByteBuffer target = ByteBuffer.wrap(buffer, limit, buffer.length-limit);
+        int read = channel.read(target);
+        if(read<0) endOfFile=true;
+        else limit+=read;
+    }
+
+    private void parseRow(int from, int to) throws IOException {
+        int cellStart = from;
+        int cellEnd = indexOf(',', cellStart, to);
+        dateStart=cellStart;
+        dateEnd=cellEnd;
+        date=null;
+        for(int c = 0; c < prices.length; c++) {
+            if(cellEnd>=to) throw new IOException("Expected "+prices.length+" prices on row "+rowNumber+" but found "+c);
+            cellStart=cellEnd+1;
+            cellEnd=indexOf(',', cellStart, to);
+            prices[c]=parseDouble(cellStart, cellEnd);
+        }
+    }
+
+    private int indexOf(char c, int from, int to) {
+        for(int i = from; i < to; i++) {
+            if(buffer[i]==c) return i;
+        }
+        return to;
+    }
+
+    // Plain decimal literals are converted exactly from a long mantissa; anything else goes through Double.parseDouble
+    private double parseDouble(int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if(i<to && (buffer[i]=='-'||buffer[i]=='+')) {
+            negative = buffer[i]=='-';
+            i++;
+        }
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        boolean seenDigit = false;
+        boolean seenDot = false;
+        for(; i < to; i++) {
+            byte b = buffer[i];
+            if(b>='0'&&b<='9') {
+                // more than 18 significant digits may overflow the mantissa
+                if(significantDigits==18) return parseDoubleSlow(from,to);
+                mantissa=mantissa*10+(b-'0');
+                if(mantissa>0) significantDigits++;
+                if(seenDot) exponent--;
+                seenDigit=true;
+            } else if(b=='.'&&!seenDot) {
+                seenDot=true;
+            } else {
+                return parseDoubleSlow(from,to);
+            }
+        }
+        if(!seenDigit||-exponent>=POWERS_OF_TEN.length||mantissa>=(1L<<53)) return parseDoubleSlow(from,to);
+        // both operands are exact, so the single division is correctly rounded
+        double value = exponent==0 ? mantissa : mantissa/POWERS_OF_TEN[-exponent];
+        return negative ? -value : value;
+    }
+
+    private double parseDoubleSlow(int from, int to) {
+        return Double.parseDouble(new String(buffer, from, to-from, StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
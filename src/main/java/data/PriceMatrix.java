@@ -0,0 +1,143 @@
+package data;
+
+import java.util.*;
+
+/**
+ * Columnar price store: one contiguous double[] per symbol, addressed by
+ * integer symbol id and time index. Views returned by {@link #view(int, int)}
+ * share the backing columns, so train/validation/test splits cost nothing.
+ */
+public class PriceMatrix {
+    private final List<String> symbols;
+    private final Map<String,Integer> symbolToId;
+    private final double[][] columns;
+    private final String[] dates;
+    private final int offset;
+    private final int size;
+
+    public PriceMatrix(List<String> symbols, double[][] columns, int size) {
+        this(symbols, columns, null, size);
+    }
+
+    public PriceMatrix(List<String> symbols, double[][] columns, String[] dates, int size) {
+        this(Collections.unmodifiableList(new ArrayList<>(symbols)), indexSymbols(symbols), columns, dates, 0, size);
+        if(columns.length!=symbols.size()) throw new IllegalArgumentException("Expected one column per symbol");
+        for(double[] column : columns) {
+            if(column.length<size) throw new IllegalArgumentException("Column shorter than matrix size");
+        }
+        if(dates!=null&&dates.length<size) throw new IllegalArgumentException("Dates shorter than matrix size");
+    }
+
+    private PriceMatrix(List<String> symbols, Map<String,Integer> symbolToId, double[][] columns, String[] dates, int offset, int size) {
+        this.symbols=symbols;
+        this.symbolToId=symbolToId;
+        this.columns=columns;
+        this.dates=dates;
+        this.offset=offset;
+        this.size=size;
+    }
+
+    private static Map<String,Integer> indexSymbols(List<String> symbols) {
+        Map<String,Integer> index = new HashMap<>();
+        for(int i = 0; i < symbols.size(); i++) {
+            if(index.put(symbols.get(i),i)!=null) throw new IllegalArgumentException("Duplicate symbol: "+symbols.get(i));
+        }
+        return Collections.unmodifiableMap(index);
+    }
+
+    public double price(int symbolId, int idx) {
+        return columns[symbolId][offset+idx];
+    }
+
+    public int symbolId(String symbol) {
+        Integer id = symbolToId.get(symbol);
+        if(id==null) throw new IllegalArgumentException("Unknown symbol: "+symbol);
+        return id;
+    }
+
+    // Date label of the row at idx, or null when the source had no dates
+    public String date(int idx) {
+        return dates==null ? null : dates[offset+idx];
+    }
+
+    public String symbol(int symbolId) {
+        return symbols.get(symbolId);
+    }
+
+    public List<String> getSymbols() {
+        return symbols;
+    }
+
+    public int numSymbols() {
+        return symbols.size();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Fills the prices of every symbol at idx into row
+    public double[] row(int idx, double[] row) {
+        for(int s = 0; s < columns.length; s++) {
+            row[s]=columns[s][offset+idx];
+        }
+        return row;
+    }
+
+    // Zero-copy view over [from,to) of this matrix
+    public PriceMatrix view(int from, int to) {
+        if(from<0||to>size||from>to) throw new IndexOutOfBoundsException("View ["+from+","+to+") out of range for size "+size);
+        return new PriceMatrix(symbols,symbolToId,columns,dates,offset+from,to-from);
+    }
+
+    /**
+     * Appends rows into growable columns; build() hands the columns to the matrix without copying.
+     */
+    public static class Builder {
+        private final List<String> symbols;
+        private double[][] columns;
+        private String[] dates;
+        private int size;
+
+        public Builder(List<String> symbols) {
+            this(symbols, 256);
+        }
+
+        public Builder(List<String> symbols, int initialCapacity) {
+            this.symbols=new ArrayList<>(symbols);
+            this.columns=new double[symbols.size()][Math.max(initialCapacity,1)];
+            this.dates=new String[Math.max(initialCapacity,1)];
+        }
+
+        public Builder addRow(double[] prices) {
+            return addRow(null,prices);
+        }
+
+        public Builder addRow(String date, double[] prices) {
+            if(prices.length<columns.length) throw new IllegalArgumentException("Expected "+columns.length+" prices but found "+prices.length);
+            if(size==dates.length) grow();
+            for(int s = 0; s < columns.length; s++) {
+                columns[s][size]=prices[s];
+            }
+            dates[size]=date;
+            size++;
+            return this;
+        }
+
+        private void grow() {
+            int capacity = dates.length*2;
+            for(int s = 0; s < columns.length; s++) {
+                columns[s]=Arrays.copyOf(columns[s],capacity);
+            }
+            dates=Arrays.copyOf(dates,capacity);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public PriceMatrix build() {
+            return new PriceMatrix(symbols,columns,dates,size);
+        }
+    }
+}
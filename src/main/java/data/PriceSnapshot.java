@@ -0,0 +1,178 @@
+package data;
+
+import lombok.Getter;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Price history plus the derived up/down bitsets, stored in a compact binary file so
+ * later runs skip parsing the csv. Loading maps the file read only and copies the
+ * columns and bitsets into heap arrays; nothing is served from the mapping afterwards.
+ *
+ * Layout (big endian): magic, version, source length and modification time (-1 when
+ * not written from a file), numSymbols, numRows, hasDates flag, symbols and dates as
+ * length-prefixed UTF-8, zero padding to an 8 byte boundary, one column of numRows
+ * doubles per symbol, then one bitset of ceil(numRows/64) longs per symbol.
+ */
+public class PriceSnapshot {
+    public static final int MAGIC = 0x54475053; // "TGPS"
+    public static final int VERSION = 2;
+    public static final long NO_SOURCE = -1L;
+
+    @Getter
+    private final PriceMatrix prices;
+    @Getter
+    private final UpDownSeries upDown;
+
+    public PriceSnapshot(PriceMatrix prices, UpDownSeries upDown) {
+        if(prices.size()!=upDown.size()||prices.numSymbols()!=upDown.numSymbols()) {
+            throw new IllegalArgumentException("Prices and up/down series do not line up");
+        }
+        this.prices=prices;
+        this.upDown=upDown;
+    }
+
+    public static PriceSnapshot fromPrices(PriceMatrix prices) {
+        return new PriceSnapshot(prices, UpDownSeries.fromPrices(prices));
+    }
+
+    // Loads either a snapshot written by write(File) or a price csv
+    public static PriceSnapshot read(File file) throws IOException {
+        if(isSnapshot(file)) return load(file);
+        return fromPrices(CsvPriceReader.read(file));
+    }
+
+    public static boolean isSnapshot(File file) throws IOException {
+        try(DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return file.length()>=4 && in.readInt()==MAGIC;
+        }
+    }
+
+    /**
+     * Snapshot of csv kept in snapshot: loaded when it was written from csv at its
+     * current length and modification time, otherwise rebuilt from the csv and rewritten.
+     */
+    public static PriceSnapshot cached(File csv, File snapshot) throws IOException {
+        if(isCurrent(snapshot, csv)) return load(snapshot);
+        PriceSnapshot data = fromPrices(CsvPriceReader.read(csv));
+        data.write(snapshot, csv);
+        return data;
+    }
+
+    // True when snapshot is a snapshot of this version written from source as it is now
+    public static boolean isCurrent(File snapshot, File source) throws IOException {
+        if(!snapshot.isFile()||snapshot.length()<24||!source.isFile()) return false;
+        try(DataInputStream in = new DataInputStream(new FileInputStream(snapshot))) {
+            return in.readInt()==MAGIC && in.readInt()==VERSION
+                    && in.readLong()==source.length() && in.readLong()==source.lastModified();
+        }
+    }
+
+    public static PriceSnapshot load(File file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long headerSize = Math.min(channel.size(), Integer.MAX_VALUE);
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, headerSize);
+            if(header.getInt()!=MAGIC) throw new IOException("Not a price snapshot: "+file);
+            int version = header.getInt();
+            if(version!=VERSION) throw new IOException("Unsupported snapshot version "+version+" in "+file);
+            // source length and modification time, only read by isCurrent
+            header.getLong();
+            header.getLong();
+            int numSymbols = header.getInt();
+            int numRows = header.getInt();
+            boolean hasDates = header.get()!=0;
+            List<String> symbols = new ArrayList<>(numSymbols);
+            for(int s = 0; s < numSymbols; s++) {
+                symbols.add(readString(header));
+            }
+            String[] dates = null;
+            if(hasDates) {
+                dates = new String[numRows];
+                for(int r = 0; r < numRows; r++) {
+                    dates[r]=readString(header);
+                }
+            }
+            // columns are mapped one at a time so files beyond 2GB still load
+            long offset = align(header.position());
+            long columnBytes = 8L*numRows;
+            double[][] columns = new double[numSymbols][numRows];
+            for(int s = 0; s < numSymbols; s++) {
+                channel.map(FileChannel.MapMode.READ_ONLY, offset, columnBytes).asDoubleBuffer().get(columns[s]);
+                offset+=columnBytes;
+            }
+            int numWords = UpDownSeries.numWords(numRows);
+            long[][] bits = new long[numSymbols][numWords];
+            for(int s = 0; s < numSymbols; s++) {
+                channel.map(FileChannel.MapMode.READ_ONLY, offset, 8L*numWords).asLongBuffer().get(bits[s]);
+                offset+=8L*numWords;
+            }
+            return new PriceSnapshot(new PriceMatrix(symbols,columns,dates,numRows), new UpDownSeries(bits,numRows));
+        }
+    }
+
+    public void write(File file) throws IOException {
+        write(file, null);
+    }
+
+    // Records the length and modification time of source, the csv these prices were read from
+    public void write(File file, File source) throws IOException {
+        long sourceLength = source==null ? NO_SOURCE : source.length();
+        long sourceModified = source==null ? NO_SOURCE : source.lastModified();
+        int numRows = prices.size();
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sourceLength);
+            out.writeLong(sourceModified);
+            out.writeInt(prices.numSymbols());
+            out.writeInt(numRows);
+            boolean hasDates = numRows>0 && prices.date(0)!=null;
+            out.writeByte(hasDates ? 1 : 0);
+            for(String symbol : prices.getSymbols()) {
+                writeString(out,symbol);
+            }
+            if(hasDates) {
+                for(int r = 0; r < numRows; r++) {
+                    writeString(out,prices.date(r));
+                }
+            }
+            while(out.size()%8!=0) out.writeByte(0);
+            for(int s = 0; s < prices.numSymbols(); s++) {
+                for(int r = 0; r < numRows; r++) {
+                    out.writeDouble(prices.price(s,r));
+                }
+            }
+            int numWords = UpDownSeries.numWords(numRows);
+            for(int s = 0; s < upDown.numSymbols(); s++) {
+                long[] words = upDown.words(s);
+                for(int w = 0; w < numWords; w++) {
+                    out.writeLong(words[w]);
+                }
+            }
+        }
+    }
+
+    private static long align(long position) {
+        return (position+7) & ~7L;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if(bytes.length>0xFFFF) throw new IOException("String too long for snapshot: "+value);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,57 @@
+package data;
+
+/**
+ * Up/down movement of every symbol packed into one bitset per symbol: bit t is set
+ * when the price at t is strictly greater than the price at t-1. Bit 0 is never set.
+ */
+public class UpDownSeries {
+    private final long[][] bits;
+    private final int size;
+
+    public UpDownSeries(long[][] bits, int size) {
+        for(long[] words : bits) {
+            if(words.length<numWords(size)) throw new IllegalArgumentException("Bitset shorter than series size");
+        }
+        this.bits=bits;
+        this.size=size;
+    }
+
+    public static UpDownSeries fromPrices(PriceMatrix prices) {
+        int size = prices.size();
+        long[][] bits = new long[prices.numSymbols()][numWords(size)];
+        for(int s = 0; s < bits.length; s++) {
+            long[] words = bits[s];
+            for(int t = 1; t < size; t++) {
+                if(prices.price(s,t)-prices.price(s,t-1)>0) {
+                    words[t>>>6] |= 1L << t;
+                }
+            }
+        }
+        return new UpDownSeries(bits,size);
+    }
+
+    public static int numWords(int size) {
+        return (size+63)>>>6;
+    }
+
+    public boolean wentUp(int symbolId, int idx) {
+        return (bits[symbolId][idx>>>6] & (1L << idx)) != 0;
+    }
+
+    public int get(int symbolId, int idx) {
+        return (int)((bits[symbolId][idx>>>6] >>> idx) & 1L);
+    }
+
+    // Backing words of a symbol; callers must not modify them
+    public long[] words(int symbolId) {
+        return bits[symbolId];
+    }
+
+    public int numSymbols() {
+        return bits.length;
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,73 @@
+package finance;
+
+import lombok.Getter;
+
+/**
+ * Cost model of an ExecutionSimulator. An order of shares at price fills at
+ *     price*(1 +- slippage), slippage = (slippageBps + impactBps*sqrt(notional/impactNotional))/1e4
+ * (buys higher, sells lower) and pays
+ *     perOrder + perShare*shares + bps*fillNotional/1e4
+ * in fees. Everything defaults to zero; flat(cost) is the Portfolio.makeTrade model.
+ */
+public class ExecutionCosts {
+    @Getter
+    private double perOrder;
+    @Getter
+    private double perShare;
+    @Getter
+    private double bps;
+    @Getter
+    private double slippageBps;
+    @Getter
+    private double impactBps;
+    @Getter
+    private double impactNotional = 1e6;
+
+    public static ExecutionCosts flat(double transactionCost) {
+        return new ExecutionCosts().perOrder(transactionCost);
+    }
+
+    public ExecutionCosts perOrder(double perOrder) {
+        if(perOrder<0) throw new IllegalArgumentException("Costs must be non negative");
+        this.perOrder=perOrder;
+        return this;
+    }
+
+    public ExecutionCosts perShare(double perShare) {
+        if(perShare<0) throw new IllegalArgumentException("Costs must be non negative");
+        this.perShare=perShare;
+        return this;
+    }
+
+    public ExecutionCosts bps(double bps) {
+        if(bps<0) throw new IllegalArgumentException("Costs must be non negative");
+        this.bps=bps;
+        return this;
+    }
+
+    public ExecutionCosts slippageBps(double slippageBps) {
+        if(slippageBps<0) throw new IllegalArgumentException("Costs must be non negative");
+        this.slippageBps=slippageBps;
+        return this;
+    }
+
+    // Market impact of impactBps at an order of impactNotional, growing with the square root of size
+    public ExecutionCosts impact(double impactBps, double impactNotional) {
+        if(impactBps<0) throw new IllegalArgumentException("Costs must be non negative");
+        if(impactNotional<=0) throw new IllegalArgumentException("Impact notional must be positive");
+        this.impactBps=impactBps;
+        this.impactNotional=impactNotional;
+        return this;
+    }
+
+    // Price move as a fraction of price against an order of shares (>0) at price
+    public double slippage(double shares, double price) {
+        double slip = slippageBps;
+        if(impactBps>0) slip+=impactBps*Math.sqrt(shares*price/impactNotional);
+        return slip/1e4;
+    }
+
+    public double fees(double shares, double fillPrice) {
+        return perOrder+perShare*shares+bps*shares*fillPrice/1e4;
+    }
+}
@@ -0,0 +1,172 @@
+package finance;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fills a step's batch of orders against a Portfolio under an ExecutionCosts model.
+ *
+ * Orders are netted per symbol into a primitive array as they are submitted, so opposing
+ * orders cancel before paying any cost, then execute settles the batch over the touched
+ * symbols. Sells are capped at the shares held and a buy is rejected whole when its cost
+ * exceeds the cash left (as Portfolio.makeTrade does). Cash and positions go straight
+ * into the portfolio's current profile.
+ *
+ * The Settlement decides the order. SELLS_FIRST (the default) lets the proceeds of the
+ * step's sells fund its buys, so it can fill buys that the legacy per trade path rejects
+ * for cash: InferenceTradePolicy submits its buys before its sells. SUBMISSION_ORDER
+ * settles each symbol at its first submission and reproduces that path exactly when
+ * every symbol is ordered once per step, as InferenceTradePolicy does.
+ */
+public class ExecutionSimulator {
+    public enum Settlement { SELLS_FIRST, SUBMISSION_ORDER }
+
+    @Getter
+    private final ExecutionCosts costs;
+    @Getter @Setter
+    private Settlement settlement = Settlement.SELLS_FIRST;
+    private final double[] netShares;
+    private final boolean[] pending;
+    // symbols with a pending order, in order of their first submission
+    private final int[] ordered;
+    private int numOrdered;
+    private int numPending;
+    // fills of the last settle, at most one per symbol
+    private final int[] fillSymbols;
+    private final double[] fillShares;
+    private int numStepFills;
+    @Getter
+    private long numOrders;
+    // orders merged into an earlier order on the same symbol
+    @Getter
+    private long numNetted;
+    @Getter
+    private long numFills;
+    @Getter
+    private long numRejected;
+    @Getter
+    private double totalFees;
+    @Getter
+    private double totalSlippage;
+
+    public ExecutionSimulator(int numSymbols, ExecutionCosts costs) {
+        this.costs=costs;
+        this.netShares=new double[numSymbols];
+        this.pending=new boolean[numSymbols];
+        this.ordered=new int[numSymbols];
+        this.fillSymbols=new int[numSymbols];
+        this.fillShares=new double[numSymbols];
+    }
+
+    public void submit(int symbolId, double shares) {
+        if(!pending[symbolId]) {
+            pending[symbolId]=true;
+            ordered[numOrdered++]=symbolId;
+        }
+        netShares[symbolId]+=shares;
+        numPending++;
+    }
+
+    public void submit(Portfolio portfolio, List<Trade> orders) {
+        for(int i = 0; i < orders.size(); i++) {
+            Trade order = orders.get(i);
+            submit(order.getSymbolId()>=0 ? order.getSymbolId() : portfolio.getPrices().symbolId(order.getStock()), order.getAmount());
+        }
+    }
+
+    public List<Trade> execute(Portfolio portfolio, List<Trade> orders, int idx) {
+        submit(portfolio, orders);
+        return execute(portfolio, idx);
+    }
+
+    // Settles every pending order at price index idx and returns the fills in settlement order
+    public List<Trade> execute(Portfolio portfolio, int idx) {
+        int n = settle(portfolio, idx);
+        List<Trade> fills = new ArrayList<>(n);
+        for(int i = 0; i < n; i++) {
+            fills.add(new Trade(fillSymbols[i], portfolio.getPrices().symbol(fillSymbols[i]), fillShares[i]));
+        }
+        return fills;
+    }
+
+    /**
+     * Settles every pending order at price index idx without allocating and returns the
+     * number of fills, which stay readable through fillSymbol and fillShares until the
+     * next settle.
+     */
+    public int settle(Portfolio portfolio, int idx) {
+        double[] position = portfolio.getCurrentProfile();
+        double cash = portfolio.getAvailableCash();
+        numStepFills=0;
+        if(settlement==Settlement.SELLS_FIRST) {
+            for(int i = 0; i < numOrdered; i++) cash=sell(portfolio, position, ordered[i], idx, cash);
+            for(int i = 0; i < numOrdered; i++) cash=buy(portfolio, ordered[i], idx, cash);
+        } else {
+            for(int i = 0; i < numOrdered; i++) {
+                int id = ordered[i];
+                cash = netShares[id]<0 ? sell(portfolio, position, id, idx, cash) : buy(portfolio, id, idx, cash);
+            }
+        }
+        for(int i = 0; i < numOrdered; i++) {
+            int id = ordered[i];
+            netShares[id]=0d;
+            pending[id]=false;
+        }
+        numOrders+=numPending;
+        numNetted+=numPending-numOrdered;
+        numOrdered=0;
+        numPending=0;
+        numFills+=numStepFills;
+        portfolio.setAvailableCash(cash);
+        return numStepFills;
+    }
+
+    // Fills the net sell of symbol id, if any, and returns the cash after it
+    private double sell(Portfolio portfolio, double[] position, int id, int idx, double cash) {
+        double shares = Math.min(-netShares[id], position[id]);
+        if(shares<=0) return cash;
+        double price = portfolio.stockPriceAtTime(id, idx);
+        double fillPrice = price*Math.max(0d, 1d-costs.slippage(shares, price));
+        double fees = costs.fees(shares, fillPrice);
+        totalFees+=fees;
+        totalSlippage+=shares*(price-fillPrice);
+        portfolio.applyFill(id, -shares);
+        fill(id, -shares);
+        return cash+shares*fillPrice-fees;
+    }
+
+    // Fills the net buy of symbol id, if any and affordable, and returns the cash after it
+    private double buy(Portfolio portfolio, int id, int idx, double cash) {
+        double shares = netShares[id];
+        if(shares<=0) return cash;
+        double price = portfolio.stockPriceAtTime(id, idx);
+        double fillPrice = price*(1d+costs.slippage(shares, price));
+        double fees = costs.fees(shares, fillPrice);
+        double cost = shares*fillPrice+fees;
+        if(cost>cash) {
+            numRejected++;
+            return cash;
+        }
+        totalFees+=fees;
+        totalSlippage+=shares*(fillPrice-price);
+        portfolio.applyFill(id, shares);
+        fill(id, shares);
+        return cash-cost;
+    }
+
+    private void fill(int symbolId, double shares) {
+        fillSymbols[numStepFills]=symbolId;
+        fillShares[numStepFills++]=shares;
+    }
+
+    public int fillSymbol(int i) {
+        return fillSymbols[i];
+    }
+
+    public double fillShares(int i) {
+        return fillShares[i];
+    }
+}
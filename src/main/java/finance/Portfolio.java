@@ -1,25 +1,45 @@
 package finance;
 
+import data.PriceMatrix;
 import lombok.Getter;
 import lombok.Setter;
+import metrics.Metrics;
 import model.trade_policy.TradePolicy;
 
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Created by Evan on 4/30/2017.
  */
 public class Portfolio {
-    protected List<Map<String,Double>> stockToPricesList;
+    @Getter
+    protected PriceMatrix prices;
     @Getter
     protected double transactionCost;
 
+    // shares held per symbol id; current is built from last during a step and the two are swapped after it
     @Getter
-    protected Map<String,Double> currentProfile;
+    protected double[] currentProfile;
     @Getter
-    protected Map<String,Double> lastProfile;
+    protected double[] lastProfile;
+    protected boolean currentHasPositions;
+    protected boolean lastHasPositions;
+    // symbols traded this step, the only entries where the two profiles differ
+    protected int[] touched;
+    protected int numTouched;
+    protected boolean[] isTouched;
+    // symbols with a non zero position in the current profile, and where each sits in held
+    protected int[] held;
+    protected int numHeld;
+    protected int[] heldSlot;
+    // cash plus holdings at the end of every step so far, when recordEquityCurve
+    protected double[] equityCurve;
+    protected int equityCurveSize;
+    protected double equity;
+    // off for unbounded runs such as a live stream, where the curve would grow forever
+    @Getter @Setter
+    protected boolean recordEquityCurve = true;
 
     @Getter @Setter
     protected double availableCash;
@@ -36,18 +56,31 @@ public class Portfolio {
     @Getter @Setter
     protected List<List<Trade>> tradesOverTime;
 
-    public Portfolio(List<Map<String,Double>> stockToPricesList, double startingCash, double transactionCost) {
+    // when set, a step's trades are filled as one batch by the simulator instead of one by one
+    @Getter @Setter
+    protected ExecutionSimulator executionSimulator;
+
+    public Portfolio(PriceMatrix prices, double startingCash, double transactionCost) {
         this.availableCash=startingCash;
         this.startingCash=startingCash;
         this.previouslyAvailableCash=startingCash;
-        this.stockToPricesList=stockToPricesList;
-        this.currentProfile=new HashMap<>();
-        this.lastProfile=new HashMap<>();
+        this.prices=prices;
+        this.currentProfile=new double[prices.numSymbols()];
+        this.lastProfile=new double[prices.numSymbols()];
+        this.touched=new int[prices.numSymbols()];
+        this.isTouched=new boolean[prices.numSymbols()];
+        this.held=new int[prices.numSymbols()];
+        this.heldSlot=new int[prices.numSymbols()];
+        Arrays.fill(heldSlot,-1);
+        this.equityCurve=new double[Math.max(16,prices.size())];
+        this.equity=startingCash;
         this.tradesOverTime=new ArrayList<>();
         this.transactionCost = transactionCost;
     }
 
+    // Accepts every order when an ExecutionSimulator will settle the batch
     public boolean makeTrade(Trade trade, double stockPrice) {
+        if(executionSimulator!=null) return true;
         double newAmount = trade.getAmount();
         if(!(newAmount>0&&stockPrice*newAmount+transactionCost>availableCash)) {
             availableCash-=newAmount*stockPrice+transactionCost;
@@ -63,14 +96,102 @@ public class Portfolio {
         else return 0d;
     }
 
-    public double computeMoney(Map<String,Double> map, int idx) {
-        return map.entrySet().stream().collect(Collectors.summingDouble(e->{
-            return stockToPricesList.get(idx).get(e.getKey())*e.getValue();
-        }));
+    public double computeMoney(double[] profile, int idx) {
+        double money = 0d;
+        for(int s = 0; s < profile.length; s++) {
+            if(profile[s]!=0d) money+=prices.price(s,idx)*profile[s];
+        }
+        return money;
+    }
+
+    // Value of the current profile at idx, only visiting the symbols actually held
+    public double computeHeldMoney(int idx) {
+        double money = 0d;
+        for(int i = 0; i < numHeld; i++) {
+            int id = held[i];
+            money+=prices.price(id,idx)*currentProfile[id];
+        }
+        return money;
+    }
+
+    // Cash plus holdings after each step that went through endStep(int) while recordEquityCurve
+    public double[] getEquityCurve() {
+        return Arrays.copyOf(equityCurve,equityCurveSize);
+    }
+
+    // Shares held at the end of the previous step
+    public double position(int symbolId) {
+        return lastProfile[symbolId];
+    }
+
+    public boolean hasPositions() {
+        return lastHasPositions;
+    }
+
+    // Adds the trade to the profile being built for this step and returns the new amount
+    public double applyTrade(Trade trade) {
+        int id = trade.getSymbolId()>=0 ? trade.getSymbolId() : prices.symbolId(trade.getStock());
+        return applyFill(id,trade.getAmount());
+    }
+
+    // Adds shares of symbol id to the profile being built for this step and returns the new amount
+    public double applyFill(int id, double shares) {
+        double newAmount = currentProfile[id]+shares;
+        if(newAmount<0) throw new RuntimeException("Negative new amount!");
+        currentProfile[id]=newAmount;
+        currentHasPositions=true;
+        if(newAmount!=0d&&heldSlot[id]<0) {
+            heldSlot[id]=numHeld;
+            held[numHeld++]=id;
+        } else if(newAmount==0d&&heldSlot[id]>=0) {
+            // move the last held symbol into the freed slot
+            int last = held[--numHeld];
+            held[heldSlot[id]]=last;
+            heldSlot[last]=heldSlot[id];
+            heldSlot[id]=-1;
+        }
+        if(!isTouched[id]) {
+            isTouched[id]=true;
+            touched[numTouched++]=id;
+        }
+        return newAmount;
+    }
+
+    /**
+     * Marks the step's holdings to market at idx, appends to the equity curve if recorded, and returns
+     * the step's rate of return (0 until a position was held), then endStep(). The previous
+     * step's equity is reused, so a step values only the held symbols, once.
+     */
+    public double endStep(int idx) {
+        long start = Metrics.start();
+        double newEquity = computeHeldMoney(idx)+availableCash;
+        double rate = lastHasPositions&&equity>0 ? (newEquity-equity)/equity : 0d;
+        equity=newEquity;
+        if(recordEquityCurve) {
+            if(equityCurveSize==equityCurve.length) equityCurve=Arrays.copyOf(equityCurve,equityCurveSize*2);
+            equityCurve[equityCurveSize++]=newEquity;
+        }
+        endStep();
+        Metrics.VALUATION.stop(start);
+        return rate;
+    }
+
+    // Makes this step's profile the last profile; only the traded symbols are copied back
+    public void endStep() {
+        double[] swap = lastProfile;
+        lastProfile=currentProfile;
+        currentProfile=swap;
+        lastHasPositions=currentHasPositions;
+        for(int i = 0; i < numTouched; i++) {
+            int id = touched[i];
+            currentProfile[id]=lastProfile[id];
+            isTouched[id]=false;
+        }
+        numTouched=0;
     }
 
-    public double stockPriceAtTime(String stock, int idx) {
-        return stockToPricesList.get(idx).get(stock);
+    public double stockPriceAtTime(int symbolId, int idx) {
+        return prices.price(symbolId,idx);
     }
 
     public double determineTrades(TradingAlgorithm algorithm, TradePolicy tradePolicy) {
@@ -14,10 +14,18 @@ public class Trade {
     @Getter @Setter
     protected String stock;
 
+    // column of the stock in the portfolio's PriceMatrix, -1 when unresolved
+    @Getter
+    protected int symbolId;
 
     public Trade(String stock, double shares) {
+        this(-1,stock,shares);
+    }
+
+    public Trade(int symbolId, String stock, double shares) {
         this.amount=shares;
         this.stock=stock;
+        this.symbolId=symbolId;
     }
 
 }
@@ -0,0 +1,56 @@
+package google_api;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Quotes from any endpoint answering GET {baseUrl}?symbol=..&start=yyyy-mm-dd&end=yyyy-mm-dd
+ * with a csv of date,open,high,low,close[,...] rows in any order, such as
+ * server.StubQuoteServer. The price of a day is the average of its open, close, high and low.
+ */
+public class HttpQuoteSource implements QuoteSource {
+    private static final int TIMEOUT_MILLIS = 30000;
+    private final String baseUrl;
+
+    public HttpQuoteSource(String baseUrl) {
+        this.baseUrl=baseUrl;
+    }
+
+    @Override
+    public NavigableMap<LocalDate,Double> fetch(String symbol, LocalDate startDate, LocalDate endDate) throws IOException {
+        URL url = new URL(baseUrl+"?symbol="+URLEncoder.encode(symbol,"UTF-8")+"&start="+startDate+"&end="+endDate);
+        HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        try {
+            if(connection.getResponseCode()!=HttpURLConnection.HTTP_OK) {
+                throw new IOException("Request for "+symbol+" failed with status "+connection.getResponseCode());
+            }
+            NavigableMap<LocalDate,Double> data = new TreeMap<>();
+            try(BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                String line = reader.readLine(); // header
+                while((line=reader.readLine())!=null) {
+                    if(line.isEmpty()) continue;
+                    String[] cells = line.split(",");
+                    if(cells.length<5) throw new IOException("Malformed quote for "+symbol+": "+line);
+                    double open = Double.parseDouble(cells[1]);
+                    double high = Double.parseDouble(cells[2]);
+                    double low = Double.parseDouble(cells[3]);
+                    double close = Double.parseDouble(cells[4]);
+                    data.put(LocalDate.parse(cells[0]), (open+close+high+low)/4);
+                }
+            }
+            return data;
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package google_api;
+
+/**
+ * What Requester does with a date that some symbols have a price for and others do not.
+ */
+public enum MergePolicy {
+    // keep the date and carry forward each missing symbol's last price; dates before every symbol has a price are dropped
+    FORWARD_FILL,
+    // keep only the dates every symbol has a price for
+    DROP
+}
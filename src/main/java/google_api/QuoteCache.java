@@ -0,0 +1,90 @@
+package google_api;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * On disk cache of fetched quotes. Every response is stored as its own file
+ * {dir}/{symbol}/{start}_{end}.csv so a later request only has to fetch the parts of
+ * its date range that no stored response covers. Responses reaching today or later
+ * are not stored, since the source may still add days to them.
+ */
+public class QuoteCache {
+    private final File dir;
+
+    public QuoteCache(File dir) {
+        this.dir=dir;
+    }
+
+    // Stored ranges of the symbol overlapping [startDate, endDate], sorted by start
+    public List<LocalDate[]> cachedRanges(String symbol, LocalDate startDate, LocalDate endDate) {
+        List<LocalDate[]> ranges = new ArrayList<>();
+        File[] files = symbolDir(symbol).listFiles((d,name)->name.endsWith(".csv"));
+        if(files==null) return ranges;
+        for(File file : files) {
+            String[] bounds = file.getName().substring(0,file.getName().length()-4).split("_");
+            if(bounds.length!=2) continue;
+            LocalDate[] range = new LocalDate[]{LocalDate.parse(bounds[0]),LocalDate.parse(bounds[1])};
+            if(!range[0].isAfter(endDate)&&!range[1].isBefore(startDate)) ranges.add(range);
+        }
+        ranges.sort(Comparator.comparing(range->range[0]));
+        return ranges;
+    }
+
+    // Parts of [startDate, endDate] not covered by any stored response
+    public List<LocalDate[]> missingRanges(String symbol, LocalDate startDate, LocalDate endDate) {
+        List<LocalDate[]> missing = new ArrayList<>();
+        LocalDate cursor = startDate;
+        for(LocalDate[] range : cachedRanges(symbol,startDate,endDate)) {
+            if(range[0].isAfter(cursor)) missing.add(new LocalDate[]{cursor,range[0].minusDays(1)});
+            if(!range[1].isBefore(cursor)) cursor=range[1].plusDays(1);
+        }
+        if(!cursor.isAfter(endDate)) missing.add(new LocalDate[]{cursor,endDate});
+        return missing;
+    }
+
+    // Every stored quote of the symbol within [startDate, endDate]
+    public NavigableMap<LocalDate,Double> read(String symbol, LocalDate startDate, LocalDate endDate) throws IOException {
+        NavigableMap<LocalDate,Double> data = new TreeMap<>();
+        for(LocalDate[] range : cachedRanges(symbol,startDate,endDate)) {
+            try(BufferedReader reader = Files.newBufferedReader(rangeFile(symbol,range[0],range[1]).toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while((line=reader.readLine())!=null) {
+                    int comma = line.indexOf(',');
+                    LocalDate date = LocalDate.parse(line.substring(0,comma));
+                    if(!date.isBefore(startDate)&&!date.isAfter(endDate)) {
+                        data.put(date, Double.valueOf(line.substring(comma+1)));
+                    }
+                }
+            }
+        }
+        return data;
+    }
+
+    public void write(String symbol, LocalDate startDate, LocalDate endDate, NavigableMap<LocalDate,Double> data) throws IOException {
+        if(!endDate.isBefore(LocalDate.now())) return;
+        File symbolDir = symbolDir(symbol);
+        if(!symbolDir.exists()&&!symbolDir.mkdirs()&&!symbolDir.exists()) throw new IOException("Unable to create "+symbolDir);
+        // written to a temporary file first so concurrent runs never read a partial response
+        File tmp = File.createTempFile("quotes",".tmp",symbolDir);
+        try(BufferedWriter writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+            for(Map.Entry<LocalDate,Double> e : data.entrySet()) {
+                writer.write(e.getKey()+","+e.getValue());
+                writer.newLine();
+            }
+        }
+        Files.move(tmp.toPath(), rangeFile(symbol,startDate,endDate).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private File symbolDir(String symbol) {
+        return new File(dir, symbol.toLowerCase().replaceAll("[^a-z0-9.\\-]","_"));
+    }
+
+    private File rangeFile(String symbol, LocalDate startDate, LocalDate endDate) {
+        return new File(symbolDir(symbol), startDate+"_"+endDate+".csv");
+    }
+}
@@ -0,0 +1,13 @@
+package google_api;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.NavigableMap;
+
+/**
+ * Daily prices of one symbol, keyed by date. Implementations must be safe to call
+ * from several threads at once since Requester fetches symbols concurrently.
+ */
+public interface QuoteSource {
+    NavigableMap<LocalDate,Double> fetch(String symbol, LocalDate startDate, LocalDate endDate) throws IOException;
+}
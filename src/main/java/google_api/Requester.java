@@ -1,89 +1,124 @@
 package google_api;
 
-import com.github.kevinsawicki.stocks.DateUtils;
-import com.github.kevinsawicki.stocks.StockQuoteRequest;
-
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.time.LocalDate;
-import java.time.ZoneId;
-import java.time.temporal.TemporalField;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Created by Evan on 4/29/2017.
+ *
+ * Fetches symbols concurrently, at most parallelism requests at a time, through an
+ * optional QuoteCache, and merges the series by date according to a MergePolicy.
+ * Symbols whose request fails are reported and left out of the result.
  */
 public class Requester {
     public static final List<String> HEADERS = Collections.unmodifiableList(Arrays.asList("date","price"));
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    private final QuoteSource source;
+    private final QuoteCache cache;
+    private final int parallelism;
+    private final MergePolicy mergePolicy;
+
+    // cache may be null to always fetch
+    public Requester(QuoteSource source, QuoteCache cache, int parallelism, MergePolicy mergePolicy) {
+        if(parallelism<1) throw new IllegalArgumentException("Parallelism must be positive");
+        this.source=source;
+        this.cache=cache;
+        this.parallelism=parallelism;
+        this.mergePolicy=mergePolicy;
+    }
 
     public static List<List<String>> requestStockData(LocalDate startDate, LocalDate endDate, String... stockSymbols) throws IOException{
-        List<List<List<String>>> toMerge = new ArrayList<>();
-        // test
-        Arrays.stream(stockSymbols).forEach(stockSymbol->{
-            try {
-                StockQuoteRequest request = new StockQuoteRequest();
-                request.setSymbol(stockSymbol);
-                request.setStartDate(DateHelper.fromLocalDate(startDate));
-                request.setEndDate(DateHelper.fromLocalDate(endDate));
+        return new Requester(new StockQuoteSource(), null, DEFAULT_PARALLELISM, MergePolicy.DROP).request(startDate,endDate,stockSymbols);
+    }
 
-                List<List<String>> data = new ArrayList<>();
-                data.add(HEADERS.stream().map(header->header+"_"+stockSymbol).collect(Collectors.toList()));
-                while (request.next()) {
-                    List<String> point = new ArrayList<>();
-                    LocalDate date = DateHelper.fromDate(request.getDate());
-                    point.add(date.toString());
-                    point.add(String.valueOf((request.getOpen()+request.getClose()+request.getHigh()+request.getLow())/4));
-                    data.add(1,point);
+    // Header row (date, price_<symbol>...) followed by one row per merged date in ascending order
+    public List<List<String>> request(LocalDate startDate, LocalDate endDate, String... stockSymbols) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1,Math.min(parallelism,stockSymbols.length)));
+        List<String> symbols = new ArrayList<>();
+        List<NavigableMap<LocalDate,Double>> series = new ArrayList<>();
+        try {
+            List<Future<NavigableMap<LocalDate,Double>>> futures = new ArrayList<>(stockSymbols.length);
+            for(String stockSymbol : stockSymbols) {
+                futures.add(pool.submit(()->fetch(stockSymbol,startDate,endDate)));
+            }
+            for(int i = 0; i < stockSymbols.length; i++) {
+                try {
+                    series.add(futures.get(i).get());
+                    symbols.add(stockSymbols[i]);
+                } catch(ExecutionException e) {
+                    System.out.println("Exception on stock: "+stockSymbols[i]);
+                    e.getCause().printStackTrace();
                 }
-                toMerge.add(data);
-            } catch(Exception e) {
-                System.out.println("Exception on stock: "+stockSymbol);
-                e.printStackTrace();
             }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while requesting stock data", e);
+        } finally {
+            pool.shutdownNow();
+        }
+        return merge(symbols, series);
+    }
 
-        });
-
+    // Quotes of one symbol, only fetching the date ranges the cache does not cover
+    public NavigableMap<LocalDate,Double> fetch(String symbol, LocalDate startDate, LocalDate endDate) throws IOException {
+        if(cache==null) return source.fetch(symbol,startDate,endDate);
+        NavigableMap<LocalDate,Double> data = cache.read(symbol,startDate,endDate);
+        for(LocalDate[] range : cache.missingRanges(symbol,startDate,endDate)) {
+            NavigableMap<LocalDate,Double> fetched = source.fetch(symbol,range[0],range[1]).subMap(range[0],true,range[1],true);
+            cache.write(symbol,range[0],range[1],fetched);
+            data.putAll(fetched);
+        }
+        return data;
+    }
 
+    private List<List<String>> merge(List<String> symbols, List<NavigableMap<LocalDate,Double>> series) {
         List<List<String>> mergedData = new ArrayList<>();
-        toMerge.forEach(timeSeries->{
-            AtomicInteger idx = new AtomicInteger(0);
-            timeSeries.forEach(point->{
-                int i = idx.getAndIncrement();
-                if(mergedData.size()>i) {
-                    mergedData.get(i).addAll(point.subList(1,point.size()));
-                    if(i > 0 && !point.get(0).equals(mergedData.get(i).get(0))) {
-                        System.out.println(point.get(0)+" is not "+mergedData.get(i).get(0));
-                        throw new RuntimeException("Stock dates do not match up!");
-                    }
+        List<String> header = new ArrayList<>(symbols.size()+1);
+        header.add(HEADERS.get(0));
+        for(String symbol : symbols) header.add(HEADERS.get(1)+"_"+symbol);
+        mergedData.add(header);
+        if(series.isEmpty()) return mergedData;
 
-                } else {
-                    if(i==0)point.set(0,HEADERS.get(0));
-                    mergedData.add(point);
-                }
-            });
-        });
+        SortedSet<LocalDate> dates = new TreeSet<>();
+        for(NavigableMap<LocalDate,Double> timeSeries : series) dates.addAll(timeSeries.keySet());
+        Double[] prices = new Double[series.size()];
+        for(LocalDate date : dates) {
+            boolean complete = true;
+            for(int i = 0; i < prices.length; i++) {
+                Double price = series.get(i).get(date);
+                if(price!=null) prices[i]=price;
+                else if(mergePolicy==MergePolicy.DROP) prices[i]=null;
+                if(prices[i]==null) complete=false;
+            }
+            if(!complete) continue;
+            List<String> point = new ArrayList<>(prices.length+1);
+            point.add(date.toString());
+            for(Double price : prices) point.add(String.valueOf(price));
+            mergedData.add(point);
+        }
         return mergedData;
     }
 
-
-
+    // Optional args: base url of an HttpQuoteSource (e.g. a running server.StubQuoteServer) and a cache directory
     public static void main(String[] args) throws IOException{
-        BufferedWriter writer = new BufferedWriter(new FileWriter(new File("sample_stock_output.csv")));
-        requestStockData(LocalDate.of(2014,4,29),LocalDate.of(2017,4,29),"goog","vti","s","luv","msft","fez","vpl","vgk","vea","bnd","intc","wmt","kr","tsla","gm","cmg","t","aapl","amzn","nflx","sina","pcln","pg").forEach(line->{
-            String dataLine = String.join(",",line);
-            System.out.println(dataLine);
-            try {
+        QuoteSource source = args.length>0 ? new HttpQuoteSource(args[0]) : new StockQuoteSource();
+        QuoteCache cache = new QuoteCache(new File(args.length>1 ? args[1] : "quote_cache"));
+        Requester requester = new Requester(source, cache, DEFAULT_PARALLELISM, MergePolicy.FORWARD_FILL);
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(new File("sample_stock_output.csv")))) {
+            for(List<String> line : requester.request(LocalDate.of(2014,4,29),LocalDate.of(2017,4,29),"goog","vti","s","luv","msft","fez","vpl","vgk","vea","bnd","intc","wmt","kr","tsla","gm","cmg","t","aapl","amzn","nflx","sina","pcln","pg")) {
+                String dataLine = String.join(",",line);
+                System.out.println(dataLine);
                 writer.write(dataLine+System.lineSeparator());
-                writer.flush();
-            }catch(Exception e) {
-                e.printStackTrace();
             }
-        });
-
-        writer.close();
+        }
     }
 }
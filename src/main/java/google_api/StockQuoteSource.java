@@ -0,0 +1,29 @@
+package google_api;
+
+import com.github.kevinsawicki.stocks.StockQuoteRequest;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Quotes from the stock-quotes library. The price of a day is the average of its
+ * open, close, high and low.
+ */
+public class StockQuoteSource implements QuoteSource {
+    @Override
+    public NavigableMap<LocalDate,Double> fetch(String symbol, LocalDate startDate, LocalDate endDate) throws IOException {
+        StockQuoteRequest request = new StockQuoteRequest();
+        request.setSymbol(symbol);
+        request.setStartDate(DateHelper.fromLocalDate(startDate));
+        request.setEndDate(DateHelper.fromLocalDate(endDate));
+
+        NavigableMap<LocalDate,Double> data = new TreeMap<>();
+        while (request.next()) {
+            LocalDate date = DateHelper.fromDate(request.getDate());
+            data.put(date, (double)(request.getOpen()+request.getClose()+request.getHigh()+request.getLow())/4);
+        }
+        return data;
+    }
+}
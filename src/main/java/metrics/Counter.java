@@ -0,0 +1,37 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic count that many threads can bump without contending.
+ */
+public class Counter implements CounterMXBean {
+    private final String name;
+    private final LongAdder count = new LongAdder();
+
+    public Counter(String name) {
+        this.name=name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long delta) {
+        count.add(delta);
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public void reset() {
+        count.reset();
+    }
+}
@@ -0,0 +1,126 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free histogram of non negative longs in the style of HdrHistogram: values below 64
+ * are counted exactly and every power of two above is split into 32 linear sub buckets,
+ * so any recorded value is reported within 1/32 (~3%) of itself using a fixed 1888
+ * counters. Recording is a few arithmetic operations and one atomic increment.
+ */
+public class Histogram implements HistogramMXBean {
+    private static final int SUB_BUCKETS = 32;
+    private static final int EXACT = 2*SUB_BUCKETS;
+    private static final int NUM_BUCKETS = EXACT+(63-6)*SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0L);
+
+    public Histogram(String name) {
+        this.name=name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void record(long value) {
+        if(value<0) value=0;
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    // Records the nanoseconds since start, a value of Metrics.start(); nothing when metrics were off at start
+    public void stop(long start) {
+        if(start!=0L) record(System.nanoTime()-start);
+    }
+
+    static int bucket(long value) {
+        if(value<EXACT) return (int)value;
+        int magnitude = 63-Long.numberOfLeadingZeros(value);
+        int shift = magnitude-5;
+        return EXACT+(magnitude-6)*SUB_BUCKETS+(int)((value>>>shift)&(SUB_BUCKETS-1));
+    }
+
+    // Largest value falling into the bucket
+    static long highestValue(int bucket) {
+        if(bucket<EXACT) return bucket;
+        int k = bucket-EXACT;
+        int shift = k/SUB_BUCKETS+1;
+        long lowest = (long)(SUB_BUCKETS+k%SUB_BUCKETS) << shift;
+        return lowest+(1L<<shift)-1;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    @Override
+    public long getMax() {
+        return max.get();
+    }
+
+    @Override
+    public double getMean() {
+        long n = getCount();
+        return n==0 ? 0d : (double)getSum()/n;
+    }
+
+    // Value at or below which a fraction q of the recorded values fall, 0 when empty
+    public long percentile(double q) {
+        long total = 0;
+        long[] snapshot = new long[NUM_BUCKETS];
+        for(int b = 0; b < NUM_BUCKETS; b++) {
+            snapshot[b]=counts.get(b);
+            total+=snapshot[b];
+        }
+        if(total==0) return 0L;
+        long rank = Math.max(1L,(long)Math.ceil(q*total));
+        long seen = 0;
+        for(int b = 0; b < NUM_BUCKETS; b++) {
+            seen+=snapshot[b];
+            if(seen>=rank) return Math.min(highestValue(b),getMax());
+        }
+        return getMax();
+    }
+
+    @Override
+    public long getP50() {
+        return percentile(0.5);
+    }
+
+    @Override
+    public long getP90() {
+        return percentile(0.9);
+    }
+
+    @Override
+    public long getP99() {
+        return percentile(0.99);
+    }
+
+    @Override
+    public long getP999() {
+        return percentile(0.999);
+    }
+
+    @Override
+    public void reset() {
+        for(int b = 0; b < NUM_BUCKETS; b++) counts.set(b,0L);
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+}
@@ -0,0 +1,168 @@
+package metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Process wide counters and histograms for the backtest and server hot paths.
+ *
+ * Off by default (-Dmetrics.enabled=true, setEnabled or the JMX control turn it on). Timed
+ * sections are written as
+ *     long start = Metrics.start();
+ *     ...
+ *     Metrics.INFERENCE.stop(start);
+ * which costs a volatile read and a branch while disabled. Phase histograms are in
+ * nanoseconds; once registerMBeans() has been called every metric is also an MXBean
+ * under the "metrics" domain.
+ */
+public final class Metrics {
+    private static final Map<String,Histogram> histograms = new ConcurrentSkipListMap<>();
+    private static final Map<String,Counter> counters = new ConcurrentSkipListMap<>();
+    private static final Map<String,Object> registered = new ConcurrentHashMap<>();
+    private static volatile boolean enabled = Boolean.getBoolean("metrics.enabled");
+    private static volatile MBeanServer mbeanServer;
+
+    // per phase of a step
+    public static final Histogram LEARN = histogram("phase.learn.nanos");
+    public static final Histogram CLIQUE_TREE = histogram("phase.clique_tree.nanos");
+    public static final Histogram INFERENCE = histogram("phase.inference.nanos");
+    public static final Histogram TRADE_SIZING = histogram("phase.trade_sizing.nanos");
+    public static final Histogram VALUATION = histogram("phase.valuation.nanos");
+    // per step as a whole
+    public static final Histogram STEP = histogram("step.nanos");
+    public static final Histogram STEP_TRADES = histogram("step.trades");
+    public static final Histogram STEP_ALLOCATED_BYTES = histogram("step.allocated_bytes");
+    public static final Counter STEPS = counter("steps");
+    public static final Counter TRADES = counter("trades");
+
+    private Metrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled=enabled;
+    }
+
+    // System.nanoTime() when enabled, 0 otherwise
+    public static long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    public static Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n->register(new Histogram(n), "Histogram", n));
+    }
+
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, n->register(new Counter(n), "Counter", n));
+    }
+
+    public static Map<String,Histogram> getHistograms() {
+        return histograms;
+    }
+
+    public static Map<String,Counter> getCounters() {
+        return counters;
+    }
+
+    public static void reset() {
+        histograms.values().forEach(Histogram::reset);
+        counters.values().forEach(Counter::reset);
+    }
+
+    /**
+     * Records a step that began at start (a value of Metrics.start()) when this thread had
+     * allocated allocatedAtStart bytes (a value of allocatedBytes(), only read when enabled).
+     */
+    public static void endStep(long start, long allocatedAtStart, int numTrades) {
+        if(start==0L) return;
+        STEP.record(System.nanoTime()-start);
+        STEPS.increment();
+        STEP_TRADES.record(numTrades);
+        TRADES.add(numTrades);
+        if(allocatedAtStart>=0) STEP_ALLOCATED_BYTES.record(allocatedBytes()-allocatedAtStart);
+    }
+
+    // Bytes allocated by the current thread, -1 when the JVM does not track them
+    public static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if(threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1L;
+    }
+
+    // Registers the control bean and every metric, present and future, with the platform MBean server
+    public static synchronized void registerMBeans() {
+        if(mbeanServer!=null) return;
+        mbeanServer=ManagementFactory.getPlatformMBeanServer();
+        register(new Control(), "Control", "metrics");
+        histograms.forEach((name,histogram)->register(histogram, "Histogram", name));
+        counters.forEach((name,counter)->register(counter, "Counter", name));
+    }
+
+    private static <T> T register(T bean, String type, String name) {
+        MBeanServer server = mbeanServer;
+        if(server==null||registered.putIfAbsent(type+":"+name, bean)!=null) return bean;
+        try {
+            server.registerMBean(bean, new ObjectName("metrics:type="+type+",name="+ObjectName.quote(name)));
+        } catch(JMException e) {
+            throw new IllegalStateException("Unable to register metric "+name, e);
+        }
+        return bean;
+    }
+
+    /**
+     * Every metric in the Prometheus text format: histograms as summaries with 0.5, 0.9,
+     * 0.99 and 0.999 quantiles plus _count, _sum and _max, counters as _total.
+     */
+    public static String toText() {
+        StringBuilder text = new StringBuilder();
+        histograms.forEach((name,histogram)->{
+            String metric = metricName(name);
+            text.append("# TYPE ").append(metric).append(" summary\n");
+            for(double q : new double[]{0.5,0.9,0.99,0.999}) {
+                text.append(metric).append("{quantile=\"").append(q).append("\"} ").append(histogram.percentile(q)).append('\n');
+            }
+            text.append(metric).append("_count ").append(histogram.getCount()).append('\n');
+            text.append(metric).append("_sum ").append(histogram.getSum()).append('\n');
+            text.append(metric).append("_max ").append(histogram.getMax()).append('\n');
+        });
+        counters.forEach((name,counter)->{
+            String metric = metricName(name)+"_total";
+            text.append("# TYPE ").append(metric).append(" counter\n");
+            text.append(metric).append(' ').append(counter.getCount()).append('\n');
+        });
+        text.append("metrics_enabled ").append(enabled ? 1 : 0).append('\n');
+        return text.toString();
+    }
+
+    private static String metricName(String name) {
+        return name.replaceAll("[^a-zA-Z0-9_]","_");
+    }
+
+    private static class Control implements MetricsControlMXBean {
+        @Override
+        public boolean isEnabled() {
+            return Metrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            Metrics.setEnabled(enabled);
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+}
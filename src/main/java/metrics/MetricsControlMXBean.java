@@ -0,0 +1,12 @@
+package metrics;
+
+/**
+ * JMX switch for Metrics.
+ */
+public interface MetricsControlMXBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    void reset();
+}
@@ -0,0 +1,108 @@
+package model;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Values of every binary node of a TimeGraphLayout at one time step, packed one bit per node.
+ */
+public class Assignment {
+    @Getter
+    private final TimeGraphLayout layout;
+    private final long[] words;
+
+    public Assignment(TimeGraphLayout layout) {
+        this.layout=layout;
+        this.words=new long[layout.numWords()];
+    }
+
+    public int get(int node) {
+        return (int)((words[node>>>6] >>> node) & 1L);
+    }
+
+    public void set(int node, int value) {
+        if(value!=0) words[node>>>6] |= 1L << node;
+        else words[node>>>6] &= ~(1L << node);
+    }
+
+    public int future(int company) {
+        return get(layout.futureNode(company));
+    }
+
+    // Writes every node of the company at once, layer 1 in the lowest bit
+    public void setCompany(int company, long bits) {
+        setBits(layout.node(company,1), bits, layout.getNumLayers());
+    }
+
+    // Writes the lowest numBits bits of bits starting at node
+    void setBits(int node, long bits, int numBits) {
+        long mask = numBits==64 ? -1L : (1L << numBits)-1;
+        bits &= mask;
+        int word = node>>>6;
+        int shift = node&63;
+        words[word] = (words[word] & ~(mask << shift)) | (bits << shift);
+        if(shift+numBits>64) {
+            int spill = 64-shift;
+            words[word+1] = (words[word+1] & ~(mask >>> spill)) | (bits >>> spill);
+        }
+    }
+
+    // Raw packed words, for ModelSnapshot
+    long word(int i) {
+        return words[i];
+    }
+
+    void setWord(int i, long word) {
+        words[i]=word;
+    }
+
+    public Assignment copy() {
+        Assignment copy = new Assignment(layout);
+        System.arraycopy(words,0,copy.words,0,words.length);
+        return copy;
+    }
+
+    public void copyFrom(Assignment other) {
+        System.arraycopy(other.words,0,words,0,words.length);
+    }
+
+    // Clears every node not set in mask
+    public Assignment retain(Assignment mask) {
+        for(int i = 0; i < words.length; i++) words[i]&=mask.words[i];
+        return this;
+    }
+
+    // Map form expected by the GraphicalModeling graphs
+    public Map<String,Integer> toMap() {
+        Map<String,Integer> map = new HashMap<>();
+        for(int node = 0; node < layout.numNodes(); node++) {
+            map.put(layout.label(node),get(node));
+        }
+        return map;
+    }
+
+    // Map form of the observed (non future) nodes only
+    public Map<String,Integer> toEvidenceMap() {
+        Map<String,Integer> map = new HashMap<>();
+        for(int node = 0; node < layout.numNodes(); node++) {
+            if(!layout.isFuture(node)) map.put(layout.label(node),get(node));
+        }
+        return map;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if(this==other) return true;
+        if(!(other instanceof Assignment)) return false;
+        Assignment that = (Assignment)other;
+        return layout.getNumLayers()==that.layout.getNumLayers() && Arrays.equals(words,that.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+}
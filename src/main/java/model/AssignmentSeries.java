@@ -0,0 +1,97 @@
+package model;
+
+import data.UpDownSeries;
+import lombok.Getter;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Sliding window view of an UpDownSeries as TimeGraph assignments. Step t of the series
+ * is the row start+t of the underlying data: company_j holds the movement into row
+ * start+t-numLayers+j and company_future the movement into row start+t. Nothing is
+ * materialized, so changing numLayers or the range is free.
+ */
+public class AssignmentSeries {
+    @Getter
+    private final UpDownSeries upDown;
+    @Getter
+    private final TimeGraphLayout layout;
+    @Getter
+    private final int start;
+    private final int size;
+
+    public AssignmentSeries(UpDownSeries upDown, TimeGraphLayout layout, int start, int size) {
+        if(upDown.numSymbols()!=layout.numCompanies()) throw new IllegalArgumentException("Layout does not match the up/down series");
+        if(start<layout.getNumLayers()) throw new IllegalArgumentException("Series must start at least numLayers rows into the data");
+        if(start+size>upDown.size()) throw new IndexOutOfBoundsException("Series runs past the end of the data");
+        this.upDown=upDown;
+        this.layout=layout;
+        this.start=start;
+        this.size=size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getNumLayers() {
+        return layout.getNumLayers();
+    }
+
+    public AssignmentSeries withNumLayers(int numLayers) {
+        return new AssignmentSeries(upDown,layout.withNumLayers(numLayers),start,size);
+    }
+
+    public AssignmentSeries subSeries(int from, int to) {
+        if(from<0||to>size||from>to) throw new IndexOutOfBoundsException("Sub series ["+from+","+to+") out of range for size "+size);
+        return new AssignmentSeries(upDown,layout,start+from,to-from);
+    }
+
+    public int get(int t, int node) {
+        int numLayers = layout.getNumLayers();
+        return upDown.get(layout.company(node), start+t-numLayers+layout.layer(node));
+    }
+
+    public Assignment get(int t) {
+        return get(t, new Assignment(layout));
+    }
+
+    // Fills into with step t; each company's block is one bit field copy out of its up/down words
+    public Assignment get(int t, Assignment into) {
+        if(t<0||t>=size) throw new IndexOutOfBoundsException("Step "+t+" out of range for size "+size);
+        int numLayers = layout.getNumLayers();
+        int first = start+t-numLayers+1;
+        for(int c = 0; c < layout.numCompanies(); c++) {
+            into.setBits(layout.node(c,1), bitField(upDown.words(c), first, numLayers), numLayers);
+        }
+        return into;
+    }
+
+    private static long bitField(long[] words, int from, int numBits) {
+        int word = from>>>6;
+        int shift = from&63;
+        long bits = words[word] >>> shift;
+        if(shift+numBits>64) bits |= words[word+1] << (64-shift);
+        return bits;
+    }
+
+    // Map adapter for the GraphicalModeling graphs; maps are created on access and not cached
+    public List<Map<String,Integer>> asMaps() {
+        return new MapView();
+    }
+
+    private class MapView extends AbstractList<Map<String,Integer>> implements RandomAccess {
+        @Override
+        public Map<String,Integer> get(int t) {
+            return AssignmentSeries.this.get(t).toMap();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package model;
+
+import lombok.Getter;
+import metrics.Metrics;
+import model.inference.InferenceEngine;
+
+/**
+ * Closed form future marginals of a TimeGraph network with every history node observed.
+ *
+ * With the whole history as evidence the future nodes are independent of each other, and
+ * the posterior of future node d is the normalized product of its cross factors, each
+ * reduced to the row its observed parent selects. No clique tree is built: the (parent,
+ * row) terms of every future node are laid out in flat arrays once per structure, and the
+ * potentials live outside (see OnlineTimeGraphModel), so one instance is shared read-only
+ * by every model and thread using the network. Missing history needs one of the
+ * approximate engines in model.inference instead.
+ */
+public class ClosedFormMarginals implements InferenceEngine {
+    @Getter
+    private final TimeGraphFactors factors;
+    // the terms of future node d are entries [termStart[d], termStart[d+1])
+    private final int[] termStart;
+    private final int[] evidenceNodes;
+    private final int[] rowOffsets;
+
+    public ClosedFormMarginals(TimeGraphFactors factors) {
+        long start = Metrics.start();
+        this.factors=factors;
+        TimeGraphLayout layout = factors.getLayout();
+        int numCompanies = layout.numCompanies();
+        this.termStart=new int[numCompanies+1];
+        int numTerms = 0;
+        for(int d = 0; d < numCompanies; d++) {
+            numTerms+=factors.crossFactors(d).length;
+        }
+        this.evidenceNodes=new int[numTerms];
+        this.rowOffsets=new int[numTerms];
+        int k = 0;
+        for(int d = 0; d < numCompanies; d++) {
+            termStart[d]=k;
+            for(int f : factors.crossFactors(d)) {
+                evidenceNodes[k]=factors.first(f);
+                rowOffsets[k]=factors.offset(f);
+                k++;
+            }
+        }
+        termStart[numCompanies]=k;
+        Metrics.CLIQUE_TREE.stop(start);
+    }
+
+    public TimeGraphLayout getLayout() {
+        return factors.getLayout();
+    }
+
+    // Nodes whose values the future marginals depend on: the last layer of every cross parent
+    public Assignment evidenceMask() {
+        Assignment mask = new Assignment(getLayout());
+        for(int node : evidenceNodes) mask.set(node,1);
+        return mask;
+    }
+
+    public int numTerms() {
+        return evidenceNodes.length;
+    }
+
+    /**
+     * Fills out[d] with P(company d goes up | evidence) given log potentials laid out like
+     * the factor table. Only the non future nodes of evidence are read.
+     */
+    public double[] futureMarginals(double[] logPotentials, Assignment evidence, double[] out) {
+        for(int d = 0; d < termStart.length-1; d++) {
+            double down = 0d;
+            double up = 0d;
+            for(int k = termStart[d]; k < termStart[d+1]; k++) {
+                int row = rowOffsets[k]+2*evidence.get(evidenceNodes[k]);
+                down+=logPotentials[row];
+                up+=logPotentials[row+1];
+            }
+            out[d] = 1d/(1d+Math.exp(down-up));
+        }
+        return out;
+    }
+
+    // Same reading the potentials in place from an off-heap FactorArena
+    public double[] futureMarginals(FactorArena logPotentials, Assignment evidence, double[] out) {
+        for(int d = 0; d < termStart.length-1; d++) {
+            double down = 0d;
+            double up = 0d;
+            for(int k = termStart[d]; k < termStart[d+1]; k++) {
+                int row = rowOffsets[k]+2*evidence.get(evidenceNodes[k]);
+                down+=logPotentials.get(row);
+                up+=logPotentials.get(row+1);
+            }
+            out[d] = 1d/(1d+Math.exp(down-up));
+        }
+        return out;
+    }
+
+    // Exact, stateless and thread safe, but only defined with every history node observed
+    @Override
+    public double[] futureMarginals(double[] logPotentials, Assignment evidence, Assignment observed, double[] out) {
+        checkObserved(observed);
+        return futureMarginals(logPotentials, evidence, out);
+    }
+
+    @Override
+    public double[] futureMarginals(FactorArena logPotentials, Assignment evidence, Assignment observed, double[] out) {
+        checkObserved(observed);
+        return futureMarginals(logPotentials, evidence, out);
+    }
+
+    private void checkObserved(Assignment observed) {
+        if(observed!=null) {
+            TimeGraphLayout layout = factors.getLayout();
+            for(int node = 0; node < layout.numNodes(); node++) {
+                if(!layout.isFuture(node)&&observed.get(node)==0) {
+                    throw new IllegalArgumentException("Exact inference needs every history node observed, "+layout.label(node)+" is missing");
+                }
+            }
+        }
+    }
+}
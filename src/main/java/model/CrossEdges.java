@@ -0,0 +1,171 @@
+package model;
+
+import data.UpDownSeries;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Which companies' last layers feed each company's future node. The dense structure
+ * connects every pair, which costs numCompanies^2 cross factors; select() keeps a
+ * company's own edge plus its top maxParents other companies, scored from the 2x2
+ * contingency table of (c went up at t-1, d went up at t) over a training series.
+ * The tables come straight from the packed up/down words with popcounts.
+ */
+public class CrossEdges {
+    public enum Score { MUTUAL_INFORMATION, CORRELATION }
+
+    // parents[d] ascending, children[c] ascending
+    private final int[][] parents;
+    private final int[][] children;
+
+    public CrossEdges(int[][] parents) {
+        int numCompanies = parents.length;
+        int[] numChildren = new int[numCompanies];
+        this.parents=new int[numCompanies][];
+        for(int d = 0; d < numCompanies; d++) {
+            int[] sorted = parents[d].clone();
+            Arrays.sort(sorted);
+            for(int i = 0; i < sorted.length; i++) {
+                if(sorted[i]<0||sorted[i]>=numCompanies) throw new IllegalArgumentException("Parent "+sorted[i]+" out of range");
+                if(i>0&&sorted[i]==sorted[i-1]) throw new IllegalArgumentException("Duplicate parent "+sorted[i]+" of company "+d);
+                numChildren[sorted[i]]++;
+            }
+            this.parents[d]=sorted;
+        }
+        this.children=new int[numCompanies][];
+        for(int c = 0; c < numCompanies; c++) {
+            children[c]=new int[numChildren[c]];
+            numChildren[c]=0;
+        }
+        for(int d = 0; d < numCompanies; d++) {
+            for(int c : this.parents[d]) {
+                children[c][numChildren[c]++]=d;
+            }
+        }
+    }
+
+    public static CrossEdges dense(int numCompanies) {
+        int[] all = IntStream.range(0,numCompanies).toArray();
+        int[][] parents = new int[numCompanies][];
+        Arrays.fill(parents,all);
+        return new CrossEdges(parents);
+    }
+
+    public static CrossEdges select(AssignmentSeries training, int maxParents) {
+        return select(training,maxParents,Score.MUTUAL_INFORMATION);
+    }
+
+    /**
+     * Learns the structure from the future steps of training. A negative maxParents, or
+     * one covering every other company, gives the dense structure.
+     */
+    public static CrossEdges select(AssignmentSeries training, int maxParents, Score score) {
+        int numCompanies = training.getLayout().numCompanies();
+        if(maxParents<0||maxParents>=numCompanies-1) return dense(numCompanies);
+        UpDownSeries upDown = training.getUpDown();
+        int from = training.getStart();
+        int to = from+training.size();
+        // current[c] masks the future rows of training, lagged[c] holds the previous row's bit there
+        long[][] current = new long[numCompanies][];
+        long[][] lagged = new long[numCompanies][];
+        int[] numUp = new int[numCompanies];
+        int[] numLaggedUp = new int[numCompanies];
+        IntStream.range(0,numCompanies).parallel().forEach(c->{
+            current[c]=mask(upDown.words(c),from,to,0);
+            lagged[c]=mask(upDown.words(c),from,to,1);
+            numUp[c]=popcount(current[c]);
+            numLaggedUp[c]=popcount(lagged[c]);
+        });
+        int n = to-from;
+        int[][] parents = new int[numCompanies][];
+        IntStream.range(0,numCompanies).parallel().forEach(d->{
+            int[] best = new int[maxParents];
+            double[] bestScores = new double[maxParents];
+            int numBest = 0;
+            long[] y = current[d];
+            for(int c = 0; c < numCompanies; c++) {
+                if(c==d) continue;
+                long[] x = lagged[c];
+                int both = 0;
+                for(int w = 0; w < y.length; w++) {
+                    both+=Long.bitCount(x[w]&y[w]);
+                }
+                double s = score(score,n,numLaggedUp[c],numUp[d],both);
+                // insertion into the running top k; ties keep the lower company
+                int i = numBest<maxParents ? numBest++ : maxParents;
+                while(i>0&&bestScores[i-1]<s) {
+                    if(i<maxParents) {
+                        best[i]=best[i-1];
+                        bestScores[i]=bestScores[i-1];
+                    }
+                    i--;
+                }
+                if(i<maxParents) {
+                    best[i]=c;
+                    bestScores[i]=s;
+                }
+            }
+            int[] selected = Arrays.copyOf(best,numBest+1);
+            selected[numBest]=d;
+            parents[d]=selected;
+        });
+        return new CrossEdges(parents);
+    }
+
+    // bits [from,to) of words shifted up by lag, so bit t holds the movement into row t-lag
+    private static long[] mask(long[] words, int from, int to, int lag) {
+        long[] out = new long[UpDownSeries.numWords(to)];
+        for(int t = from; t < to; t++) {
+            int src = t-lag;
+            if((words[src>>>6]>>>src&1L)!=0) out[t>>>6] |= 1L<<t;
+        }
+        return out;
+    }
+
+    private static int popcount(long[] words) {
+        int count = 0;
+        for(long w : words) count+=Long.bitCount(w);
+        return count;
+    }
+
+    // n observations, x up nx times, y up ny times, both up nxy times
+    static double score(Score score, int n, int nx, int ny, int nxy) {
+        if(n==0) return 0d;
+        long n11 = nxy;
+        long n10 = nx-nxy;
+        long n01 = ny-nxy;
+        long n00 = n-nx-ny+nxy;
+        if(score==Score.CORRELATION) {
+            double denominator = Math.sqrt((double)nx*(n-nx)*ny*(n-ny));
+            return denominator==0d ? 0d : Math.abs(n11*n00-n10*n01)/denominator;
+        }
+        return information(n11,nx,ny,n)+information(n10,nx,n-ny,n)+information(n01,n-nx,ny,n)+information(n00,n-nx,n-ny,n);
+    }
+
+    private static double information(long nxy, long nx, long ny, long n) {
+        return nxy==0 ? 0d : (double)nxy/n*Math.log((double)nxy*n/((double)nx*ny));
+    }
+
+    public int numCompanies() {
+        return parents.length;
+    }
+
+    public int[] parents(int company) {
+        return parents[company];
+    }
+
+    public int[] children(int company) {
+        return children[company];
+    }
+
+    public int numEdges() {
+        int edges = 0;
+        for(int[] p : parents) edges+=p.length;
+        return edges;
+    }
+
+    public boolean isDense() {
+        return numEdges()==parents.length*parents.length;
+    }
+}
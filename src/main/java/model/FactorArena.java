@@ -0,0 +1,54 @@
+package model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+/**
+ * Flat table of doubles laid out like the cells of a TimeGraphFactors, held in one direct
+ * buffer outside the Java heap: factor f owns [offset(f), offset(f)+numCells(f)). A large
+ * network's tables then cost the collector nothing to copy or promote, and learning and
+ * inference read and write them in place. The memory is released with the arena.
+ */
+public class FactorArena {
+    private final DoubleBuffer cells;
+
+    public FactorArena(int numCells) {
+        if(numCells<0||numCells>Integer.MAX_VALUE/8) throw new IllegalArgumentException("Cannot hold "+numCells+" cells in one arena");
+        this.cells=ByteBuffer.allocateDirect(8*numCells).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+    }
+
+    public int numCells() {
+        return cells.capacity();
+    }
+
+    public double get(int cell) {
+        return cells.get(cell);
+    }
+
+    public void set(int cell, double value) {
+        cells.put(cell,value);
+    }
+
+    // Heap copy of the table
+    public double[] toArray() {
+        return copyTo(new double[cells.capacity()]);
+    }
+
+    // New arena holding the same cells
+    public FactorArena copy() {
+        FactorArena copy = new FactorArena(cells.capacity());
+        DoubleBuffer view = cells.duplicate();
+        view.clear();
+        copy.cells.put(view);
+        copy.cells.clear();
+        return copy;
+    }
+
+    public double[] copyTo(double[] into) {
+        DoubleBuffer view = cells.duplicate();
+        view.clear();
+        view.get(into,0,cells.capacity());
+        return into;
+    }
+}
@@ -0,0 +1,169 @@
+package model;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Sufficient statistics of a TimeGraph network: how often each cell of each factor
+ * was selected by the observed assignments. Adding or removing one observation is
+ * O(#factors), and the alpha smoothed factor weights can be read at any time.
+ *
+ * A long training series can be counted in parallel: its steps are split into one
+ * contiguous shard per worker of a fork-join pool, each counted into its own array,
+ * and the arrays are summed pairwise on the way back up. Counts are integers, so the
+ * result is exactly that of the sequential addAll whatever the split.
+ */
+public class FactorCounts {
+    @Getter
+    private final TimeGraphFactors factors;
+    // below this many steps a shard is not worth a task
+    private static final int MIN_SHARD_STEPS = 256;
+    private long[] counts;
+    // true while counts is a FrozenTimeGraphModel's array, copied on the first write
+    private boolean shared;
+
+    public FactorCounts(TimeGraphFactors factors) {
+        this.factors=factors;
+        this.counts=new long[factors.numCells()];
+    }
+
+    // Reads the given counts, which must not change, until the first write
+    FactorCounts(TimeGraphFactors factors, long[] counts) {
+        this.factors=factors;
+        this.counts=counts;
+        this.shared=true;
+    }
+
+    private long[] writable() {
+        if(shared) {
+            counts=counts.clone();
+            shared=false;
+        }
+        return counts;
+    }
+
+    public void add(Assignment assignment) {
+        add(assignment,1);
+    }
+
+    public void remove(Assignment assignment) {
+        add(assignment,-1);
+    }
+
+    public void add(Assignment assignment, long delta) {
+        long[] counts = writable();
+        for(int f = 0; f < factors.numFactors(); f++) {
+            counts[factors.cell(f,assignment)]+=delta;
+        }
+    }
+
+    public void increment(int cell, long delta) {
+        writable()[cell]+=delta;
+    }
+
+    public void addAll(AssignmentSeries series) {
+        Assignment assignment = new Assignment(series.getLayout());
+        for(int t = 0; t < series.size(); t++) {
+            add(series.get(t,assignment));
+        }
+    }
+
+    public void addAll(AssignmentSeries series, ForkJoinPool pool) {
+        int minShard = Math.max(MIN_SHARD_STEPS, (series.size()+pool.getParallelism()-1)/pool.getParallelism());
+        if(series.size()<=minShard) {
+            addAll(series);
+            return;
+        }
+        long[] total = pool.invoke(new Shard(factors, series, 0, series.size(), minShard));
+        long[] counts = writable();
+        for(int cell = 0; cell < counts.length; cell++) {
+            counts[cell]+=total[cell];
+        }
+    }
+
+    // Counts steps [from, to) of a series into a fresh array
+    private static class Shard extends RecursiveTask<long[]> {
+        private static final long serialVersionUID = 1L;
+        private final TimeGraphFactors factors;
+        private final AssignmentSeries series;
+        private final int from;
+        private final int to;
+        private final int minShard;
+
+        private Shard(TimeGraphFactors factors, AssignmentSeries series, int from, int to, int minShard) {
+            this.factors=factors;
+            this.series=series;
+            this.from=from;
+            this.to=to;
+            this.minShard=minShard;
+        }
+
+        @Override
+        protected long[] compute() {
+            if(to-from<=minShard) {
+                long[] counts = new long[factors.numCells()];
+                Assignment assignment = new Assignment(series.getLayout());
+                for(int t = from; t < to; t++) {
+                    series.get(t,assignment);
+                    for(int f = 0; f < factors.numFactors(); f++) {
+                        counts[factors.cell(f,assignment)]++;
+                    }
+                }
+                return counts;
+            }
+            int mid = (from+to)>>>1;
+            Shard left = new Shard(factors, series, from, mid, minShard);
+            left.fork();
+            long[] counts = new Shard(factors, series, mid, to, minShard).compute();
+            long[] leftCounts = left.join();
+            for(int cell = 0; cell < counts.length; cell++) {
+                counts[cell]+=leftCounts[cell];
+            }
+            return counts;
+        }
+    }
+
+    public long count(int cell) {
+        return counts[cell];
+    }
+
+    // First cell of the row (same first node value) that contains the cell
+    public int rowStart(int factor, int cell) {
+        int offset = factors.offset(factor);
+        return factors.isUnary(factor) ? offset : offset+((cell-offset)&~1);
+    }
+
+    // Alpha smoothed probability of the cell given the value of the factor's first node
+    public double probability(int factor, int cell, double alpha) {
+        int row = rowStart(factor,cell);
+        return (counts[cell]+alpha)/(counts[row]+counts[row+1]+2*alpha);
+    }
+
+    // Every factor's alpha smoothed table, laid out like the cells
+    public double[] probabilities(double alpha) {
+        double[] probabilities = new double[counts.length];
+        for(int row = 0; row < counts.length; row+=2) {
+            double total = counts[row]+counts[row+1]+2*alpha;
+            probabilities[row]=(counts[row]+alpha)/total;
+            probabilities[row+1]=(counts[row+1]+alpha)/total;
+        }
+        return probabilities;
+    }
+
+    // Replaces every count, e.g. with those saved in a ModelSnapshot
+    void load(long[] counts) {
+        if(counts.length!=this.counts.length) throw new IllegalArgumentException("Expected "+this.counts.length+" counts but got "+counts.length);
+        System.arraycopy(counts,0,writable(),0,counts.length);
+    }
+
+    long[] toArray() {
+        return counts.clone();
+    }
+
+    public void clear() {
+        Arrays.fill(writable(),0L);
+    }
+}
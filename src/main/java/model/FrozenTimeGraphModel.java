@@ -0,0 +1,92 @@
+package model;
+
+import lombok.Getter;
+import metrics.Metrics;
+import model.inference.InferenceEngine;
+
+/**
+ * Immutable learned state of an OnlineTimeGraphModel (OnlineTimeGraphModel.freeze): its
+ * counts, potentials and window. Exact inference on it is thread safe, so one trained
+ * network can be shared by any number of policies and backtests running in parallel.
+ *
+ * overlay() gives a user its own OnlineTimeGraphModel starting from this state without
+ * retraining. The overlay reads the base's tables in place until its first observe, which
+ * copies the whole FactorCounts and potentials: every observation updates a row of every
+ * factor, so a learning overlay differs from its base everywhere after one step. Only
+ * overlays that never observe (frozen policies, serving) share the base's memory; every
+ * learning variant costs a full copy of the tables, the training time is what it saves.
+ */
+public class FrozenTimeGraphModel {
+    @Getter
+    private final ClosedFormMarginals closedForm;
+    @Getter
+    private final TimeGraphFactors factors;
+    @Getter
+    private final double alpha;
+    @Getter
+    private final int windowSize;
+    private final long[] counts;
+    // exactly one of the two holds the potentials
+    private final double[] logWeights;
+    private final FactorArena arena;
+    // oldest first
+    private final Assignment[] window;
+
+    FrozenTimeGraphModel(ClosedFormMarginals closedForm, double alpha, int windowSize, long[] counts, double[] logWeights, FactorArena arena, Assignment[] window) {
+        this.closedForm=closedForm;
+        this.factors=closedForm.getFactors();
+        this.alpha=alpha;
+        this.windowSize=windowSize;
+        this.counts=counts;
+        this.logWeights=logWeights;
+        this.arena=arena;
+        this.window=new Assignment[window.length];
+        for(int i = 0; i < window.length; i++) {
+            this.window[i]=window[i].copy();
+        }
+    }
+
+    // New model sharing this one's tables until it observes
+    public OnlineTimeGraphModel overlay() {
+        return new OnlineTimeGraphModel(this, counts, logWeights, arena, window);
+    }
+
+    public int numObservations() {
+        return window.length;
+    }
+
+    // Copy of the i-th oldest observation in the window
+    public Assignment observation(int i) {
+        return window[i].copy();
+    }
+
+    public long count(int cell) {
+        return counts[cell];
+    }
+
+    public double logWeight(int cell) {
+        return arena!=null ? arena.get(cell) : logWeights[cell];
+    }
+
+    public boolean isOffHeap() {
+        return arena!=null;
+    }
+
+    // Same as OnlineTimeGraphModel.futureMarginals(evidence, out)
+    public double[] futureMarginals(Assignment evidence, double[] out) {
+        long start = Metrics.start();
+        if(arena!=null) closedForm.futureMarginals(arena, evidence, out);
+        else closedForm.futureMarginals(logWeights, evidence, out);
+        Metrics.INFERENCE.stop(start);
+        return out;
+    }
+
+    // Thread safe only as far as the engine is
+    public double[] futureMarginals(InferenceEngine engine, Assignment evidence, Assignment observed, double[] out) {
+        long start = Metrics.start();
+        if(arena!=null) engine.futureMarginals(arena, evidence, observed, out);
+        else engine.futureMarginals(logWeights, evidence, observed, out);
+        Metrics.INFERENCE.stop(start);
+        return out;
+    }
+}
@@ -0,0 +1,187 @@
+package model;
+
+import lombok.Getter;
+import metrics.Counter;
+import metrics.Metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded memo of an OnlineTimeGraphModel's exact future marginals, keyed by the part of
+ * the evidence they depend on (ClosedFormMarginals.evidenceMask) at the model's current
+ * version. Any observe() bumps the version and the next lookup drops every entry, so the
+ * cache only pays off while the model is frozen: serving, or the test window of a fold.
+ *
+ * Lookups take no lock: each thread masks the evidence into its own probe and reads a
+ * concurrent map, and a miss computes the marginals outside any lock before offering
+ * them with putIfAbsent. Eviction is sampled LRU: entries also sit in a table of capacity
+ * slots and remember the clock, which ticks once per insert, at their last use. A full
+ * cache replaces the least recently used of EVICTION_SAMPLES random slots. A hit only
+ * writes to its entry when the clock has moved since that entry's last use. Entries also
+ * carry the version they were computed at, so one inserted while another thread
+ * invalidates is never served.
+ * Worth attaching only where evidence repeats; see coversAllPatterns.
+ */
+public class MarginalCache {
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static final int EVICTION_SAMPLES = 8;
+    public static final Counter HITS = Metrics.counter("marginal_cache.hits");
+    public static final Counter MISSES = Metrics.counter("marginal_cache.misses");
+    public static final Counter EVICTIONS = Metrics.counter("marginal_cache.evictions");
+    public static final Counter INVALIDATIONS = Metrics.counter("marginal_cache.invalidations");
+
+    @Getter
+    private final OnlineTimeGraphModel model;
+    @Getter
+    private final int capacity;
+    private final Assignment mask;
+    private final ThreadLocal<Assignment> probes;
+    private final ConcurrentHashMap<Assignment,Entry> entries = new ConcurrentHashMap<>();
+    // every entry also holds one slot, which is what eviction samples from
+    private final AtomicReferenceArray<Entry> slots;
+    private final AtomicInteger usedSlots = new AtomicInteger();
+    private final AtomicLong clock = new AtomicLong();
+    private volatile long version = -1;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public MarginalCache(OnlineTimeGraphModel model) {
+        this(model,DEFAULT_CAPACITY);
+    }
+
+    public MarginalCache(OnlineTimeGraphModel model, int capacity) {
+        if(capacity<1) throw new IllegalArgumentException("Capacity must be positive");
+        this.model=model;
+        this.capacity=capacity;
+        this.slots=new AtomicReferenceArray<>(capacity);
+        this.mask=model.getClosedForm().evidenceMask();
+        this.probes=ThreadLocal.withInitial(()->new Assignment(mask.getLayout()));
+    }
+
+    // True when every evidence pattern the marginals depend on fits in capacity entries
+    public static boolean coversAllPatterns(OnlineTimeGraphModel model, int capacity) {
+        Assignment mask = model.getClosedForm().evidenceMask();
+        int numEvidenceNodes = 0;
+        for(int node = 0; node < mask.getLayout().numNodes(); node++) {
+            numEvidenceNodes+=mask.get(node);
+        }
+        return numEvidenceNodes<31 && (1<<numEvidenceNodes)<=capacity;
+    }
+
+    // Same contract as OnlineTimeGraphModel.futureMarginals(evidence, out)
+    public double[] futureMarginals(Assignment evidence, double[] out) {
+        long current = model.getVersion();
+        if(current!=version) invalidate(current);
+        Assignment probe = probes.get();
+        probe.copyFrom(evidence);
+        Entry cached = entries.get(probe.retain(mask));
+        if(cached!=null&&cached.version==current) {
+            hits.increment();
+            if(Metrics.isEnabled()) HITS.increment();
+            long tick = clock.get();
+            if(cached.lastUsed!=tick) cached.lastUsed=tick;
+            System.arraycopy(cached.marginals,0,out,0,cached.marginals.length);
+            return out;
+        }
+        misses.increment();
+        if(Metrics.isEnabled()) MISSES.increment();
+        model.futureMarginals(evidence, out);
+        Entry entry = new Entry(probe.copy(), out.clone(), current, clock.incrementAndGet());
+        if(entries.putIfAbsent(entry.key, entry)==null) place(entry);
+        return out;
+    }
+
+    private synchronized void invalidate(long current) {
+        if(current==version) return;
+        if(!entries.isEmpty()) {
+            entries.clear();
+            for(int i = 0; i < capacity; i++) slots.set(i, null);
+            usedSlots.set(0);
+            invalidations.increment();
+            if(Metrics.isEnabled()) INVALIDATIONS.increment();
+        }
+        version=current;
+    }
+
+    // Puts a new entry in a free slot, or in place of the least recently used sampled one
+    private void place(Entry entry) {
+        while(true) {
+            int used = usedSlots.get();
+            if(used<capacity) {
+                if(usedSlots.compareAndSet(used, used+1)) {
+                    slots.set(used, entry);
+                    return;
+                }
+                continue;
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int victimSlot = -1;
+            Entry victim = null;
+            for(int i = 0; i < EVICTION_SAMPLES; i++) {
+                int slot = random.nextInt(capacity);
+                Entry sampled = slots.get(slot);
+                if(sampled!=null&&(victim==null||sampled.lastUsed<victim.lastUsed)) {
+                    victim=sampled;
+                    victimSlot=slot;
+                }
+            }
+            // slots still being filled in by other inserts
+            if(victim==null) continue;
+            if(slots.compareAndSet(victimSlot, victim, entry)) {
+                entries.remove(victim.key, victim);
+                evictions.increment();
+                if(Metrics.isEnabled()) EVICTIONS.increment();
+                return;
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    public double hitRate() {
+        long h = hits.sum();
+        long lookups = h+misses.sum();
+        return lookups==0 ? 0d : (double)h/lookups;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static class Entry {
+        private final Assignment key;
+        private final double[] marginals;
+        // model version the marginals were computed at
+        private final long version;
+        // clock at the last use, read racily by eviction
+        private volatile long lastUsed;
+
+        private Entry(Assignment key, double[] marginals, long version, long lastUsed) {
+            this.key=key;
+            this.marginals=marginals;
+            this.version=version;
+            this.lastUsed=lastUsed;
+        }
+    }
+}
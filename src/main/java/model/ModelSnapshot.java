@@ -0,0 +1,259 @@
+package model;
+
+import data.PriceMatrix;
+import lombok.Getter;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Trained OnlineTimeGraphModel in a compact binary file, so a service starts from the
+ * learned factors instead of rebuilding the dataset, selecting the cross edges and
+ * replaying the window. Optionally carries the evidence and the last price rows a
+ * PredictionService serves from.
+ *
+ * Layout (big endian): magic, version, numCompanies, numLayers, windowSize,
+ * numObservations, numCells, numPriceRows, hasLatest and hasDates flags, alpha, symbols
+ * and price dates as length-prefixed UTF-8, the parents of every company as a count
+ * followed by the ids, zero padding to an 8 byte boundary, then numCells counts (longs),
+ * numCells log weights (doubles), the window oldest first and the latest evidence as
+ * packed assignment words, and one column of numPriceRows doubles per symbol.
+ *
+ * Loading maps the file read only, parses the header from a mapping of the whole file
+ * (only the pages touched are read), and copies every section into heap arrays; nothing
+ * is served from the mapping once load returns, since the model keeps learning on
+ * its own counts and weights. The log weights are recomputed from the counts and the
+ * file is rejected when they differ bit for bit from the stored ones, which holds
+ * across platforms because OnlineTimeGraphModel takes its logs with StrictMath.
+ */
+public class ModelSnapshot {
+    public static final int MAGIC = 0x54474D53; // "TGMS"
+    public static final int VERSION = 2;
+
+    @Getter
+    private final OnlineTimeGraphModel model;
+    // null when not saved
+    @Getter
+    private final Assignment latest;
+    @Getter
+    private final PriceMatrix prices;
+
+    public ModelSnapshot(OnlineTimeGraphModel model, Assignment latest, PriceMatrix prices) {
+        if(prices!=null&&!prices.getSymbols().equals(model.getFactors().getLayout().getCompanies())) {
+            throw new IllegalArgumentException("Prices and model have different symbols");
+        }
+        this.model=model;
+        this.latest=latest;
+        this.prices=prices;
+    }
+
+    public static boolean isSnapshot(File file) throws IOException {
+        try(DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return file.length()>=4 && in.readInt()==MAGIC;
+        }
+    }
+
+    public static ModelSnapshot load(File file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long headerSize = Math.min(channel.size(), Integer.MAX_VALUE);
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, headerSize);
+            if(header.getInt()!=MAGIC) throw new IOException("Not a model snapshot: "+file);
+            int version = header.getInt();
+            if(version!=VERSION) throw new IOException("Unsupported snapshot version "+version+" in "+file);
+            int numCompanies = header.getInt();
+            int numLayers = header.getInt();
+            int windowSize = header.getInt();
+            int numObservations = header.getInt();
+            int numCells = header.getInt();
+            int numPriceRows = header.getInt();
+            boolean hasLatest = header.get()!=0;
+            boolean hasDates = header.get()!=0;
+            double alpha = header.getDouble();
+            List<String> symbols = new ArrayList<>(numCompanies);
+            for(int c = 0; c < numCompanies; c++) {
+                symbols.add(readString(header));
+            }
+            String[] dates = null;
+            if(hasDates) {
+                dates = new String[numPriceRows];
+                for(int r = 0; r < numPriceRows; r++) {
+                    dates[r]=readString(header);
+                }
+            }
+            int[][] parents = new int[numCompanies][];
+            for(int d = 0; d < numCompanies; d++) {
+                parents[d]=new int[header.getInt()];
+                header.asIntBuffer().get(parents[d]);
+                header.position(header.position()+4*parents[d].length);
+            }
+            TimeGraphLayout layout = new TimeGraphLayout(symbols, numLayers);
+            TimeGraphFactors factors = new TimeGraphFactors(layout, new CrossEdges(parents));
+            if(factors.numCells()!=numCells) throw new IOException("Snapshot has "+numCells+" cells but its structure has "+factors.numCells()+": "+file);
+
+            long offset = align(header.position());
+            long[] counts = new long[numCells];
+            channel.map(FileChannel.MapMode.READ_ONLY, offset, 8L*numCells).asLongBuffer().get(counts);
+            offset+=8L*numCells;
+            double[] logWeights = new double[numCells];
+            channel.map(FileChannel.MapMode.READ_ONLY, offset, 8L*numCells).asDoubleBuffer().get(logWeights);
+            offset+=8L*numCells;
+            int numAssignments = numObservations+(hasLatest ? 1 : 0);
+            LongBuffer words = channel.map(FileChannel.MapMode.READ_ONLY, offset, 8L*numAssignments*layout.numWords()).asLongBuffer();
+            offset+=8L*numAssignments*layout.numWords();
+            Assignment[] observations = new Assignment[numObservations];
+            for(int i = 0; i < numObservations; i++) {
+                observations[i]=readAssignment(words, layout);
+            }
+            Assignment latest = hasLatest ? readAssignment(words, layout) : null;
+            PriceMatrix prices = null;
+            if(numPriceRows>0) {
+                double[][] columns = new double[numCompanies][numPriceRows];
+                DoubleBuffer tail = channel.map(FileChannel.MapMode.READ_ONLY, offset, 8L*numCompanies*numPriceRows).asDoubleBuffer();
+                for(int c = 0; c < numCompanies; c++) {
+                    tail.get(columns[c]);
+                }
+                prices=new PriceMatrix(symbols, columns, dates, numPriceRows);
+            }
+
+            OnlineTimeGraphModel model = new OnlineTimeGraphModel(new ClosedFormMarginals(factors), alpha, windowSize, OnlineTimeGraphModel.OFF_HEAP_DEFAULT, observations, counts);
+            for(int cell = 0; cell < numCells; cell++) {
+                if(Double.doubleToLongBits(model.logWeight(cell))!=Double.doubleToLongBits(logWeights[cell])) {
+                    throw new IOException("Log weight of cell "+cell+" does not match its counts: "+file);
+                }
+            }
+            return new ModelSnapshot(model, latest, prices);
+        }
+    }
+
+    public void write(File file) throws IOException {
+        TimeGraphFactors factors = model.getFactors();
+        TimeGraphLayout layout = factors.getLayout();
+        int numPriceRows = prices==null ? 0 : prices.size();
+        boolean hasDates = numPriceRows>0 && prices.date(0)!=null;
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(layout.numCompanies());
+            out.writeInt(layout.getNumLayers());
+            out.writeInt(model.getWindowSize());
+            out.writeInt(model.numObservations());
+            out.writeInt(factors.numCells());
+            out.writeInt(numPriceRows);
+            out.writeByte(latest!=null ? 1 : 0);
+            out.writeByte(hasDates ? 1 : 0);
+            out.writeDouble(model.getAlpha());
+            for(String symbol : layout.getCompanies()) {
+                writeString(out,symbol);
+            }
+            if(hasDates) {
+                for(int r = 0; r < numPriceRows; r++) {
+                    writeString(out,prices.date(r));
+                }
+            }
+            for(int d = 0; d < layout.numCompanies(); d++) {
+                int[] parents = factors.getCrossEdges().parents(d);
+                out.writeInt(parents.length);
+                for(int c : parents) out.writeInt(c);
+            }
+            while(out.size()%8!=0) out.writeByte(0);
+            FactorCounts counts = model.getCounts();
+            for(int cell = 0; cell < factors.numCells(); cell++) {
+                out.writeLong(counts.count(cell));
+            }
+            for(int cell = 0; cell < factors.numCells(); cell++) {
+                out.writeDouble(model.logWeight(cell));
+            }
+            for(int i = 0; i < model.numObservations(); i++) {
+                writeAssignment(out, model.observation(i));
+            }
+            if(latest!=null) writeAssignment(out, latest);
+            if(prices!=null) {
+                for(int c = 0; c < layout.numCompanies(); c++) {
+                    for(int r = 0; r < numPriceRows; r++) {
+                        out.writeDouble(prices.price(c,r));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Largest difference between the future marginals of two models over every step of
+     * evidence, e.g. a freshly trained model and the same model written and loaded again.
+     */
+    public static double maxMarginalDifference(OnlineTimeGraphModel expected, OnlineTimeGraphModel actual, AssignmentSeries evidence) {
+        Assignment[] steps = new Assignment[evidence.size()];
+        for(int t = 0; t < steps.length; t++) {
+            steps[t]=evidence.get(t, new Assignment(evidence.getLayout()));
+        }
+        return maxMarginalDifference(expected, actual, steps);
+    }
+
+    public static double maxMarginalDifference(OnlineTimeGraphModel expected, OnlineTimeGraphModel actual, Assignment... evidence) {
+        int numCompanies = expected.getFactors().getLayout().numCompanies();
+        if(!actual.getFactors().getLayout().getCompanies().equals(expected.getFactors().getLayout().getCompanies())) return Double.POSITIVE_INFINITY;
+        double[] a = new double[numCompanies];
+        double[] b = new double[numCompanies];
+        double max = 0d;
+        for(Assignment assignment : evidence) {
+            expected.futureMarginals(assignment, a);
+            actual.futureMarginals(assignment, b);
+            for(int c = 0; c < numCompanies; c++) {
+                max=Math.max(max, Math.abs(a[c]-b[c]));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Throws when the loaded model's marginals are further than tolerance from the trained
+     * model's, over the trained model's window as evidence.
+     */
+    public static void validate(OnlineTimeGraphModel trained, OnlineTimeGraphModel loaded, double tolerance) {
+        Assignment[] evidence = new Assignment[trained.numObservations()];
+        for(int i = 0; i < evidence.length; i++) evidence[i]=trained.observation(i);
+        double difference = maxMarginalDifference(trained, loaded, evidence);
+        if(!(difference<=tolerance)) {
+            throw new IllegalStateException("Loaded model differs from the trained model by "+difference);
+        }
+    }
+
+    private static Assignment readAssignment(LongBuffer words, TimeGraphLayout layout) {
+        Assignment assignment = new Assignment(layout);
+        for(int w = 0; w < layout.numWords(); w++) {
+            assignment.setWord(w, words.get());
+        }
+        return assignment;
+    }
+
+    private static void writeAssignment(DataOutputStream out, Assignment assignment) throws IOException {
+        for(int w = 0; w < assignment.getLayout().numWords(); w++) {
+            out.writeLong(assignment.word(w));
+        }
+    }
+
+    private static long align(long position) {
+        return (position+7) & ~7L;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if(bytes.length>0xFFFF) throw new IOException("String too long for snapshot: "+value);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+}
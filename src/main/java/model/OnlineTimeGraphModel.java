@@ -0,0 +1,248 @@
+package model;
+
+import lombok.Getter;
+import metrics.Metrics;
+import model.inference.InferenceEngine;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Incrementally learned TimeGraph factors over a sliding window of observations.
+ *
+ * Each observation adds its cell counts and the observation falling out of the window
+ * is subtracted, so a step costs O(#factors) instead of a full retrain. Only the factor
+ * rows touched by those two observations have their log weights recomputed and pushed
+ * to the potentials read by the shared ClosedFormMarginals.
+ *
+ * The potentials live in a heap array or, for large networks, in an off-heap FactorArena
+ * (the offHeap constructor argument, defaulting to -Dfactors.offHeap=true).
+ *
+ * A model is not thread safe. To share one trained network, freeze() it and give each
+ * user an overlay() of the FrozenTimeGraphModel.
+ */
+public class OnlineTimeGraphModel {
+    public static final boolean OFF_HEAP_DEFAULT = Boolean.getBoolean("factors.offHeap");
+
+    @Getter
+    private final ClosedFormMarginals closedForm;
+    @Getter
+    private final TimeGraphFactors factors;
+    @Getter
+    private final double alpha;
+    @Getter
+    private final int windowSize;
+    @Getter
+    private final FactorCounts counts;
+    // exactly one of the two holds the potentials
+    private double[] logWeights;
+    private FactorArena arena;
+    // true while the potentials are a FrozenTimeGraphModel's, copied on the first observe
+    private boolean shared;
+    // log(n+alpha) and log(n+2*alpha) for every count a window can produce, from StrictMath
+    // so the weights are the same on every platform and ModelSnapshot can compare them exactly
+    private final double[] logCell;
+    private final double[] logRow;
+    private final Assignment[] window;
+    private int oldest;
+    private int windowCount;
+    // bumped whenever the weights change, see MarginalCache
+    @Getter
+    private long version;
+
+    public OnlineTimeGraphModel(ClosedFormMarginals closedForm, double alpha, int windowSize) {
+        this(closedForm,alpha,windowSize,OFF_HEAP_DEFAULT);
+    }
+
+    public OnlineTimeGraphModel(ClosedFormMarginals closedForm, double alpha, int windowSize, boolean offHeap) {
+        this(closedForm,alpha,windowSize,offHeap,new Assignment[0],null);
+    }
+
+    // Restores the state saved by ModelSnapshot: the window oldest first and its counts
+    OnlineTimeGraphModel(ClosedFormMarginals closedForm, double alpha, int windowSize, boolean offHeap, Assignment[] observations, long[] counts) {
+        if(alpha<=0) throw new IllegalArgumentException("Alpha must be positive");
+        if(windowSize<1) throw new IllegalArgumentException("Window size must be positive");
+        this.closedForm=closedForm;
+        this.factors=closedForm.getFactors();
+        this.alpha=alpha;
+        this.windowSize=windowSize;
+        this.counts=new FactorCounts(factors);
+        this.logWeights=offHeap ? null : new double[factors.numCells()];
+        this.arena=offHeap ? new FactorArena(factors.numCells()) : null;
+        this.logCell=logTable(windowSize,alpha);
+        this.logRow=logTable(windowSize,2*alpha);
+        this.window=windowOf(windowSize,observations);
+        this.windowCount=observations.length;
+        if(counts!=null) this.counts.load(counts);
+        refreshAll();
+    }
+
+    // Overlay of a frozen model: its counts and potentials are read in place until the first observe
+    OnlineTimeGraphModel(FrozenTimeGraphModel base, long[] counts, double[] logWeights, FactorArena arena, Assignment[] observations) {
+        this.closedForm=base.getClosedForm();
+        this.factors=base.getFactors();
+        this.alpha=base.getAlpha();
+        this.windowSize=base.getWindowSize();
+        this.counts=new FactorCounts(factors,counts);
+        this.logWeights=logWeights;
+        this.arena=arena;
+        this.shared=true;
+        this.logCell=logTable(windowSize,alpha);
+        this.logRow=logTable(windowSize,2*alpha);
+        this.window=windowOf(windowSize,observations);
+        this.windowCount=observations.length;
+    }
+
+    private static double[] logTable(int windowSize, double smoothing) {
+        double[] table = new double[windowSize+1];
+        for(int n = 0; n <= windowSize; n++) {
+            table[n]=StrictMath.log(n+smoothing);
+        }
+        return table;
+    }
+
+    private static Assignment[] windowOf(int windowSize, Assignment[] observations) {
+        if(observations.length>windowSize) throw new IllegalArgumentException("More observations than the window holds");
+        Assignment[] window = new Assignment[windowSize];
+        for(int i = 0; i < observations.length; i++) {
+            window[i]=observations[i].copy();
+        }
+        return window;
+    }
+
+    // Immutable copy of the current state, see FrozenTimeGraphModel
+    public FrozenTimeGraphModel freeze() {
+        Assignment[] observations = new Assignment[windowCount];
+        for(int i = 0; i < windowCount; i++) {
+            observations[i]=observation(i);
+        }
+        return new FrozenTimeGraphModel(closedForm, alpha, windowSize, counts.toArray(),
+                arena!=null ? null : logWeights.clone(), arena!=null ? arena.copy() : null, observations);
+    }
+
+    public void observe(Assignment assignment) {
+        long start = Metrics.start();
+        unshare();
+        Assignment evicted = null;
+        int slot;
+        if(windowCount<windowSize) {
+            slot = (oldest+windowCount)%windowSize;
+            windowCount++;
+        } else {
+            slot = oldest;
+            evicted = window[slot];
+            oldest = (oldest+1)%windowSize;
+        }
+        if(window[slot]==null) window[slot]=new Assignment(factors.getLayout());
+        if(evicted!=null) update(evicted,-1);
+        window[slot].copyFrom(assignment);
+        update(assignment,1);
+        version++;
+        Metrics.LEARN.stop(start);
+    }
+
+    /**
+     * Same state as observe() on every step in order. When the steps fill the window, its
+     * counts are rebuilt from the last windowSize steps with FactorCounts.addAll on pool
+     * and every row is refreshed once, instead of adding and evicting step by step.
+     */
+    public void observeAll(AssignmentSeries steps, ForkJoinPool pool) {
+        if(steps.size()<windowSize) {
+            Assignment assignment = new Assignment(factors.getLayout());
+            for(int t = 0; t < steps.size(); t++) observe(steps.get(t,assignment));
+            return;
+        }
+        long start = Metrics.start();
+        unshare();
+        AssignmentSeries last = steps.subSeries(steps.size()-windowSize,steps.size());
+        counts.clear();
+        counts.addAll(last,pool);
+        for(int i = 0; i < windowSize; i++) {
+            if(window[i]==null) window[i]=new Assignment(factors.getLayout());
+            last.get(i,window[i]);
+        }
+        oldest=0;
+        windowCount=windowSize;
+        refreshAll();
+        version++;
+        Metrics.LEARN.stop(start);
+    }
+
+    private void unshare() {
+        if(shared) {
+            if(arena!=null) arena=arena.copy();
+            else logWeights=logWeights.clone();
+            shared=false;
+        }
+    }
+
+    private void refreshAll() {
+        for(int f = 0; f < factors.numFactors(); f++) {
+            refreshRow(factors.offset(f));
+            if(!factors.isUnary(f)) refreshRow(factors.offset(f)+2);
+        }
+    }
+
+    public int numObservations() {
+        return windowCount;
+    }
+
+    // The i-th oldest observation in the window
+    public Assignment observation(int i) {
+        if(i<0||i>=windowCount) throw new IndexOutOfBoundsException("Observation "+i+" of "+windowCount);
+        return window[(oldest+i)%windowSize];
+    }
+
+    // one pass per observation: bump the selected cell and recompute its row
+    private void update(Assignment assignment, long delta) {
+        for(int f = 0; f < factors.numFactors(); f++) {
+            int cell = factors.cell(f,assignment);
+            counts.increment(cell,delta);
+            refreshRow(counts.rowStart(f,cell));
+        }
+    }
+
+    private void refreshRow(int row) {
+        long down = counts.count(row);
+        long up = counts.count(row+1);
+        double logTotal = logOf(logRow,down+up,2*alpha);
+        double logDown = logOf(logCell,down,alpha)-logTotal;
+        double logUp = logOf(logCell,up,alpha)-logTotal;
+        if(arena!=null) {
+            arena.set(row,logDown);
+            arena.set(row+1,logUp);
+        } else {
+            logWeights[row]=logDown;
+            logWeights[row+1]=logUp;
+        }
+    }
+
+    private static double logOf(double[] table, long n, double smoothing) {
+        return n<table.length ? table[(int)n] : StrictMath.log(n+smoothing);
+    }
+
+    public double logWeight(int cell) {
+        return arena!=null ? arena.get(cell) : logWeights[cell];
+    }
+
+    public boolean isOffHeap() {
+        return arena!=null;
+    }
+
+    // Fills out[c] with P(company c goes up | evidence) using only the non future nodes of evidence
+    public double[] futureMarginals(Assignment evidence, double[] out) {
+        long start = Metrics.start();
+        if(arena!=null) closedForm.futureMarginals(arena, evidence, out);
+        else closedForm.futureMarginals(logWeights, evidence, out);
+        Metrics.INFERENCE.stop(start);
+        return out;
+    }
+
+    // Same with another engine over the current weights; observed null means all history is observed
+    public double[] futureMarginals(InferenceEngine engine, Assignment evidence, Assignment observed, double[] out) {
+        long start = Metrics.start();
+        if(arena!=null) engine.futureMarginals(arena, evidence, observed, out);
+        else engine.futureMarginals(logWeights, evidence, observed, out);
+        Metrics.INFERENCE.stop(start);
+        return out;
+    }
+}
@@ -1,5 +1,7 @@
 package model;
 
+import data.PriceMatrix;
+import data.PriceSnapshot;
 import finance.Portfolio;
 import lombok.Getter;
 import model.functions.inference_methods.BeliefPropagation;
@@ -11,14 +13,16 @@ import model.learning.algorithms.BayesianLearningAlgorithm;
 import model.learning.algorithms.LearningAlgorithm;
 import model.learning.algorithms.MarkovLearningAlgorithm;
 import model.nodes.Node;
+import model.sweep.SweepEngine;
+import model.sweep.SweepGrid;
+import model.sweep.SweepReport;
+import model.sweep.SweepResult;
 import model.trade_policy.InferenceTradePolicy;
 import model.trade_policy.MarketTradePolicy;
 import model.trade_policy.MutlipleStockPolicy;
 import model.trade_policy.SingleStockPolicy;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
@@ -31,36 +35,88 @@ public class TimeGraph {
     @Getter
     private volatile Graph network;
     @Getter
-    private List<Map<String,Double>> stockToPricesList;
-    @Getter
-    private List<Map<String,Double>> testStockToPricesList;
-    @Getter
-    private List<Map<String,Double>> validationStockToPricesList;
+    private TimeGraphDataset dataset;
     @Getter
     protected LearningAlgorithm learningAlgorithm;
+    @Getter
     protected double alpha;
-    public TimeGraph(File csv, int numLayers, double alpha) throws IOException{
-        this.stockToPricesList=new ArrayList<>();
-        this.testStockToPricesList=new ArrayList<>();
+    // Accepts either a price csv or a PriceSnapshot file
+    public TimeGraph(File data, int numLayers, double alpha) throws IOException{
+        this(PriceSnapshot.read(data),numLayers,alpha);
+    }
+
+    public TimeGraph(PriceSnapshot data, int numLayers, double alpha) {
+        this(new TimeGraphDataset(data,numLayers),alpha);
+    }
+
+    public TimeGraph(PriceSnapshot data, int numLayers, int maxCrossParents, double alpha) {
+        this(new TimeGraphDataset(data,numLayers,maxCrossParents),alpha);
+    }
+
+    public TimeGraph(PriceSnapshot data, int numLayers, int maxCrossParents, CrossEdges.Score score, double alpha) {
+        this(new TimeGraphDataset(data,numLayers,maxCrossParents,score),alpha);
+    }
+
+    public TimeGraph(TimeGraphDataset dataset, double alpha) {
         this.alpha=alpha;
-        this.validationStockToPricesList=new ArrayList<>();
-        this.network=trainCSV(csv,numLayers);
+        this.dataset=dataset;
+        this.network=buildNetwork(dataset);
+        this.learningAlgorithm=new BayesianLearningAlgorithm(network,alpha);
+        network.applyLearningAlgorithm(learningAlgorithm,2);
         network.reNormalize(new DivideByPartition());
     }
 
-    private Graph trainCSV(File csv, int numLayers) throws IOException {
-        if(numLayers<2) throw new RuntimeException("Num layers must be at least 2");
-        BufferedReader reader = new BufferedReader(new FileReader(csv));
-        List<String> companies = new ArrayList<>();
+    /**
+     * Another network trained like getNetwork(). A retrain InferenceTradePolicy relearns its
+     * network every step, so each one builds its own with this.
+     */
+    public Graph newNetwork() {
+        Graph net = buildNetwork(dataset);
+        net.applyLearningAlgorithm(new BayesianLearningAlgorithm(net,alpha),2);
+        net.reNormalize(new DivideByPartition());
+        return net;
+    }
+
+    public PriceMatrix getStockPrices() {
+        return dataset.getStockPrices();
+    }
+
+    public PriceMatrix getValidationStockPrices() {
+        return dataset.getValidationStockPrices();
+    }
+
+    public PriceMatrix getTestStockPrices() {
+        return dataset.getTestStockPrices();
+    }
+
+    public TimeGraphLayout getLayout() {
+        return dataset.getLayout();
+    }
+
+    // built once and shared by every policy running on this network
+    public ClosedFormMarginals getClosedForm() {
+        return dataset.getClosedForm();
+    }
+
+    public AssignmentSeries getTrainingAssignments() {
+        return dataset.getTrainingAssignments();
+    }
+
+    public AssignmentSeries getValidationAssignments() {
+        return dataset.getValidationAssignments();
+    }
+
+    public AssignmentSeries getTestAssignments() {
+        return dataset.getTestAssignments();
+    }
+
+    // Nodes, factors and data of the network, not yet learned
+    private Graph buildNetwork(TimeGraphDataset dataset) {
+        int numLayers = dataset.getNumLayers();
+        List<String> companies = dataset.getLayout().getCompanies();
+        CrossEdges crossEdges = dataset.getCrossEdges();
         // build net
         BayesianNet net = new BayesianNet();
-        String[] headers = reader.readLine().split(",");
-        // setup labels
-        for(int i = 1; i < headers.length; i++) {
-            // skip over date cell
-            String[] split = headers[i].split("_");
-            companies.add(split[1]);
-        }
         // Add nodes
         companies.stream().forEach(company->{
             for(int i = 1; i < numLayers; i++) {
@@ -81,83 +137,27 @@ public class TimeGraph {
                     net.connectNodes(n1, n1NextStep);
                     net.addFactorNode(null, n1, n1NextStep);
                 } else {
-                    companies.forEach(company2 -> {
-                        Node n2 = net.findNode(company2 + "_future");
+                    // only the learned cross edges, all of them unless the dataset pruned them
+                    for(int child : crossEdges.children(dataset.getLayout().companyIndex(company))) {
+                        Node n2 = net.findNode(companies.get(child) + "_future");
                         if(n2==null){
                             throw new RuntimeException("Cannot find n2");
                         }
                         net.connectNodes(n1, n2);
                         net.addFactorNode(null, n1, n2);
-                    });
+                    }
                 }
             }
         });
 
-        System.out.println("Companies: "+String.join(", ",companies));
-        // Train
-        System.out.println("Network: "+net.toString());
-
-        double[][] periodsAgo = new double[numLayers][];
-        for(int i = 0; i < numLayers; i++) {
-            periodsAgo[i] = getPricesFromRow(reader.readLine());
-        }
-        double[] pricesThisPeriod;
-        String line = reader.readLine();
-        List<Map<String,Integer>> trainingSet;
-        List<Map<String,Integer>> validationSet;
-        List<Map<String,Integer>> testSet;
-        {
-            List<Map<String, Integer>> allAssignments = new ArrayList<>();
-            int i = 0;
-            while (line != null) {
-                pricesThisPeriod = getPricesFromRow(line);
-
-                Map<String, Integer> assignment = createAssignment(periodsAgo, pricesThisPeriod, companies);
-                Map<String, Double> prices = createPricesMap(pricesThisPeriod, companies);
-
-                allAssignments.add(assignment);
-                stockToPricesList.add(prices);
-
-                // set prices as next prices
-                for(int j = 1; j < numLayers; j++) {
-                    periodsAgo[j-1] = periodsAgo[j];
-                }
-                periodsAgo[periodsAgo.length-1] = pricesThisPeriod;
-                line = reader.readLine();
-                System.out.println("Finished data point: " + i);
-                i++;
-            }
-            trainingSet=allAssignments.subList(0,(allAssignments.size())/2);
-            validationSet=allAssignments.subList((allAssignments.size())/2,(3*allAssignments.size())/4);
-            validationStockToPricesList.addAll(stockToPricesList.subList((allAssignments.size())/2,(3*allAssignments.size())/4));
-            testSet=allAssignments.subList((3*allAssignments.size())/4,allAssignments.size());
-            testStockToPricesList.addAll(stockToPricesList.subList((3*allAssignments.size())/4,allAssignments.size()));
-            stockToPricesList.removeAll(new ArrayList<>(stockToPricesList.subList((allAssignments.size())/2,allAssignments.size())));
-        }
-        reader.close();
-
-
-        System.out.println("Training Size: "+trainingSet.size());
-        System.out.println("Validation Size: "+validationSet.size());
-        System.out.println("Test Size: "+testSet.size());
-
-        net.setTrainingData(trainingSet);
-        net.setTestData(testSet);
-        net.setValidationData(validationSet);
-        learningAlgorithm=new BayesianLearningAlgorithm(net,alpha);
-        net.applyLearningAlgorithm(learningAlgorithm,2);
-
+        // the same facts the old build printed are on getDataset() and getNetwork()
+        net.setTrainingData(dataset.getTrainingAssignments().asMaps());
+        net.setTestData(dataset.getTestAssignments().asMaps());
+        net.setValidationData(dataset.getValidationAssignments().asMaps());
         return net;
     }
 
-    static Map<String,Double> createPricesMap(double[] prices, List<String> companies) {
-        Map<String,Double> map = new HashMap<>();
-        for(int i = 0; i < companies.size(); i++) {
-            map.put(companies.get(i),prices[i]);
-        }
-        return map;
-    }
-
+    // legacy price based assignment, kept as the baseline for CsvIngestBenchmark
     static Map<String,Integer> createAssignment(double[][] periodsAgo, double[] thisPeriod, List<String> companies) {
         Map<String,Integer> assignment = new HashMap<>();
         for(int i = 0; i < companies.size(); i++) {
@@ -186,6 +186,7 @@ public class TimeGraph {
         return assignment;
     };
 
+    // legacy line parser, kept as the baseline for CsvIngestBenchmark
     static double[] getPricesFromRow(String line) {
         String[] cells = line.split(",");
         double[] prices = new double[cells.length-1];
@@ -197,37 +198,29 @@ public class TimeGraph {
 
     public static void main(String[] args) throws Exception {
         NumberFormat formatter = new DecimalFormat("#0.00");
-        File file = new File("sample_stock_output_small.csv");
+        File csv = new File("sample_stock_output_small.csv");
+        // parse once, later runs load the binary snapshot until the csv changes
+        PriceSnapshot data = PriceSnapshot.cached(csv, new File(csv.getPath()+".snapshot"));
         double startingCash = 100000d;
         double transactionCost = 1d;
-        int numLayers = 10;
         double stopLoss = 1111110d;
         double takeProfit =1111110d;
 
-        double bestReturn = Double.MIN_VALUE;
-        int bestLayerSize = -1;
-        double bestAlpha = 0d;
-        for(int i = 4; i < numLayers; i+=2) {
-            for(double alpha = 2d; alpha < 6d; alpha+=5) {
-                TimeGraph timeGraph = new TimeGraph(file, i, alpha);
-                Portfolio portfolio = new Portfolio(timeGraph.getTestStockToPricesList(), startingCash, transactionCost);
-                double avgRateOfReturn = portfolio.determineTrades(new TimeGraphAlgorithm(timeGraph.getNetwork().getTestData()), new InferenceTradePolicy(timeGraph.getNetwork(), portfolio, timeGraph.getLearningAlgorithm(),stopLoss,takeProfit));
-                if (avgRateOfReturn > bestReturn) {
-                    bestReturn = avgRateOfReturn;
-                    bestLayerSize = i;
-                    bestAlpha=alpha;
-                }
-                System.out.println("Average Return **My Model [numLayers=" + i + ", alpha="+alpha+"]**: " + formatter.format(avgRateOfReturn * 100) + "%");
-            }
-
-        }
-
-        TimeGraph timeGraph = new TimeGraph(file,2,20);
-
-        Portfolio portfolioCopy = new Portfolio(timeGraph.getTestStockToPricesList(),startingCash,transactionCost);
-        Portfolio portfolioPortfolio = new Portfolio(timeGraph.getTestStockToPricesList(),startingCash,transactionCost);
-        double avgRateOfReturnMarket = portfolioCopy.determineTrades(new TimeGraphAlgorithm(timeGraph.getNetwork().getTestData()), new MarketTradePolicy(portfolioCopy));
-        double avgRateOfReturnPortfolio = portfolioPortfolio.determineTrades(new TimeGraphAlgorithm(timeGraph.getNetwork().getTestData()), new MutlipleStockPolicy(portfolioPortfolio,"goog","amzn","kr","tsla","dji","wmt","aapl"));
+        // every (numLayers, alpha) backtest runs in parallel over the shared snapshot
+        SweepGrid grid = new SweepGrid().numLayers(4,6,8).alpha(2d).stopLoss(stopLoss).takeProfit(takeProfit).transactionCost(transactionCost).windowSize(7);
+        SweepReport report = new SweepEngine(data, startingCash).run(grid, System.out);
+        SweepResult best = report.best();
+        double bestReturn = best.getRateOfReturn();
+        int bestLayerSize = best.getParameters().getNumLayers();
+        double bestAlpha = best.getParameters().getAlpha();
+
+        // the baselines only need the test split, not a trained network
+        TimeGraphDataset baseline = new TimeGraphDataset(data,2);
+
+        Portfolio portfolioCopy = new Portfolio(baseline.getTestStockPrices(),startingCash,transactionCost);
+        Portfolio portfolioPortfolio = new Portfolio(baseline.getTestStockPrices(),startingCash,transactionCost);
+        double avgRateOfReturnMarket = portfolioCopy.determineTrades(new TimeGraphAlgorithm(baseline.getTestAssignments()), new MarketTradePolicy(portfolioCopy));
+        double avgRateOfReturnPortfolio = portfolioPortfolio.determineTrades(new TimeGraphAlgorithm(baseline.getTestAssignments()), new MutlipleStockPolicy(portfolioPortfolio,"goog","amzn","kr","tsla","dji","wmt","aapl"));
 
         System.out.println("Average Return Market (DJI): "+ formatter.format(avgRateOfReturnMarket*100)+"%");
         System.out.println("Average Return Portfolio: "+ formatter.format(avgRateOfReturnPortfolio*100)+"%");
@@ -1,70 +1,77 @@
 package model;
 
-import com.google.common.util.concurrent.AtomicDouble;
+import finance.ExecutionSimulator;
 import finance.Portfolio;
 import finance.Trade;
 import finance.TradingAlgorithm;
 
+import lombok.Setter;
+import metrics.Metrics;
 import model.trade_policy.TradePolicy;
 
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 /**
  * Created by Evan on 4/30/2017.
+ *
+ * All state of a run lives in the Portfolio and the local variables of the returned
+ * function, so independent portfolio/policy pairs can be backtested on separate threads.
  */
 public class TimeGraphAlgorithm implements TradingAlgorithm {
-    private Collection<Map<String,Integer>> assignmentsOverTime;
-    public TimeGraphAlgorithm(Collection<Map<String,Integer>> assignmentsOverTime) {
+    private AssignmentSeries assignmentsOverTime;
+    // prints cash, holdings and the running rate every step
+    @Setter
+    private boolean verbose;
+    public TimeGraphAlgorithm(AssignmentSeries assignmentsOverTime) {
         this.assignmentsOverTime=assignmentsOverTime;
     }
     @Override
     public Function<Portfolio, Double> getFunction(TradePolicy tradePolicy) {
         return (portfolio)->{
-            AtomicInteger counter = new AtomicInteger(0);
-            AtomicDouble totalRate = new AtomicDouble(0d);
-            assignmentsOverTime.forEach(assignment->{
-                portfolio.setPreviouslyAvailableCash(portfolio.getAvailableCash());
-                System.out.println("Cash: "+(portfolio.getAvailableCash()+portfolio.computeMoney(portfolio.getLastProfile(),counter.get())));
+            double totalRate = 0d;
+            // the same packed assignment is refilled every step
+            Assignment assignment = new Assignment(assignmentsOverTime.getLayout());
+            for(int idx = 0; idx < assignmentsOverTime.size(); idx++) {
+                long stepStart = Metrics.start();
+                long allocated = stepStart==0L ? 0L : Metrics.allocatedBytes();
+                assignmentsOverTime.get(idx, assignment);
+                if(verbose) System.out.println("Cash: "+(portfolio.getAvailableCash()+portfolio.computeMoney(portfolio.getLastProfile(),idx)));
 
-                int idx = counter.getAndIncrement();
-                List<Trade> trades = tradePolicy.getTrades(assignment,idx);
-
-                // Update current amounts
-                for(Trade tradeAtTimeT : trades) {
-                    double newAmount = tradeAtTimeT.getAmount();
-                    if(portfolio.getLastProfile().containsKey(tradeAtTimeT.getStock())) {
-                        double currentAmount = portfolio.getLastProfile().get(tradeAtTimeT.getStock());
-                        newAmount = currentAmount+newAmount;
-                        if(newAmount<0) throw new RuntimeException("Negative new amount!");
+                List<Trade> trades = trade(portfolio,tradePolicy,assignment,idx);
+                if(verbose) {
+                    for(Trade tradeAtTimeT : trades) {
+                        System.out.println("Traded "+tradeAtTimeT.getAmount()+" shares of stock "+tradeAtTimeT.getStock());
                     }
-                    portfolio.getCurrentProfile().put(tradeAtTimeT.getStock(),newAmount);
-                    System.out.println("Current amount of stock "+tradeAtTimeT.getStock()+": "+newAmount);
                 }
                 // calculate current time step
-                if(!portfolio.getLastProfile().isEmpty()) {
-                    // add leftovers to current
-                    portfolio.getLastProfile().forEach((k,v)->{
-                        if(!portfolio.getCurrentProfile().containsKey(k)) {
-                            portfolio.getCurrentProfile().put(k,v);
-                        }
-                    });
-
-                    totalRate.getAndAdd(portfolio.computeRateOfReturnBetweenTimeSteps(idx-1,idx));
-                }
-
-                portfolio.getLastProfile().clear();
-                portfolio.getLastProfile().putAll(portfolio.getCurrentProfile());
-                portfolio.getCurrentProfile().clear();
+                totalRate+=portfolio.endStep(idx);
                 portfolio.getTradesOverTime().add(trades);
+                Metrics.endStep(stepStart, allocated, trades.size());
 
-                if(counter.get()>0) {
-                    System.out.println("Current Rate: "+totalRate.get()/counter.get());
-                } else throw new RuntimeException("Error occured");
-            });
+                if(verbose) System.out.println("Current Rate: "+totalRate/(idx+1));
+            }
 
             return (portfolio.getAvailableCash()+portfolio.computeMoney(portfolio.getLastProfile(),assignmentsOverTime.size()-1)-portfolio.getStartingCash())/portfolio.getStartingCash();
         };
     }
+
+    // Trading half of a step, shared with model.streaming.StreamingPipeline: asks the policy
+    // for its trades at price index idx and applies them to the step's profile, or has the
+    // portfolio's ExecutionSimulator fill them and returns the fills
+    public static List<Trade> trade(Portfolio portfolio, TradePolicy tradePolicy, Assignment assignment, int idx) {
+        return trade(portfolio, tradePolicy, assignment, null, idx);
+    }
+
+    // Same with the observed mask of a step with missing bars, null when it is complete
+    public static List<Trade> trade(Portfolio portfolio, TradePolicy tradePolicy, Assignment assignment, Assignment observed, int idx) {
+        portfolio.setPreviouslyAvailableCash(portfolio.getAvailableCash());
+        List<Trade> trades = observed==null ? tradePolicy.getTrades(assignment,idx) : tradePolicy.getTrades(assignment,observed,idx);
+        ExecutionSimulator simulator = portfolio.getExecutionSimulator();
+        if(simulator!=null) return simulator.execute(portfolio,trades,idx);
+        for(int i = 0; i < trades.size(); i++) {
+            portfolio.applyTrade(trades.get(i));
+        }
+        return trades;
+    }
 }
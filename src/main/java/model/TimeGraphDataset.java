@@ -0,0 +1,93 @@
+package model;
+
+import data.PriceMatrix;
+import data.PriceSnapshot;
+import lombok.Getter;
+
+/**
+ * The 50/25/25 train/validation/test split of a PriceSnapshot for one numLayers, plus
+ * the closed form marginals of the matching network. Everything is a view over the
+ * snapshot, so datasets are cheap to create and safe to share between threads.
+ * With maxCrossParents the cross edges are learned from the training split (see
+ * CrossEdges), scored by mutual information unless another Score is given, instead of
+ * connecting every pair of companies. Evaluations over other train windows learn their
+ * own structure with closedFormFor.
+ */
+public class TimeGraphDataset {
+    @Getter
+    private final PriceSnapshot data;
+    @Getter
+    private final TimeGraphLayout layout;
+    @Getter
+    private final ClosedFormMarginals closedForm;
+    // negative when every cross edge is kept
+    @Getter
+    private final int maxCrossParents;
+    @Getter
+    private final CrossEdges.Score crossEdgeScore;
+    // every step after the first numLayers rows, which the splits below are views of
+    @Getter
+    private final AssignmentSeries allAssignments;
+    @Getter
+    private final PriceMatrix allStockPrices;
+    @Getter
+    private final AssignmentSeries trainingAssignments;
+    @Getter
+    private final AssignmentSeries validationAssignments;
+    @Getter
+    private final AssignmentSeries testAssignments;
+    @Getter
+    private final PriceMatrix stockPrices;
+    @Getter
+    private final PriceMatrix validationStockPrices;
+    @Getter
+    private final PriceMatrix testStockPrices;
+
+    public TimeGraphDataset(PriceSnapshot data, int numLayers) {
+        this(data,numLayers,-1);
+    }
+
+    // a negative maxCrossParents keeps every cross edge
+    public TimeGraphDataset(PriceSnapshot data, int numLayers, int maxCrossParents) {
+        this(data,numLayers,maxCrossParents,CrossEdges.Score.MUTUAL_INFORMATION);
+    }
+
+    public TimeGraphDataset(PriceSnapshot data, int numLayers, int maxCrossParents, CrossEdges.Score score) {
+        if(numLayers<2) throw new RuntimeException("Num layers must be at least 2");
+        PriceMatrix rows = data.getPrices();
+        if(rows.size()<numLayers) throw new RuntimeException("Not enough rows for "+numLayers+" layers");
+        this.data=data;
+        this.maxCrossParents=maxCrossParents;
+        this.crossEdgeScore=score;
+        this.layout=new TimeGraphLayout(rows.getSymbols(), numLayers);
+        // assignments and prices skip the first numLayers rows, which only feed history
+        this.allAssignments=new AssignmentSeries(data.getUpDown(), layout, numLayers, rows.size()-numLayers);
+        this.allStockPrices=rows.view(numLayers, rows.size());
+        int size = allAssignments.size();
+        this.trainingAssignments=allAssignments.subSeries(0,size/2);
+        this.stockPrices=allStockPrices.view(0,size/2);
+        this.validationAssignments=allAssignments.subSeries(size/2,(3*size)/4);
+        this.validationStockPrices=allStockPrices.view(size/2,(3*size)/4);
+        this.testAssignments=allAssignments.subSeries((3*size)/4,size);
+        this.testStockPrices=allStockPrices.view((3*size)/4,size);
+        this.closedForm=closedFormFor(trainingAssignments);
+    }
+
+    // True when the cross edges depend on the training data, rather than connecting every pair
+    public boolean learnsCrossEdges() {
+        return maxCrossParents>=0&&maxCrossParents<layout.numCompanies()-1;
+    }
+
+    // The closed form of the structure this dataset's settings learn from training
+    public ClosedFormMarginals closedFormFor(AssignmentSeries training) {
+        return new ClosedFormMarginals(new TimeGraphFactors(layout, CrossEdges.select(training,maxCrossParents,crossEdgeScore)));
+    }
+
+    public CrossEdges getCrossEdges() {
+        return closedForm.getFactors().getCrossEdges();
+    }
+
+    public int getNumLayers() {
+        return layout.getNumLayers();
+    }
+}
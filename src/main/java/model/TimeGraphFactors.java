@@ -0,0 +1,107 @@
+package model;
+
+import lombok.Getter;
+
+/**
+ * Factor structure of a TimeGraph network, in the order TimeGraph adds the factors:
+ * per company a unary factor on company_1, a pairwise factor between each pair of
+ * consecutive layers, and a pairwise factor from its last layer to the future node
+ * of every company it is a cross parent of. Factor f owns the cells [offset(f), offset(f)+numCells(f)) of a
+ * flat table; pairwise cells are indexed 2*first+second.
+ */
+public class TimeGraphFactors {
+    @Getter
+    private final TimeGraphLayout layout;
+    @Getter
+    private final CrossEdges crossEdges;
+    private final int[] first;
+    private final int[] second;
+    private final int[] offsets;
+    private final int numCells;
+    // cross factors feeding each company's future node
+    private final int[][] crossFactors;
+
+    public TimeGraphFactors(TimeGraphLayout layout) {
+        this(layout,CrossEdges.dense(layout.numCompanies()));
+    }
+
+    public TimeGraphFactors(TimeGraphLayout layout, CrossEdges crossEdges) {
+        if(crossEdges.numCompanies()!=layout.numCompanies()) throw new IllegalArgumentException("Cross edges do not match the layout");
+        this.layout=layout;
+        this.crossEdges=crossEdges;
+        int numCompanies = layout.numCompanies();
+        int numLayers = layout.getNumLayers();
+        int numFactors = numCompanies*(1+(numLayers-2))+crossEdges.numEdges();
+        this.first=new int[numFactors];
+        this.second=new int[numFactors];
+        this.offsets=new int[numFactors];
+        this.crossFactors=new int[numCompanies][];
+        for(int d = 0; d < numCompanies; d++) {
+            crossFactors[d]=new int[crossEdges.parents(d).length];
+        }
+        // parents are ascending, so the k-th cross factor reaching d comes from its k-th parent
+        int[] numCross = new int[numCompanies];
+        int f = 0;
+        int cell = 0;
+        for(int c = 0; c < numCompanies; c++) {
+            first[f]=layout.node(c,1);
+            second[f]=-1;
+            offsets[f++]=cell;
+            cell+=2;
+            for(int j = 1; j < numLayers-1; j++) {
+                first[f]=layout.node(c,j);
+                second[f]=layout.node(c,j+1);
+                offsets[f++]=cell;
+                cell+=4;
+            }
+            for(int d : crossEdges.children(c)) {
+                first[f]=layout.lastLayerNode(c);
+                second[f]=layout.futureNode(d);
+                crossFactors[d][numCross[d]++]=f;
+                offsets[f++]=cell;
+                cell+=4;
+            }
+        }
+        this.numCells=cell;
+    }
+
+    public int numFactors() {
+        return first.length;
+    }
+
+    public int numCells() {
+        return numCells;
+    }
+
+    public int first(int factor) {
+        return first[factor];
+    }
+
+    // -1 for unary factors
+    public int second(int factor) {
+        return second[factor];
+    }
+
+    public boolean isUnary(int factor) {
+        return second[factor]<0;
+    }
+
+    public int offset(int factor) {
+        return offsets[factor];
+    }
+
+    public int numCells(int factor) {
+        return isUnary(factor) ? 2 : 4;
+    }
+
+    // Cell of the factor selected by the assignment
+    public int cell(int factor, Assignment assignment) {
+        if(isUnary(factor)) return offsets[factor]+assignment.get(first[factor]);
+        return offsets[factor]+2*assignment.get(first[factor])+assignment.get(second[factor]);
+    }
+
+    // Factor ids connecting some company's last layer to this company's future node
+    public int[] crossFactors(int company) {
+        return crossFactors[company];
+    }
+}
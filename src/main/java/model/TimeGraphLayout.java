@@ -0,0 +1,92 @@
+package model;
+
+import lombok.Getter;
+
+import java.util.*;
+
+/**
+ * Fixed node index of a TimeGraph network. Every company owns numLayers consecutive
+ * nodes: company_1 ... company_(numLayers-1) followed by company_future, so node
+ * company*numLayers+j-1 is company_j and the last node of the block is the future node.
+ */
+public class TimeGraphLayout {
+    public static final String FUTURE_SUFFIX = "_future";
+
+    @Getter
+    private final List<String> companies;
+    @Getter
+    private final int numLayers;
+    private final Map<String,Integer> companyIndex;
+
+    public TimeGraphLayout(List<String> companies, int numLayers) {
+        if(numLayers<2) throw new IllegalArgumentException("Num layers must be at least 2");
+        if(numLayers>64) throw new IllegalArgumentException("Num layers must be at most 64");
+        this.companies=Collections.unmodifiableList(new ArrayList<>(companies));
+        this.numLayers=numLayers;
+        this.companyIndex=new HashMap<>();
+        for(int c = 0; c < companies.size(); c++) {
+            companyIndex.put(companies.get(c),c);
+        }
+    }
+
+    public TimeGraphLayout withNumLayers(int numLayers) {
+        return numLayers==this.numLayers ? this : new TimeGraphLayout(companies,numLayers);
+    }
+
+    public int numCompanies() {
+        return companies.size();
+    }
+
+    public int numNodes() {
+        return companies.size()*numLayers;
+    }
+
+    // layer is 1 based to match the node labels, numLayers is the future node
+    public int node(int company, int layer) {
+        return company*numLayers+layer-1;
+    }
+
+    public int futureNode(int company) {
+        return company*numLayers+numLayers-1;
+    }
+
+    // Node holding the most recent observed movement of the company
+    public int lastLayerNode(int company) {
+        return company*numLayers+numLayers-2;
+    }
+
+    public int company(int node) {
+        return node/numLayers;
+    }
+
+    public int layer(int node) {
+        return node%numLayers+1;
+    }
+
+    public boolean isFuture(int node) {
+        return layer(node)==numLayers;
+    }
+
+    public int companyIndex(String company) {
+        Integer idx = companyIndex.get(company);
+        if(idx==null) throw new IllegalArgumentException("Unknown company: "+company);
+        return idx;
+    }
+
+    public String label(int node) {
+        String company = companies.get(company(node));
+        return isFuture(node) ? company+FUTURE_SUFFIX : company+"_"+layer(node);
+    }
+
+    public int nodeIndex(String label) {
+        int split = label.lastIndexOf('_');
+        if(split<0) throw new IllegalArgumentException("Invalid node label: "+label);
+        int company = companyIndex(label.substring(0,split));
+        if(label.endsWith(FUTURE_SUFFIX)) return futureNode(company);
+        return node(company,Integer.parseInt(label.substring(split+1)));
+    }
+
+    public int numWords() {
+        return (numNodes()+63)>>>6;
+    }
+}
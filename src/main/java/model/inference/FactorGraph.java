@@ -0,0 +1,77 @@
+package model.inference;
+
+import model.Assignment;
+import model.FactorArena;
+import model.TimeGraphFactors;
+import model.TimeGraphLayout;
+
+/**
+ * Node to factor incidence of a TimeGraph network, flattened for the approximate engines.
+ */
+class FactorGraph {
+    final TimeGraphFactors factors;
+    final TimeGraphLayout layout;
+    // factors touching node v are incident[incidentStart[v]..incidentStart[v+1]), encoded factor<<1|side
+    private final int[] incidentStart;
+    private final int[] incident;
+
+    FactorGraph(TimeGraphFactors factors) {
+        this.factors=factors;
+        this.layout=factors.getLayout();
+        int numNodes = layout.numNodes();
+        this.incidentStart=new int[numNodes+1];
+        for(int f = 0; f < factors.numFactors(); f++) {
+            incidentStart[factors.first(f)+1]++;
+            if(!factors.isUnary(f)) incidentStart[factors.second(f)+1]++;
+        }
+        for(int v = 0; v < numNodes; v++) {
+            incidentStart[v+1]+=incidentStart[v];
+        }
+        this.incident=new int[incidentStart[numNodes]];
+        int[] next = incidentStart.clone();
+        for(int f = 0; f < factors.numFactors(); f++) {
+            incident[next[factors.first(f)]++]=f<<1;
+            if(!factors.isUnary(f)) incident[next[factors.second(f)]++]=f<<1|1;
+        }
+    }
+
+    int numNodes() {
+        return incidentStart.length-1;
+    }
+
+    // Cell of the potentials: from the heap table, or in place from the arena when heap is null
+    static double potential(double[] heap, FactorArena arena, int cell) {
+        return heap!=null ? heap[cell] : arena.get(cell);
+    }
+
+    boolean[] observedNodes(Assignment observed) {
+        boolean[] nodes = new boolean[numNodes()];
+        for(int v = 0; v < nodes.length; v++) {
+            nodes[v] = observed==null ? !layout.isFuture(v) : observed.get(v)==1;
+        }
+        return nodes;
+    }
+
+    // log P(v=1)/P(v=0) given the value of every neighbour of v in state
+    double conditionalLogOdds(double[] heap, FactorArena arena, int v, Assignment state) {
+        double logOdds = 0d;
+        for(int k = incidentStart[v]; k < incidentStart[v+1]; k++) {
+            int f = incident[k]>>>1;
+            int offset = factors.offset(f);
+            if(factors.isUnary(f)) {
+                logOdds+=potential(heap,arena,offset+1)-potential(heap,arena,offset);
+            } else if((incident[k]&1)==0) {
+                int y = state.get(factors.second(f));
+                logOdds+=potential(heap,arena,offset+2+y)-potential(heap,arena,offset+y);
+            } else {
+                int row = offset+2*state.get(factors.first(f));
+                logOdds+=potential(heap,arena,row+1)-potential(heap,arena,row);
+            }
+        }
+        return logOdds;
+    }
+
+    static double sigmoid(double logOdds) {
+        return 1d/(1d+Math.exp(-logOdds));
+    }
+}
@@ -0,0 +1,91 @@
+package model.inference;
+
+import lombok.Getter;
+import model.Assignment;
+import model.FactorArena;
+import model.TimeGraphFactors;
+
+import java.util.SplittableRandom;
+
+/**
+ * Gibbs sampler over the unobserved nodes, with its chain kept across calls. Only the
+ * first call pays for burnIn sweeps; after that each step clamps the new evidence into
+ * the existing state and runs sweepsPerStep sweeps. Future marginals are Rao-Blackwellized,
+ * i.e. the average of P(future | rest of the chain) rather than of sampled values, so
+ * with every history node observed a single sweep is already exact.
+ */
+public class GibbsSampler implements InferenceEngine {
+    public static final int DEFAULT_BURN_IN = 100;
+    public static final int DEFAULT_SWEEPS_PER_STEP = 10;
+    private final FactorGraph graph;
+    @Getter
+    private final int burnIn;
+    @Getter
+    private final int sweepsPerStep;
+    private final SplittableRandom random;
+    private final Assignment state;
+    private final int[] unobserved;
+    private boolean burnedIn;
+
+    public GibbsSampler(TimeGraphFactors factors, long seed) {
+        this(factors,DEFAULT_BURN_IN,DEFAULT_SWEEPS_PER_STEP,seed);
+    }
+
+    public GibbsSampler(TimeGraphFactors factors, int burnIn, int sweepsPerStep, long seed) {
+        if(burnIn<0) throw new IllegalArgumentException("Burn in must not be negative");
+        if(sweepsPerStep<1) throw new IllegalArgumentException("Sweeps per step must be positive");
+        this.graph=new FactorGraph(factors);
+        this.burnIn=burnIn;
+        this.sweepsPerStep=sweepsPerStep;
+        this.random=new SplittableRandom(seed);
+        this.state=new Assignment(graph.layout);
+        this.unobserved=new int[graph.numNodes()];
+    }
+
+    @Override
+    public double[] futureMarginals(FactorArena logPotentials, Assignment evidence, Assignment observed, double[] out) {
+        return sample(null, logPotentials, evidence, observed, out);
+    }
+
+    @Override
+    public double[] futureMarginals(double[] logPotentials, Assignment evidence, Assignment observed, double[] out) {
+        return sample(logPotentials, null, evidence, observed, out);
+    }
+
+    // Reads the heap table, or the arena in place when heap is null
+    private double[] sample(double[] heap, FactorArena arena, Assignment evidence, Assignment observed, double[] out) {
+        boolean[] isObserved = graph.observedNodes(observed);
+        int numUnobserved = 0;
+        for(int v = 0; v < isObserved.length; v++) {
+            if(isObserved[v]) state.set(v,evidence.get(v));
+            else unobserved[numUnobserved++]=v;
+        }
+        if(!burnedIn) {
+            for(int s = 0; s < burnIn; s++) sweep(heap,arena,numUnobserved);
+            burnedIn=true;
+        }
+        for(int d = 0; d < out.length; d++) out[d]=0d;
+        for(int s = 0; s < sweepsPerStep; s++) {
+            sweep(heap,arena,numUnobserved);
+            for(int d = 0; d < out.length; d++) {
+                int node = graph.layout.futureNode(d);
+                out[d] += isObserved[node] ? evidence.get(node) : FactorGraph.sigmoid(graph.conditionalLogOdds(heap,arena,node,state));
+            }
+        }
+        for(int d = 0; d < out.length; d++) out[d]/=sweepsPerStep;
+        return out;
+    }
+
+    private void sweep(double[] heap, FactorArena arena, int numUnobserved) {
+        for(int i = 0; i < numUnobserved; i++) {
+            int v = unobserved[i];
+            double p = FactorGraph.sigmoid(graph.conditionalLogOdds(heap,arena,v,state));
+            state.set(v, random.nextDouble()<p ? 1 : 0);
+        }
+    }
+
+    // The next call burns in again from the current state
+    public void reset() {
+        burnedIn=false;
+    }
+}
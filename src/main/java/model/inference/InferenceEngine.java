@@ -0,0 +1,21 @@
+package model.inference;
+
+import model.Assignment;
+import model.FactorArena;
+
+/**
+ * Computes the future marginals of a TimeGraph network from log potentials laid out
+ * like its factor table (see TimeGraphFactors). Engines may keep state between calls,
+ * such as messages or a Markov chain, so unless stated otherwise an instance belongs to
+ * one policy or thread.
+ */
+public interface InferenceEngine {
+    /**
+     * Fills out[d] with P(company d goes up | the observed nodes of evidence). observed has
+     * a bit set for every observed node; null means every non future node is observed.
+     */
+    double[] futureMarginals(double[] logPotentials, Assignment evidence, Assignment observed, double[] out);
+
+    // Same over potentials held in a FactorArena, read in place without a heap copy
+    double[] futureMarginals(FactorArena logPotentials, Assignment evidence, Assignment observed, double[] out);
+}
@@ -0,0 +1,22 @@
+package model.inference;
+
+import model.ClosedFormMarginals;
+
+/**
+ * Inference engines a backtest can be run with. EXACT is the shared ClosedFormMarginals
+ * and needs every history node observed; the approximate engines also handle
+ * missing history and are created fresh per policy since they keep state between steps.
+ */
+public enum InferenceMethod {
+    EXACT, LOOPY_BP, GIBBS;
+
+    public static final long DEFAULT_SEED = 42L;
+
+    public InferenceEngine create(ClosedFormMarginals closedForm) {
+        switch(this) {
+            case LOOPY_BP: return new LoopyBeliefPropagation(closedForm.getFactors());
+            case GIBBS: return new GibbsSampler(closedForm.getFactors(),DEFAULT_SEED);
+            default: return closedForm;
+        }
+    }
+}
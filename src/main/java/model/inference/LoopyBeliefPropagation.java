@@ -0,0 +1,137 @@
+package model.inference;
+
+import lombok.Getter;
+import model.Assignment;
+import model.FactorArena;
+import model.TimeGraphFactors;
+
+import java.util.Arrays;
+
+/**
+ * Sum-product message passing on the factor graph with a flooding schedule. Messages
+ * between binary nodes are stored as log odds, and the ones from the previous call are
+ * the starting point of the next, so consecutive steps usually converge in a few sweeps.
+ * With every history node observed the graph is a forest and one sweep is exact.
+ */
+public class LoopyBeliefPropagation implements InferenceEngine {
+    public static final int DEFAULT_MAX_ITERATIONS = 50;
+    public static final double DEFAULT_TOLERANCE = 1e-6;
+    private final FactorGraph graph;
+    @Getter
+    private final int maxIterations;
+    @Getter
+    private final double tolerance;
+    // fraction of the old message kept by each update, 0 for plain BP
+    @Getter
+    private final double damping;
+    // log odds of the message from pairwise factor f to its first and second node
+    private final double[] toFirst;
+    private final double[] toSecond;
+    private final double[] beliefs;
+    @Getter
+    private int lastIterations;
+
+    public LoopyBeliefPropagation(TimeGraphFactors factors) {
+        this(factors,DEFAULT_MAX_ITERATIONS,DEFAULT_TOLERANCE,0d);
+    }
+
+    public LoopyBeliefPropagation(TimeGraphFactors factors, int maxIterations, double tolerance, double damping) {
+        if(maxIterations<1) throw new IllegalArgumentException("Max iterations must be positive");
+        if(damping<0||damping>=1) throw new IllegalArgumentException("Damping must be in [0,1)");
+        this.graph=new FactorGraph(factors);
+        this.maxIterations=maxIterations;
+        this.tolerance=tolerance;
+        this.damping=damping;
+        this.toFirst=new double[factors.numFactors()];
+        this.toSecond=new double[factors.numFactors()];
+        this.beliefs=new double[graph.numNodes()];
+    }
+
+    @Override
+    public double[] futureMarginals(FactorArena logPotentials, Assignment evidence, Assignment observed, double[] out) {
+        return propagate(null, logPotentials, evidence, observed, out);
+    }
+
+    @Override
+    public double[] futureMarginals(double[] logPotentials, Assignment evidence, Assignment observed, double[] out) {
+        return propagate(logPotentials, null, evidence, observed, out);
+    }
+
+    // Reads the heap table, or the arena in place when heap is null
+    private double[] propagate(double[] heap, FactorArena arena, Assignment evidence, Assignment observed, double[] out) {
+        TimeGraphFactors factors = graph.factors;
+        boolean[] isObserved = graph.observedNodes(observed);
+        lastIterations=0;
+        double maxDelta = Double.POSITIVE_INFINITY;
+        while(lastIterations<maxIterations&&maxDelta>tolerance) {
+            computeBeliefs(heap,arena);
+            maxDelta=0d;
+            for(int f = 0; f < factors.numFactors(); f++) {
+                if(factors.isUnary(f)) continue;
+                int a = factors.first(f);
+                int b = factors.second(f);
+                int offset = factors.offset(f);
+                // cells (a,b) = 00, 01, 10, 11
+                double p00 = FactorGraph.potential(heap,arena,offset);
+                double p01 = FactorGraph.potential(heap,arena,offset+1);
+                double p10 = FactorGraph.potential(heap,arena,offset+2);
+                double p11 = FactorGraph.potential(heap,arena,offset+3);
+                double second;
+                if(isObserved[b]) {
+                    second = 0d;
+                } else if(isObserved[a]) {
+                    second = evidence.get(a)==0 ? p01-p00 : p11-p10;
+                } else {
+                    double mu = beliefs[a]-toFirst[f];
+                    second = logAddExp(p01,p11+mu)-logAddExp(p00,p10+mu);
+                }
+                // messages into observed nodes are never read
+                double first;
+                if(isObserved[a]) {
+                    first = 0d;
+                } else if(isObserved[b]) {
+                    first = evidence.get(b)==0 ? p10-p00 : p11-p01;
+                } else {
+                    double nu = beliefs[b]-toSecond[f];
+                    first = logAddExp(p10,p11+nu)-logAddExp(p00,p01+nu);
+                }
+                second = (1d-damping)*second+damping*toSecond[f];
+                first = (1d-damping)*first+damping*toFirst[f];
+                maxDelta = Math.max(maxDelta,Math.max(Math.abs(second-toSecond[f]),Math.abs(first-toFirst[f])));
+                toSecond[f]=second;
+                toFirst[f]=first;
+            }
+            lastIterations++;
+        }
+        computeBeliefs(heap,arena);
+        for(int d = 0; d < out.length; d++) {
+            int node = graph.layout.futureNode(d);
+            out[d] = isObserved[node] ? evidence.get(node) : FactorGraph.sigmoid(beliefs[node]);
+        }
+        return out;
+    }
+
+    private void computeBeliefs(double[] heap, FactorArena arena) {
+        TimeGraphFactors factors = graph.factors;
+        Arrays.fill(beliefs,0d);
+        for(int f = 0; f < factors.numFactors(); f++) {
+            if(factors.isUnary(f)) {
+                int offset = factors.offset(f);
+                beliefs[factors.first(f)]+=FactorGraph.potential(heap,arena,offset+1)-FactorGraph.potential(heap,arena,offset);
+            } else {
+                beliefs[factors.first(f)]+=toFirst[f];
+                beliefs[factors.second(f)]+=toSecond[f];
+            }
+        }
+    }
+
+    // Forgets the messages of earlier calls
+    public void reset() {
+        Arrays.fill(toFirst,0d);
+        Arrays.fill(toSecond,0d);
+    }
+
+    private static double logAddExp(double a, double b) {
+        return Math.max(a,b)+Math.log1p(Math.exp(-Math.abs(a-b)));
+    }
+}
@@ -0,0 +1,59 @@
+package model.montecarlo;
+
+import data.PriceMatrix;
+
+import java.util.SplittableRandom;
+
+/**
+ * Resamples price paths from the step over step returns of a history. Paths are built
+ * from blocks of consecutive historical steps, wrapping around the end of the history,
+ * and every symbol takes its return from the same historical step, so both serial and
+ * cross sectional dependence survive within a block.
+ */
+public class BlockBootstrap {
+    private final PriceMatrix history;
+    // ratios[s][k] = price of symbol s at step k+1 over its price at step k
+    private final double[][] ratios;
+    private final double[] startPrices;
+
+    public BlockBootstrap(PriceMatrix history) {
+        if(history.size()<2) throw new IllegalArgumentException("History needs at least two rows");
+        this.history=history;
+        int numReturns = history.size()-1;
+        this.ratios=new double[history.numSymbols()][numReturns];
+        for(int s = 0; s < ratios.length; s++) {
+            for(int k = 0; k < numReturns; k++) {
+                double previous = history.price(s,k);
+                ratios[s][k] = previous>0 ? history.price(s,k+1)/previous : 1d;
+            }
+        }
+        // paths continue from the latest prices
+        this.startPrices=history.row(history.size()-1, new double[history.numSymbols()]);
+    }
+
+    public int numReturns() {
+        return ratios.length==0 ? 0 : ratios[0].length;
+    }
+
+    // A path of numRows rows whose first row is the latest historical price row
+    public PriceMatrix samplePath(int numRows, int blockSize, SplittableRandom random) {
+        int numSymbols = ratios.length;
+        int numReturns = numReturns();
+        double[][] columns = new double[numSymbols][numRows];
+        for(int s = 0; s < numSymbols; s++) columns[s][0]=startPrices[s];
+        int t = 1;
+        while(t < numRows) {
+            int from = random.nextInt(numReturns);
+            int length = Math.min(blockSize, numRows-t);
+            for(int s = 0; s < numSymbols; s++) {
+                double[] column = columns[s];
+                double[] symbolRatios = ratios[s];
+                for(int i = 0; i < length; i++) {
+                    column[t+i] = column[t+i-1]*symbolRatios[(from+i)%numReturns];
+                }
+            }
+            t+=length;
+        }
+        return new PriceMatrix(history.getSymbols(), columns, numRows);
+    }
+}
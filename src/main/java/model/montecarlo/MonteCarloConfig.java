@@ -0,0 +1,65 @@
+package model.montecarlo;
+
+import lombok.Getter;
+
+/**
+ * Size and sampling parameters of a Monte Carlo run. Paths are numbered, and path k is
+ * drawn from a generator seeded from (seed, k), so results do not depend on how paths
+ * are spread over threads.
+ */
+public class MonteCarloConfig {
+    @Getter
+    private int numPaths = 1000;
+    // traded steps per path, after the numLayers rows that only feed history
+    @Getter
+    private int pathLength = 250;
+    @Getter
+    private int blockSize = 20;
+    @Getter
+    private long seed = 42L;
+    @Getter
+    private int periodsPerYear = 252;
+    // paths per parallel task, and so how often partial summaries are streamed
+    @Getter
+    private int batchSize = 64;
+
+    public MonteCarloConfig numPaths(int numPaths) {
+        if(numPaths<1) throw new IllegalArgumentException("Number of paths must be positive");
+        this.numPaths=numPaths;
+        return this;
+    }
+
+    public MonteCarloConfig pathLength(int pathLength) {
+        if(pathLength<2) throw new IllegalArgumentException("Path length must be at least 2");
+        this.pathLength=pathLength;
+        return this;
+    }
+
+    public MonteCarloConfig blockSize(int blockSize) {
+        if(blockSize<1) throw new IllegalArgumentException("Block size must be positive");
+        this.blockSize=blockSize;
+        return this;
+    }
+
+    public MonteCarloConfig seed(long seed) {
+        this.seed=seed;
+        return this;
+    }
+
+    public MonteCarloConfig periodsPerYear(int periodsPerYear) {
+        if(periodsPerYear<1) throw new IllegalArgumentException("Periods per year must be positive");
+        this.periodsPerYear=periodsPerYear;
+        return this;
+    }
+
+    public MonteCarloConfig batchSize(int batchSize) {
+        if(batchSize<1) throw new IllegalArgumentException("Batch size must be positive");
+        this.batchSize=batchSize;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "paths="+numPaths+" length="+pathLength+" block="+blockSize+" seed="+seed;
+    }
+}
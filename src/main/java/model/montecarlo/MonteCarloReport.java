@@ -0,0 +1,56 @@
+package model.montecarlo;
+
+import lombok.Getter;
+
+import java.io.PrintStream;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges the per batch summaries of a Monte Carlo run as batches finish, printing a
+ * progress line about every tenth of the paths. Memory does not depend on the number
+ * of paths.
+ */
+public class MonteCarloReport {
+    @Getter
+    private final MonteCarloConfig config;
+    private final Map<String,PolicySummary> summaries = new LinkedHashMap<>();
+    private final PrintStream out;
+    private final NumberFormat formatter = new DecimalFormat("#0.00");
+    private int pathsDone;
+    private int nextProgress;
+
+    public MonteCarloReport(MonteCarloConfig config, List<String> policies, PrintStream out) {
+        this.config=config;
+        this.out=out;
+        for(String policy : policies) summaries.put(policy, new PolicySummary(policy));
+    }
+
+    public synchronized void merge(List<PolicySummary> batch, int numPaths) {
+        for(PolicySummary summary : batch) {
+            summaries.get(summary.getPolicy()).merge(summary);
+        }
+        pathsDone+=numPaths;
+        if(out!=null&&pathsDone>=nextProgress) {
+            nextProgress=pathsDone+Math.max(1,config.getNumPaths()/10);
+            StringBuilder line = new StringBuilder("["+pathsDone+"/"+config.getNumPaths()+"]");
+            for(PolicySummary summary : summaries.values()) {
+                line.append(" ").append(summary.getPolicy()).append(": ").append(formatter.format(summary.getReturns().mean()*100)).append("%");
+            }
+            out.println(line);
+        }
+    }
+
+    public synchronized Map<String,PolicySummary> getSummaries() {
+        return Collections.unmodifiableMap(summaries);
+    }
+
+    public synchronized void print(PrintStream out) {
+        out.println("Monte Carlo "+config);
+        for(PolicySummary summary : summaries.values()) summary.print(out);
+    }
+}
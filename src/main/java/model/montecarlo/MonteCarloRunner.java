@@ -0,0 +1,99 @@
+package model.montecarlo;
+
+import data.PriceMatrix;
+import data.PriceSnapshot;
+import data.UpDownSeries;
+import finance.Portfolio;
+import lombok.Getter;
+import model.*;
+import model.trade_policy.InferenceTradePolicy;
+import model.trade_policy.MarketTradePolicy;
+import model.trade_policy.MutlipleStockPolicy;
+import model.trade_policy.TradePolicy;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * Backtests trade policies over block bootstrapped price paths in parallel.
+ *
+ * Paths are generated and run in batches on a ForkJoinPool; every policy sees the same
+ * paths, each with its own Portfolio. A batch only keeps its summaries, which are merged
+ * into the MonteCarloReport as it finishes, so paths are dropped once they are run.
+ */
+public class MonteCarloRunner {
+    // spreads consecutive path numbers over the seed space
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private final BlockBootstrap bootstrap;
+    @Getter
+    private final TimeGraphLayout layout;
+    @Getter
+    private final ClosedFormMarginals closedForm;
+    private final double startingCash;
+    private final double transactionCost;
+    private final ForkJoinPool pool;
+
+    public MonteCarloRunner(PriceSnapshot history, int numLayers, double startingCash, double transactionCost) {
+        this(history, numLayers, startingCash, transactionCost, ForkJoinPool.commonPool());
+    }
+
+    public MonteCarloRunner(PriceSnapshot history, int numLayers, double startingCash, double transactionCost, ForkJoinPool pool) {
+        this.bootstrap=new BlockBootstrap(history.getPrices());
+        this.layout=new TimeGraphLayout(history.getPrices().getSymbols(), numLayers);
+        this.closedForm=new ClosedFormMarginals(new TimeGraphFactors(layout));
+        this.startingCash=startingCash;
+        this.transactionCost=transactionCost;
+        this.pool=pool;
+    }
+
+    // policies maps a name to a factory building a fresh policy for each path's portfolio
+    public MonteCarloReport run(MonteCarloConfig config, Map<String,Function<Portfolio,TradePolicy>> policies, PrintStream out) {
+        List<String> names = new ArrayList<>(policies.keySet());
+        List<Function<Portfolio,TradePolicy>> factories = new ArrayList<>(policies.values());
+        MonteCarloReport report = new MonteCarloReport(config, names, out);
+        List<CompletableFuture<?>> batches = new ArrayList<>();
+        for(int from = 0; from < config.getNumPaths(); from+=config.getBatchSize()) {
+            int batchFrom = from;
+            int batchTo = Math.min(config.getNumPaths(), from+config.getBatchSize());
+            batches.add(CompletableFuture.supplyAsync(()->runBatch(batchFrom, batchTo, config, names, factories), pool)
+                    .thenAccept(summaries->report.merge(summaries, batchTo-batchFrom)));
+        }
+        CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[batches.size()])).join();
+        return report;
+    }
+
+    private List<PolicySummary> runBatch(int from, int to, MonteCarloConfig config, List<String> names, List<Function<Portfolio,TradePolicy>> factories) {
+        int numLayers = layout.getNumLayers();
+        List<PolicySummary> summaries = new ArrayList<>(names.size());
+        for(String name : names) summaries.add(new PolicySummary(name));
+        for(int k = from; k < to; k++) {
+            SplittableRandom random = new SplittableRandom(config.getSeed()+k*GOLDEN_GAMMA);
+            PriceMatrix path = bootstrap.samplePath(numLayers+config.getPathLength(), config.getBlockSize(), random);
+            AssignmentSeries steps = new AssignmentSeries(UpDownSeries.fromPrices(path), layout, numLayers, config.getPathLength());
+            PriceMatrix prices = path.view(numLayers, path.size());
+            for(int i = 0; i < factories.size(); i++) {
+                Portfolio portfolio = new Portfolio(prices, startingCash, transactionCost);
+                portfolio.determineTrades(new TimeGraphAlgorithm(steps), factories.get(i).apply(portfolio));
+                summaries.get(i).add(startingCash, portfolio.getEquityCurve(), config.getPeriodsPerYear());
+            }
+        }
+        return summaries;
+    }
+
+    // optional args: price csv or snapshot, number of paths
+    public static void main(String[] args) throws Exception {
+        PriceSnapshot data = PriceSnapshot.read(new File(args.length>0 ? args[0] : "sample_stock_output.csv"));
+        MonteCarloConfig config = new MonteCarloConfig().numPaths(args.length>1 ? Integer.valueOf(args[1]) : 1000).pathLength(250).blockSize(20);
+        double startingCash = 100000d;
+        MonteCarloRunner runner = new MonteCarloRunner(data, 4, startingCash, 1d);
+        Map<String,Function<Portfolio,TradePolicy>> policies = new LinkedHashMap<>();
+        policies.put("TimeGraph", portfolio->new InferenceTradePolicy(portfolio, new OnlineTimeGraphModel(runner.getClosedForm(), 2d, 7), Double.MAX_VALUE, Double.MAX_VALUE));
+        policies.put("Market (DJI)", portfolio->new MarketTradePolicy(portfolio));
+        policies.put("Portfolio", portfolio->new MutlipleStockPolicy(portfolio,"goog","amzn","kr","tsla","dji","wmt","aapl"));
+        runner.run(config, policies, System.out).print(System.out);
+    }
+}
@@ -0,0 +1,73 @@
+package model.montecarlo;
+
+import lombok.Getter;
+
+import java.io.PrintStream;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+
+/**
+ * Distributions of a policy's total return, maximum drawdown and annualized Sharpe
+ * ratio over the simulated paths.
+ */
+public class PolicySummary {
+    @Getter
+    private final String policy;
+    @Getter
+    private final StreamingStats returns;
+    @Getter
+    private final StreamingStats maxDrawdowns;
+    @Getter
+    private final StreamingStats sharpeRatios;
+
+    public PolicySummary(String policy) {
+        this.policy=policy;
+        // returns from -100% to +400% and Sharpe ratios within +-10 in 0.1% and 0.01 steps
+        this.returns=new StreamingStats(-1d,4d,5000);
+        this.maxDrawdowns=new StreamingStats(0d,1d,1000);
+        this.sharpeRatios=new StreamingStats(-10d,10d,2000);
+    }
+
+    /**
+     * Adds one path given the cash plus holdings after each step of it. Step returns are
+     * measured against the previous step, or startingCash for the first one.
+     */
+    public void add(double startingCash, double[] equityCurve, int periodsPerYear) {
+        double peak = startingCash;
+        double maxDrawdown = 0d;
+        double previous = startingCash;
+        double mean = 0d;
+        double m2 = 0d;
+        for(int t = 0; t < equityCurve.length; t++) {
+            double equity = equityCurve[t];
+            peak=Math.max(peak,equity);
+            if(peak>0) maxDrawdown=Math.max(maxDrawdown,(peak-equity)/peak);
+            double stepReturn = previous>0 ? equity/previous-1d : 0d;
+            double delta = stepReturn-mean;
+            mean+=delta/(t+1);
+            m2+=delta*(stepReturn-mean);
+            previous=equity;
+        }
+        double last = equityCurve.length==0 ? startingCash : equityCurve[equityCurve.length-1];
+        returns.add((last-startingCash)/startingCash);
+        maxDrawdowns.add(maxDrawdown);
+        double stdDev = equityCurve.length>1 ? Math.sqrt(m2/(equityCurve.length-1)) : 0d;
+        sharpeRatios.add(stdDev>0 ? mean/stdDev*Math.sqrt(periodsPerYear) : 0d);
+    }
+
+    public void merge(PolicySummary other) {
+        returns.merge(other.returns);
+        maxDrawdowns.merge(other.maxDrawdowns);
+        sharpeRatios.merge(other.sharpeRatios);
+    }
+
+    public void print(PrintStream out) {
+        NumberFormat percent = new DecimalFormat("#0.00");
+        NumberFormat ratio = new DecimalFormat("#0.000");
+        out.println(policy+" over "+returns.count()+" paths");
+        out.println("    Return: mean "+percent.format(returns.mean()*100)+"%  std dev "+percent.format(returns.stdDev()*100)+"%  p5 "+percent.format(returns.quantile(0.05)*100)
+                +"%  median "+percent.format(returns.quantile(0.5)*100)+"%  p95 "+percent.format(returns.quantile(0.95)*100)+"%");
+        out.println("    Max drawdown: mean "+percent.format(maxDrawdowns.mean()*100)+"%  median "+percent.format(maxDrawdowns.quantile(0.5)*100)+"%  p95 "+percent.format(maxDrawdowns.quantile(0.95)*100)+"%");
+        out.println("    Sharpe: mean "+ratio.format(sharpeRatios.mean())+"  median "+ratio.format(sharpeRatios.quantile(0.5))+"  p5 "+ratio.format(sharpeRatios.quantile(0.05)));
+    }
+}
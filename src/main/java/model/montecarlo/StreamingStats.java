@@ -0,0 +1,91 @@
+package model.montecarlo;
+
+/**
+ * Constant memory summary of a stream of values: count, mean and variance (Welford),
+ * min, max, and a fixed width histogram over [low, high) for approximate quantiles.
+ * Values outside the range are counted at the edges, so quantiles there are clamped to
+ * the observed min and max. Not thread safe; merge per thread summaries instead.
+ */
+public class StreamingStats {
+    private final double low;
+    private final double high;
+    private final long[] bins;
+    private long count;
+    private double mean;
+    private double m2;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public StreamingStats(double low, double high, int numBins) {
+        if(!(high>low)||numBins<1) throw new IllegalArgumentException("Invalid histogram range");
+        this.low=low;
+        this.high=high;
+        this.bins=new long[numBins];
+    }
+
+    public void add(double value) {
+        if(Double.isNaN(value)) return;
+        count++;
+        double delta = value-mean;
+        mean+=delta/count;
+        m2+=delta*(value-mean);
+        min=Math.min(min,value);
+        max=Math.max(max,value);
+        bins[bin(value)]++;
+    }
+
+    private int bin(double value) {
+        int bin = (int)((value-low)/(high-low)*bins.length);
+        return Math.max(0,Math.min(bins.length-1,bin));
+    }
+
+    // Chan et al. pairwise combination of the moments
+    public void merge(StreamingStats other) {
+        if(other.bins.length!=bins.length||other.low!=low||other.high!=high) throw new IllegalArgumentException("Histograms differ");
+        if(other.count==0) return;
+        long total = count+other.count;
+        double delta = other.mean-mean;
+        m2+=other.m2+delta*delta*count*other.count/total;
+        mean+=delta*other.count/total;
+        count=total;
+        min=Math.min(min,other.min);
+        max=Math.max(max,other.max);
+        for(int i = 0; i < bins.length; i++) bins[i]+=other.bins[i];
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double mean() {
+        return count==0 ? Double.NaN : mean;
+    }
+
+    public double stdDev() {
+        return count>1 ? Math.sqrt(m2/(count-1)) : 0d;
+    }
+
+    public double min() {
+        return min;
+    }
+
+    public double max() {
+        return max;
+    }
+
+    // Approximate p quantile, interpolated within the histogram bin it falls in
+    public double quantile(double p) {
+        if(count==0) return Double.NaN;
+        double target = p*count;
+        long seen = 0;
+        double width = (high-low)/bins.length;
+        for(int i = 0; i < bins.length; i++) {
+            if(bins[i]>0&&seen+bins[i]>=target) {
+                double value = low+width*(i+(target-seen)/bins[i]);
+                return Math.max(min,Math.min(max,value));
+            }
+            seen+=bins[i];
+        }
+        return max;
+    }
+}
@@ -0,0 +1,19 @@
+package model.streaming;
+
+import lombok.Getter;
+
+/**
+ * Prices of every symbol of a BarSource at one time step, in the source's symbol order.
+ * A symbol without a bar at this step has a NaN price.
+ */
+public class Bar {
+    @Getter
+    private final String date;
+    @Getter
+    private final double[] prices;
+
+    public Bar(String date, double[] prices) {
+        this.date=date;
+        this.prices=prices;
+    }
+}
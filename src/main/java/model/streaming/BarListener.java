@@ -0,0 +1,13 @@
+package model.streaming;
+
+import finance.Trade;
+
+import java.util.List;
+
+/**
+ * Called by StreamingPipeline on its own thread after every bar, so implementations
+ * should hand work off rather than block. The bar is only valid during the call.
+ */
+public interface BarListener {
+    void onBar(Bar bar, List<Trade> trades, long latencyNanos);
+}
@@ -0,0 +1,16 @@
+package model.streaming;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Bars arriving one at a time. next() blocks until a bar is available and returns null
+ * once the source is exhausted or closed. A returned bar is only valid until the next
+ * call, so sources are free to reuse its price array.
+ */
+public interface BarSource extends Closeable {
+    List<String> getSymbols();
+
+    Bar next() throws IOException, InterruptedException;
+}
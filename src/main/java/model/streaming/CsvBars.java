@@ -0,0 +1,46 @@
+package model.streaming;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Line parsing for the text sources, in the "date,price_sym1,price_sym2,..." layout
+ * read by data.CsvPriceReader.
+ */
+class CsvBars {
+    static List<String> symbols(String header) throws IOException {
+        if(header==null) throw new IOException("Missing csv header");
+        String[] headers = header.trim().split(",");
+        List<String> symbols = new ArrayList<>(headers.length);
+        // skip over date cell
+        for(int i = 1; i < headers.length; i++) {
+            String[] split = headers[i].split("_");
+            if(split.length<2) throw new IOException("Unexpected header cell: "+headers[i]);
+            symbols.add(split[1]);
+        }
+        return symbols;
+    }
+
+    // Bar of the line with prices parsed into the given array, or null for a blank line;
+    // an empty cell is a symbol without a bar and parses to NaN
+    static Bar parse(String line, double[] prices) throws IOException {
+        line=line.trim();
+        if(line.isEmpty()) return null;
+        String[] cells = line.split(",",-1);
+        if(cells.length!=prices.length+1) throw new IOException("Expected "+(prices.length+1)+" cells but got "+cells.length+": "+line);
+        for(int i = 0; i < prices.length; i++) {
+            String cell = cells[i+1].trim();
+            if(cell.isEmpty()) {
+                prices[i]=Double.NaN;
+                continue;
+            }
+            try {
+                prices[i]=Double.parseDouble(cell);
+            } catch(NumberFormatException e) {
+                throw new IOException("Invalid price in line: "+line, e);
+            }
+        }
+        return new Bar(cells[0], prices);
+    }
+}
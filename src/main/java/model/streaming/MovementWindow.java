@@ -0,0 +1,96 @@
+package model.streaming;
+
+import model.Assignment;
+import model.TimeGraphLayout;
+
+import java.util.Arrays;
+
+/**
+ * The last numLayers up/down movements of every company, kept as a numLayers bit shift
+ * register per company: each bar shifts the oldest movement out and the newest in at the
+ * future node's bit, so a company's register is already its block of an Assignment.
+ *
+ * A NaN price is a missing bar. A movement is observed only when the company has a price
+ * in both bars it spans; a second register per company tracks which movements are, so
+ * a step with missing bars can be handed to inference with its observed mask.
+ */
+public class MovementWindow {
+    private final TimeGraphLayout layout;
+    // column of each company in the bars' price arrays
+    private final int[] companyColumns;
+    // NaN until the company's first price, then its last price even across missing bars
+    private final double[] lastPrices;
+    private final boolean[] pricedLastBar;
+    private final long[] movements;
+    private final long[] observed;
+    private final long newest;
+    private final long allObserved;
+    private int numUnpriced;
+    private long numBars;
+
+    public MovementWindow(TimeGraphLayout layout, int[] companyColumns) {
+        if(companyColumns.length!=layout.numCompanies()) throw new IllegalArgumentException("Expected one column per company");
+        this.layout=layout;
+        this.companyColumns=companyColumns;
+        this.lastPrices=new double[layout.numCompanies()];
+        Arrays.fill(lastPrices,Double.NaN);
+        this.pricedLastBar=new boolean[layout.numCompanies()];
+        this.movements=new long[layout.numCompanies()];
+        this.observed=new long[layout.numCompanies()];
+        this.newest=1L << (layout.getNumLayers()-1);
+        this.allObserved=layout.getNumLayers()==64 ? -1L : (1L << layout.getNumLayers())-1;
+        this.numUnpriced=layout.numCompanies();
+    }
+
+    public void push(double[] prices) {
+        for(int c = 0; c < movements.length; c++) {
+            double price = prices[companyColumns[c]];
+            boolean priced = !Double.isNaN(price);
+            boolean known = priced && pricedLastBar[c];
+            long up = known && price-lastPrices[c]>0 ? newest : 0L;
+            movements[c] = (movements[c] >>> 1) | up;
+            observed[c] = (observed[c] >>> 1) | (known ? newest : 0L);
+            if(priced) {
+                if(Double.isNaN(lastPrices[c])) numUnpriced--;
+                lastPrices[c]=price;
+            }
+            pricedLastBar[c]=priced;
+        }
+        numBars++;
+    }
+
+    // A movement needs two bars, so the window is full after numLayers+1 bars and once
+    // every company has had a price
+    public boolean isFull() {
+        return numBars>layout.getNumLayers() && numUnpriced==0;
+    }
+
+    // True when every movement in the window, the newest included, is observed
+    public boolean isComplete() {
+        for(long bits : observed) {
+            if(bits!=allObserved) return false;
+        }
+        return true;
+    }
+
+    public long numBars() {
+        return numBars;
+    }
+
+    // Writes the window as an assignment whose future nodes hold the newest movements
+    public Assignment fill(Assignment assignment) {
+        if(!isFull()) throw new IllegalStateException("Window needs "+(layout.getNumLayers()+1)+" bars but has "+numBars);
+        for(int c = 0; c < movements.length; c++) {
+            assignment.setCompany(c,movements[c]);
+        }
+        return assignment;
+    }
+
+    // Writes the observed history nodes as set bits; future nodes are left unobserved
+    public Assignment fillObserved(Assignment mask) {
+        for(int c = 0; c < observed.length; c++) {
+            mask.setCompany(c,observed[c] & ~newest);
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,70 @@
+package model.streaming;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In memory source fed by other threads through a bounded queue. put blocks while the
+ * queue is full, which pushes back on producers when the pipeline falls behind; offer
+ * gives up after a timeout instead.
+ */
+public class QueueSource implements BarSource {
+    // marks the end of the stream, never handed to the pipeline
+    private static final Bar END = new Bar(null, new double[0]);
+    private final List<String> symbols;
+    private final BlockingQueue<Bar> queue;
+    private volatile boolean closed;
+
+    public QueueSource(List<String> symbols, int capacity) {
+        this.symbols=Collections.unmodifiableList(new ArrayList<>(symbols));
+        this.queue=new ArrayBlockingQueue<>(capacity);
+    }
+
+    public void put(Bar bar) throws InterruptedException {
+        checkBar(bar);
+        queue.put(bar);
+    }
+
+    public boolean offer(Bar bar, long timeout, TimeUnit unit) throws InterruptedException {
+        checkBar(bar);
+        return queue.offer(bar,timeout,unit);
+    }
+
+    // Ends the stream once the bars already queued have been consumed
+    public void finish() throws InterruptedException {
+        queue.put(END);
+    }
+
+    private void checkBar(Bar bar) {
+        if(closed) throw new IllegalStateException("Source is closed");
+        if(bar.getPrices().length!=symbols.size()) throw new IllegalArgumentException("Expected "+symbols.size()+" prices but got "+bar.getPrices().length);
+    }
+
+    @Override
+    public List<String> getSymbols() {
+        return symbols;
+    }
+
+    @Override
+    public Bar next() throws InterruptedException {
+        if(closed) return null;
+        Bar bar = queue.take();
+        if(bar==END) {
+            closed=true;
+            return null;
+        }
+        return bar;
+    }
+
+    // Drops any queued bars; producers blocked in put are released
+    @Override
+    public void close() {
+        closed=true;
+        queue.clear();
+        queue.offer(END);
+    }
+}
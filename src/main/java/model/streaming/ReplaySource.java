@@ -0,0 +1,46 @@
+package model.streaming;
+
+import data.PriceMatrix;
+import data.PriceSnapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Replays the rows of a PriceMatrix as bars, so backtests run through the same
+ * pipeline as live data.
+ */
+public class ReplaySource implements BarSource {
+    private final PriceMatrix prices;
+    private final double[] row;
+    private int idx;
+
+    public ReplaySource(PriceMatrix prices) {
+        this.prices=prices;
+        this.row=new double[prices.numSymbols()];
+    }
+
+    // Replays a price csv or snapshot
+    public static ReplaySource of(File data) throws IOException {
+        return new ReplaySource(PriceSnapshot.read(data).getPrices());
+    }
+
+    @Override
+    public List<String> getSymbols() {
+        return prices.getSymbols();
+    }
+
+    @Override
+    public Bar next() {
+        if(idx>=prices.size()) return null;
+        Bar bar = new Bar(prices.date(idx), prices.row(idx,row));
+        idx++;
+        return bar;
+    }
+
+    @Override
+    public void close() {
+        idx=prices.size();
+    }
+}
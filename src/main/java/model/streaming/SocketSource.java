@@ -0,0 +1,65 @@
+package model.streaming;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Reads bars from a socket sending the csv header line followed by one row per bar.
+ * The stream ends when the peer closes the connection. Socket reads stop when the TCP
+ * window fills, so a slow pipeline pushes back on the sender.
+ */
+public class SocketSource implements BarSource {
+    private final Socket socket;
+    private final BufferedReader reader;
+    private final List<String> symbols;
+    private final double[] prices;
+    private volatile boolean closed;
+
+    public SocketSource(String host, int port) throws IOException {
+        this(new Socket(host,port));
+    }
+
+    public SocketSource(Socket socket) throws IOException {
+        this.socket=socket;
+        try {
+            this.reader=new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            this.symbols=CsvBars.symbols(reader.readLine());
+        } catch(IOException|RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+        this.prices=new double[symbols.size()];
+    }
+
+    @Override
+    public List<String> getSymbols() {
+        return symbols;
+    }
+
+    @Override
+    public Bar next() throws IOException {
+        try {
+            String line;
+            while((line=reader.readLine())!=null) {
+                Bar bar = CsvBars.parse(line,prices);
+                if(bar!=null) return bar;
+            }
+            return null;
+        } catch(SocketException e) {
+            // closed from another thread while reading
+            if(closed) return null;
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed=true;
+        socket.close();
+    }
+}
@@ -0,0 +1,124 @@
+package model.streaming;
+
+import data.PriceMatrix;
+import finance.Portfolio;
+import finance.Trade;
+import lombok.Getter;
+import lombok.Setter;
+import metrics.Metrics;
+import model.Assignment;
+import model.TimeGraphAlgorithm;
+import model.TimeGraphLayout;
+import model.trade_policy.TradePolicy;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Runs a TradePolicy bar by bar over a BarSource, for live paper trading or, with a
+ * ReplaySource, backtests. Each bar updates a MovementWindow and, once it is full,
+ * goes through the same trading step as TimeGraphAlgorithm. The portfolio prices over
+ * a two row matrix holding the previous and the current bar, so the work per bar does
+ * not depend on how many bars came before.
+ *
+ * A symbol missing from a bar (NaN price) keeps its last price for the portfolio, and
+ * the step goes to the policy with the window's observed mask, so an InferenceTradePolicy
+ * with an approximate InferenceEngine infers the missing history instead of learning
+ * from it. Trading starts once every company has had a price.
+ */
+public class StreamingPipeline {
+    // row of the current bar in the portfolio's price matrix; row 0 is the previous bar
+    private static final int CURRENT = 1;
+
+    private final BarSource source;
+    @Getter
+    private final TimeGraphLayout layout;
+    @Getter
+    private final Portfolio portfolio;
+    private final TradePolicy tradePolicy;
+    private final MovementWindow window;
+    private final Assignment assignment;
+    private final Assignment observed;
+    private final double[][] priceColumns;
+    @Setter
+    private BarListener listener;
+    @Getter
+    private long numSteps;
+    @Getter
+    private long maxLatencyNanos;
+    @Getter
+    private long totalLatencyNanos;
+    @Getter
+    private double totalRate;
+
+    // policyFactory builds the policy for the pipeline's portfolio, e.g. an InferenceTradePolicy sharing an OnlineTimeGraphModel
+    public StreamingPipeline(BarSource source, TimeGraphLayout layout, double startingCash, double transactionCost, Function<Portfolio,TradePolicy> policyFactory) {
+        this.source=source;
+        this.layout=layout;
+        List<String> symbols = source.getSymbols();
+        this.priceColumns=new double[symbols.size()][2];
+        PriceMatrix prices = new PriceMatrix(symbols, priceColumns, 2);
+        int[] companyColumns = new int[layout.numCompanies()];
+        for(int c = 0; c < companyColumns.length; c++) {
+            companyColumns[c]=prices.symbolId(layout.getCompanies().get(c));
+        }
+        this.window=new MovementWindow(layout, companyColumns);
+        this.assignment=new Assignment(layout);
+        this.observed=new Assignment(layout);
+        this.portfolio=new Portfolio(prices, startingCash, transactionCost);
+        // memory must not grow with the length of the stream
+        portfolio.setRecordEquityCurve(false);
+        this.tradePolicy=policyFactory.apply(portfolio);
+    }
+
+    // Processes bars until the source is exhausted and returns the overall rate of return
+    public double run() throws IOException, InterruptedException {
+        Bar bar;
+        while((bar=source.next())!=null) {
+            process(bar);
+        }
+        return rateOfReturn();
+    }
+
+    // Trades made on the bar; none until the window has numLayers+1 bars
+    public List<Trade> process(Bar bar) {
+        long start = System.nanoTime();
+        long stepStart = Metrics.start();
+        long allocated = stepStart==0L ? 0L : Metrics.allocatedBytes();
+        double[] prices = bar.getPrices();
+        for(int s = 0; s < priceColumns.length; s++) {
+            priceColumns[s][CURRENT-1]=priceColumns[s][CURRENT];
+            if(!Double.isNaN(prices[s])) priceColumns[s][CURRENT]=prices[s];
+        }
+        window.push(prices);
+        List<Trade> trades = Collections.emptyList();
+        if(window.isFull()) {
+            // policies treat index 0 as the first step, so it gets the current bar in both rows
+            int idx = CURRENT;
+            if(numSteps==0) {
+                idx = 0;
+                for(int s = 0; s < priceColumns.length; s++) priceColumns[s][0]=priceColumns[s][CURRENT];
+            }
+            trades = TimeGraphAlgorithm.trade(portfolio, tradePolicy, window.fill(assignment), window.isComplete() ? null : window.fillObserved(observed), idx);
+            totalRate+=portfolio.endStep(idx);
+            numSteps++;
+            Metrics.endStep(stepStart, allocated, trades.size());
+        }
+        long latency = System.nanoTime()-start;
+        totalLatencyNanos+=latency;
+        maxLatencyNanos=Math.max(maxLatencyNanos,latency);
+        if(listener!=null) listener.onBar(bar, trades, latency);
+        return trades;
+    }
+
+    public long numBars() {
+        return window.numBars();
+    }
+
+    // Same measure as TimeGraphAlgorithm: cash plus holdings at the current bar against the starting cash
+    public double rateOfReturn() {
+        return (portfolio.getAvailableCash()+portfolio.computeMoney(portfolio.getLastProfile(), CURRENT)-portfolio.getStartingCash())/portfolio.getStartingCash();
+    }
+}
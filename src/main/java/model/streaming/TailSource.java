@@ -0,0 +1,86 @@
+package model.streaming;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+/**
+ * Follows a price csv that another process keeps appending rows to, like tail -f.
+ * Only complete lines are read; when none is available next() polls every pollMillis
+ * until one arrives or the source is closed.
+ */
+public class TailSource implements BarSource {
+    private final RandomAccessFile file;
+    private final long pollMillis;
+    private final List<String> symbols;
+    private final double[] prices;
+    private final StringBuilder partial = new StringBuilder();
+    private final byte[] buffer = new byte[8192];
+    private int bufferPosition;
+    private int bufferLimit;
+    private volatile boolean closed;
+
+    public TailSource(File csv, long pollMillis) throws IOException, InterruptedException {
+        this.file=new RandomAccessFile(csv,"r");
+        this.pollMillis=pollMillis;
+        try {
+            String header = readLine();
+            this.symbols=CsvBars.symbols(header);
+        } catch(IOException|InterruptedException|RuntimeException e) {
+            file.close();
+            throw e;
+        }
+        this.prices=new double[symbols.size()];
+    }
+
+    @Override
+    public List<String> getSymbols() {
+        return symbols;
+    }
+
+    @Override
+    public Bar next() throws IOException, InterruptedException {
+        String line;
+        while((line=readLine())!=null) {
+            Bar bar = CsvBars.parse(line,prices);
+            if(bar!=null) return bar;
+        }
+        return null;
+    }
+
+    // Next complete line, waiting for the writer as needed; null once closed
+    private String readLine() throws IOException, InterruptedException {
+        while(!closed) {
+            while(bufferPosition<bufferLimit) {
+                // prices and symbols are plain ascii
+                char c = (char)(buffer[bufferPosition++]&0xff);
+                if(c=='\n') {
+                    String line = partial.toString();
+                    partial.setLength(0);
+                    return line;
+                }
+                partial.append(c);
+            }
+            try {
+                bufferLimit=file.read(buffer);
+            } catch(IOException e) {
+                // closed from another thread while reading
+                if(closed) return null;
+                throw e;
+            }
+            bufferPosition=0;
+            if(bufferLimit<=0) {
+                bufferLimit=0;
+                Thread.sleep(pollMillis);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed=true;
+        file.close();
+    }
+}
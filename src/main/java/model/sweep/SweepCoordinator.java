@@ -0,0 +1,244 @@
+package model.sweep;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a SweepGrid across SweepWorker processes instead of one JVM's pool.
+ *
+ * Workers connect to the coordinator's port, on this host or any other, each connection
+ * taking one point at a time over a line protocol:
+ *     coordinator  SWEEP startingCash           once per connection
+ *     coordinator  JOB id numLayers alpha stopLoss takeProfit transactionCost windowSize
+ *     worker       RESULT id rateOfReturn elapsedMillis | FAILED id message
+ *     coordinator  DONE                         when every point is settled
+ * A point whose worker fails it, answers garbage, drops the connection or exceeds
+ * unitTimeoutMillis goes back on the queue for any worker, up to maxAttempts times; after
+ * that it is listed in getFailures(). The coordinator closes the connection of a worker
+ * that answered garbage or that it gave up waiting for; a SweepWorker reconnects once it
+ * is free again. Results reach
+ * the SweepReport as they complete.
+ *
+ * run() fails instead of waiting forever when points are pending and no worker is
+ * connected, either because every local worker has exited or because none has been
+ * connected for workerWaitMillis. A worker that hangs on a point keeps its connection
+ * only until unitTimeoutMillis, which is finite unless set to 0.
+ */
+public class SweepCoordinator implements Closeable {
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final int DEFAULT_WORKER_WAIT_MILLIS = 60000;
+    public static final int DEFAULT_UNIT_TIMEOUT_MILLIS = 600000;
+
+    private final ServerSocket server;
+    private final double startingCash;
+    // 0 waits for a result forever
+    @Getter @Setter
+    private int unitTimeoutMillis = DEFAULT_UNIT_TIMEOUT_MILLIS;
+    @Getter @Setter
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    @Getter @Setter
+    private int workerWaitMillis = DEFAULT_WORKER_WAIT_MILLIS;
+    private final AtomicInteger connected = new AtomicInteger();
+    private volatile long lastConnected;
+    private final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+    private final List<Process> localWorkers = new ArrayList<>();
+
+    public SweepCoordinator(int port, double startingCash) throws IOException {
+        this.server=new ServerSocket(port);
+        this.startingCash=startingCash;
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    // Points given up on after maxAttempts, with the last error of each
+    public List<String> getFailures() {
+        synchronized(failures) {
+            return new ArrayList<>(failures);
+        }
+    }
+
+    /**
+     * Starts numWorkers SweepWorker JVMs on this host with the coordinator's classpath, each
+     * loading data once and working threadsPerWorker points at a time. They exit with the sweep.
+     */
+    public void launchLocalWorkers(int numWorkers, File data, int threadsPerWorker) throws IOException {
+        String java = System.getProperty("java.home")+File.separator+"bin"+File.separator+"java";
+        for(int w = 0; w < numWorkers; w++) {
+            localWorkers.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), SweepWorker.class.getName(),
+                    "localhost", String.valueOf(getPort()), data.getPath(), String.valueOf(threadsPerWorker)).inheritIO().start());
+        }
+    }
+
+    /**
+     * Blocks until every point has a result or has used up its attempts. Throws
+     * IllegalStateException when points are left that no worker can run.
+     */
+    public SweepReport run(SweepGrid grid, PrintStream out) throws InterruptedException {
+        List<SweepParameters> points = grid.points();
+        SweepReport report = new SweepReport(points.size(), out);
+        BlockingDeque<Unit> pending = new LinkedBlockingDeque<>();
+        for(int i = 0; i < points.size(); i++) {
+            pending.add(new Unit(i, points.get(i)));
+        }
+        CountDownLatch settled = new CountDownLatch(points.size());
+        Thread acceptor = new Thread(()->{
+            while(!server.isClosed()&&settled.getCount()>0) {
+                try {
+                    Socket socket = server.accept();
+                    Thread connection = new Thread(()->serve(socket, pending, settled, report), "sweep-connection-"+socket.getRemoteSocketAddress());
+                    connection.setDaemon(true);
+                    connection.start();
+                } catch(IOException e) {
+                    if(!server.isClosed()) System.err.println("Sweep coordinator failed to accept a worker: "+e);
+                }
+            }
+        }, "sweep-acceptor");
+        acceptor.setDaemon(true);
+        lastConnected = System.currentTimeMillis();
+        acceptor.start();
+        while(!settled.await(100, TimeUnit.MILLISECONDS)) {
+            if(connected.get()>0) {
+                lastConnected = System.currentTimeMillis();
+            } else if(System.currentTimeMillis()-lastConnected>workerWaitMillis||(!localWorkers.isEmpty()&&localWorkers.stream().noneMatch(Process::isAlive))) {
+                throw new IllegalStateException(settled.getCount()+" of "+points.size()+" sweep points are unsettled and no worker is left to run them");
+            }
+        }
+        return report;
+    }
+
+    private void serve(Socket socket, BlockingDeque<Unit> pending, CountDownLatch settled, SweepReport report) {
+        connected.incrementAndGet();
+        try(Socket s = socket;
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            s.setSoTimeout(unitTimeoutMillis);
+            out.println("SWEEP "+startingCash);
+            while(true) {
+                Unit unit = pending.poll(100, TimeUnit.MILLISECONDS);
+                if(unit==null) {
+                    if(settled.getCount()==0) {
+                        out.println("DONE");
+                        return;
+                    }
+                    continue;
+                }
+                String line;
+                try {
+                    out.println("JOB "+unit.id+" "+encode(unit.parameters));
+                    if(out.checkError()) throw new IOException("Worker closed the connection");
+                    line = in.readLine();
+                    if(line==null) throw new IOException("Worker closed the connection");
+                } catch(IOException e) {
+                    // includes the timeout: the worker may still be busy, so the connection is closed
+                    retry(unit, socket.getRemoteSocketAddress()+": "+e, pending, settled);
+                    return;
+                }
+                if(line.startsWith("FAILED ")) {
+                    retry(unit, line, pending, settled);
+                    continue;
+                }
+                SweepResult result;
+                try {
+                    result = parseResult(line, unit);
+                } catch(RuntimeException e) {
+                    // a worker that answers garbage is dropped so it cannot burn every attempt
+                    retry(unit, socket.getRemoteSocketAddress()+": "+e.getMessage(), pending, settled);
+                    return;
+                }
+                report.add(result);
+                settled.countDown();
+            }
+        } catch(IOException|InterruptedException e) {
+            // the connection is gone; any unit it held was put back above
+        } finally {
+            connected.decrementAndGet();
+        }
+    }
+
+    // Throws on anything that is not the result of unit
+    private static SweepResult parseResult(String line, Unit unit) {
+        String[] fields = line.split(" ",4);
+        if(fields.length!=4||!fields[0].equals("RESULT")||Integer.parseInt(fields[1])!=unit.id) {
+            throw new IllegalArgumentException("Unexpected reply to point "+unit.id+": "+line);
+        }
+        return new SweepResult(unit.parameters, Double.parseDouble(fields[2]), Long.parseLong(fields[3]));
+    }
+
+    private void retry(Unit unit, String error, BlockingDeque<Unit> pending, CountDownLatch settled) {
+        unit.attempts++;
+        if(unit.attempts<maxAttempts) {
+            pending.addFirst(unit);
+        } else {
+            failures.add(unit.parameters+" failed "+unit.attempts+" times, last: "+error);
+            settled.countDown();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        for(Process worker : localWorkers) {
+            try {
+                if(!worker.waitFor(10, TimeUnit.SECONDS)) worker.destroy();
+            } catch(InterruptedException e) {
+                worker.destroy();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    static String encode(SweepParameters parameters) {
+        return parameters.getNumLayers()+" "+parameters.getAlpha()+" "+parameters.getStopLoss()+" "+parameters.getTakeProfit()
+                +" "+parameters.getTransactionCost()+" "+parameters.getWindowSize();
+    }
+
+    // Parses the fields written by encode, starting at fields[from]
+    static SweepParameters decode(String[] fields, int from) {
+        return new SweepParameters(Integer.parseInt(fields[from]), Double.parseDouble(fields[from+1]), Double.parseDouble(fields[from+2]),
+                Double.parseDouble(fields[from+3]), Double.parseDouble(fields[from+4]), Integer.parseInt(fields[from+5]));
+    }
+
+    private static class Unit {
+        private final int id;
+        private final SweepParameters parameters;
+        private int attempts;
+
+        private Unit(int id, SweepParameters parameters) {
+            this.id=id;
+            this.parameters=parameters;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        // args: price csv or snapshot, number of local workers, optional port (0 picks one) and threads per worker
+        File data = new File(args.length>0 ? args[0] : "sample_stock_output.csv");
+        int numWorkers = args.length>1 ? Integer.valueOf(args[1]) : 2;
+        int port = args.length>2 ? Integer.valueOf(args[2]) : 0;
+        int threads = args.length>3 ? Integer.valueOf(args[3]) : 1;
+        SweepGrid grid = new SweepGrid().numLayers(3,4,5,6).alpha(1d,2d,4d).stopLoss(0.5d,Double.MAX_VALUE).windowSize(7,30);
+        try(SweepCoordinator coordinator = new SweepCoordinator(port, 100000d)) {
+            System.out.println("Sweep coordinator listening on port "+coordinator.getPort());
+            coordinator.launchLocalWorkers(numWorkers, data, threads);
+            long start = System.currentTimeMillis();
+            SweepReport report = coordinator.run(grid, System.out);
+            System.out.println("Finished in "+(System.currentTimeMillis()-start)+"ms");
+            report.printTop(5, System.out);
+            coordinator.getFailures().forEach(System.out::println);
+        }
+    }
+}
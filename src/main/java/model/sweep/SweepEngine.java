@@ -0,0 +1,71 @@
+package model.sweep;
+
+import data.PriceSnapshot;
+import finance.Portfolio;
+import lombok.Getter;
+import model.OnlineTimeGraphModel;
+import model.TimeGraphAlgorithm;
+import model.TimeGraphDataset;
+import model.trade_policy.InferenceTradePolicy;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs a SweepGrid of TimeGraph backtests in parallel on a ForkJoinPool.
+ *
+ * All jobs read the same immutable PriceSnapshot. The dataset views and closed form
+ * marginals depend only on numLayers, so they are built once per numLayers and
+ * shared by every alpha, stop loss, take profit, cost and window size on top of it.
+ * Each job owns its Portfolio, policy and OnlineTimeGraphModel. Snapshot data has no
+ * missing bars, so every job uses the exact closed form; the approximate engines would
+ * only repeat it more slowly.
+ */
+public class SweepEngine {
+    private final PriceSnapshot data;
+    @Getter
+    private final double startingCash;
+    private final ForkJoinPool pool;
+    private final Map<Integer,TimeGraphDataset> datasets = new ConcurrentHashMap<>();
+
+    public SweepEngine(PriceSnapshot data, double startingCash) {
+        this(data, startingCash, ForkJoinPool.commonPool());
+    }
+
+    public SweepEngine(PriceSnapshot data, double startingCash, ForkJoinPool pool) {
+        this.data=data;
+        this.startingCash=startingCash;
+        this.pool=pool;
+    }
+
+    // Blocks until every point has finished; results are streamed to the report as they complete
+    public SweepReport run(SweepGrid grid, PrintStream out) {
+        List<SweepParameters> points = grid.points();
+        SweepReport report = new SweepReport(points.size(), out);
+        CompletableFuture<?>[] jobs = new CompletableFuture<?>[points.size()];
+        for(int i = 0; i < points.size(); i++) {
+            SweepParameters parameters = points.get(i);
+            jobs[i] = CompletableFuture.supplyAsync(()->runJob(parameters), pool).thenAccept(report::add);
+        }
+        CompletableFuture.allOf(jobs).join();
+        return report;
+    }
+
+    public SweepResult runJob(SweepParameters parameters) {
+        long start = System.currentTimeMillis();
+        TimeGraphDataset dataset = dataset(parameters.getNumLayers());
+        Portfolio portfolio = new Portfolio(dataset.getTestStockPrices(), startingCash, parameters.getTransactionCost());
+        OnlineTimeGraphModel onlineModel = new OnlineTimeGraphModel(dataset.getClosedForm(), parameters.getAlpha(), parameters.getWindowSize());
+        InferenceTradePolicy policy = new InferenceTradePolicy(portfolio, onlineModel, parameters.getStopLoss(), parameters.getTakeProfit());
+        double rateOfReturn = portfolio.determineTrades(new TimeGraphAlgorithm(dataset.getTestAssignments()), policy);
+        return new SweepResult(parameters, rateOfReturn, System.currentTimeMillis()-start);
+    }
+
+    public TimeGraphDataset dataset(int numLayers) {
+        return datasets.computeIfAbsent(numLayers, layers->new TimeGraphDataset(data, layers));
+    }
+}
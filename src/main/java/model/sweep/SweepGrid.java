@@ -0,0 +1,65 @@
+package model.sweep;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cartesian grid of sweep parameters. Every dimension defaults to a single value.
+ */
+public class SweepGrid {
+    private int[] numLayers = {4};
+    private double[] alphas = {2d};
+    private double[] stopLosses = {Double.MAX_VALUE};
+    private double[] takeProfits = {Double.MAX_VALUE};
+    private double[] transactionCosts = {1d};
+    private int[] windowSizes = {7};
+
+    public SweepGrid numLayers(int... numLayers) {
+        this.numLayers=numLayers;
+        return this;
+    }
+
+    public SweepGrid alpha(double... alphas) {
+        this.alphas=alphas;
+        return this;
+    }
+
+    public SweepGrid stopLoss(double... stopLosses) {
+        this.stopLosses=stopLosses;
+        return this;
+    }
+
+    public SweepGrid takeProfit(double... takeProfits) {
+        this.takeProfits=takeProfits;
+        return this;
+    }
+
+    public SweepGrid transactionCost(double... transactionCosts) {
+        this.transactionCosts=transactionCosts;
+        return this;
+    }
+
+    public SweepGrid windowSize(int... windowSizes) {
+        this.windowSizes=windowSizes;
+        return this;
+    }
+
+    // Points ordered by numLayers first, so jobs sharing a dataset are scheduled together
+    public List<SweepParameters> points() {
+        List<SweepParameters> points = new ArrayList<>();
+        for(int layers : numLayers) {
+            for(double alpha : alphas) {
+                for(double stopLoss : stopLosses) {
+                    for(double takeProfit : takeProfits) {
+                        for(double transactionCost : transactionCosts) {
+                            for(int windowSize : windowSizes) {
+                                points.add(new SweepParameters(layers,alpha,stopLoss,takeProfit,transactionCost,windowSize));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return points;
+    }
+}
@@ -0,0 +1,36 @@
+package model.sweep;
+
+import lombok.Getter;
+
+/**
+ * One point of a hyperparameter sweep.
+ */
+public class SweepParameters {
+    @Getter
+    private final int numLayers;
+    @Getter
+    private final double alpha;
+    @Getter
+    private final double stopLoss;
+    @Getter
+    private final double takeProfit;
+    @Getter
+    private final double transactionCost;
+    @Getter
+    private final int windowSize;
+
+    public SweepParameters(int numLayers, double alpha, double stopLoss, double takeProfit, double transactionCost, int windowSize) {
+        this.numLayers=numLayers;
+        this.alpha=alpha;
+        this.stopLoss=stopLoss;
+        this.takeProfit=takeProfit;
+        this.transactionCost=transactionCost;
+        this.windowSize=windowSize;
+    }
+
+    @Override
+    public String toString() {
+        return "[numLayers="+numLayers+", alpha="+alpha+", stopLoss="+stopLoss+", takeProfit="+takeProfit
+                +", transactionCost="+transactionCost+", windowSize="+windowSize+"]";
+    }
+}
@@ -0,0 +1,54 @@
+package model.sweep;
+
+import java.io.PrintStream;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Collects sweep results as jobs finish and keeps them ranked by rate of return.
+ * Each result is printed when it arrives, so long sweeps report progress.
+ */
+public class SweepReport {
+    private static final Comparator<SweepResult> BY_RETURN = Comparator.comparingDouble(SweepResult::getRateOfReturn).reversed();
+
+    private final List<SweepResult> results = new ArrayList<>();
+    private final int expected;
+    private final PrintStream out;
+    private final NumberFormat formatter = new DecimalFormat("#0.00");
+    private SweepResult best;
+
+    public SweepReport(int expected, PrintStream out) {
+        this.expected=expected;
+        this.out=out;
+    }
+
+    public synchronized void add(SweepResult result) {
+        results.add(result);
+        if(best==null||result.getRateOfReturn()>best.getRateOfReturn()) best=result;
+        if(out!=null) {
+            out.println("["+results.size()+"/"+expected+"] "+result.getParameters()+": "+formatter.format(result.getRateOfReturn()*100)+"% in "+result.getElapsedMillis()+"ms"
+                    +" (best "+formatter.format(best.getRateOfReturn()*100)+"%)");
+        }
+    }
+
+    public synchronized SweepResult best() {
+        return best;
+    }
+
+    public synchronized List<SweepResult> ranked() {
+        List<SweepResult> ranked = new ArrayList<>(results);
+        ranked.sort(BY_RETURN);
+        return ranked;
+    }
+
+    public void printTop(int k, PrintStream out) {
+        List<SweepResult> ranked = ranked();
+        for(int i = 0; i < Math.min(k,ranked.size()); i++) {
+            SweepResult result = ranked.get(i);
+            out.println((i+1)+". "+result.getParameters()+": "+formatter.format(result.getRateOfReturn()*100)+"%");
+        }
+    }
+}
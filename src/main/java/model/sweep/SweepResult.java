@@ -0,0 +1,21 @@
+package model.sweep;
+
+import lombok.Getter;
+
+/**
+ * Backtest outcome of one sweep point.
+ */
+public class SweepResult {
+    @Getter
+    private final SweepParameters parameters;
+    @Getter
+    private final double rateOfReturn;
+    @Getter
+    private final long elapsedMillis;
+
+    public SweepResult(SweepParameters parameters, double rateOfReturn, long elapsedMillis) {
+        this.parameters=parameters;
+        this.rateOfReturn=rateOfReturn;
+        this.elapsedMillis=elapsedMillis;
+    }
+}
@@ -0,0 +1,97 @@
+package model.sweep;
+
+import data.PriceSnapshot;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Worker process of a SweepCoordinator. Loads the price snapshot once, then opens one
+ * connection per thread to the coordinator and runs the points it is sent through a
+ * SweepEngine shared by those threads, so each numLayers dataset is built once per
+ * process. A dropped connection, e.g. after a unit timed out, is reopened; the worker
+ * exits when the coordinator says DONE or cannot be reached MAX_CONNECT_ATTEMPTS times
+ * in a row.
+ */
+public class SweepWorker {
+    public static final int MAX_CONNECT_ATTEMPTS = 5;
+    public static final long RECONNECT_DELAY_MILLIS = 500;
+
+    private final PriceSnapshot data;
+    private SweepEngine engine;
+
+    public SweepWorker(PriceSnapshot data) {
+        this.data=data;
+    }
+
+    private synchronized SweepEngine engine(double startingCash) {
+        if(engine==null||engine.getStartingCash()!=startingCash) engine=new SweepEngine(data, startingCash);
+        return engine;
+    }
+
+    // Serves connections until DONE, reconnecting whenever one drops
+    public void work(String host, int port) throws InterruptedException {
+        int failedConnects = 0;
+        while(true) {
+            boolean connected = false;
+            try(Socket socket = new Socket(host, port)) {
+                connected = true;
+                failedConnects = 0;
+                if(serve(socket)) return;
+            } catch(IOException e) {
+                if(!connected&&++failedConnects>=MAX_CONNECT_ATTEMPTS) {
+                    System.err.println("Sweep worker gave up on "+host+":"+port+": "+e);
+                    return;
+                }
+            }
+            Thread.sleep(RECONNECT_DELAY_MILLIS);
+        }
+    }
+
+    // Runs jobs until DONE (true) or the coordinator drops the connection (false)
+    private boolean serve(Socket socket) throws IOException {
+        try(BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            SweepEngine engine = null;
+            String line;
+            while((line=in.readLine())!=null) {
+                String[] fields = line.split(" ");
+                if(fields[0].equals("SWEEP")) {
+                    engine = engine(Double.parseDouble(fields[1]));
+                } else if(fields[0].equals("JOB")) {
+                    try {
+                        if(engine==null) throw new IllegalStateException("No SWEEP header before the first job");
+                        SweepResult result = engine.runJob(SweepCoordinator.decode(fields, 2));
+                        out.println("RESULT "+fields[1]+" "+result.getRateOfReturn()+" "+result.getElapsedMillis());
+                    } catch(RuntimeException e) {
+                        out.println("FAILED "+fields[1]+" "+String.valueOf(e).replace('\n',' '));
+                    }
+                } else if(fields[0].equals("DONE")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        // args: coordinator host, port, price csv or snapshot, optional number of connections
+        String host = args[0];
+        int port = Integer.valueOf(args[1]);
+        SweepWorker worker = new SweepWorker(PriceSnapshot.read(new File(args[2])));
+        int threads = args.length>3 ? Integer.valueOf(args[3]) : 1;
+        Thread[] connections = new Thread[threads];
+        for(int t = 0; t < threads; t++) {
+            connections[t] = new Thread(()->{
+                try {
+                    worker.work(host, port);
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "sweep-worker-"+t);
+            connections[t].start();
+        }
+        for(Thread connection : connections) connection.join();
+    }
+}
@@ -1,14 +1,22 @@
 package model.trade_policy;
 
+import data.PriceMatrix;
 import finance.Portfolio;
 import finance.Trade;
-import model.functions.inference_methods.BeliefPropagation;
-import model.functions.inference_methods.SamplingMethod;
+import lombok.Setter;
+import metrics.Metrics;
+import model.Assignment;
+import model.FrozenTimeGraphModel;
+import model.MarginalCache;
+import model.OnlineTimeGraphModel;
+import model.TimeGraph;
+import model.TimeGraphLayout;
 import model.functions.normalization.DivideByPartition;
 import model.graphs.BayesianNet;
 import model.graphs.CliqueTree;
 import model.graphs.Graph;
-import model.graphs.MetropolisHastingsChain;
+import model.inference.InferenceEngine;
+import model.learning.algorithms.BayesianLearningAlgorithm;
 import model.learning.algorithms.LearningAlgorithm;
 import model.learning.algorithms.MarkovLearningAlgorithm;
 import model.nodes.FactorNode;
@@ -23,48 +31,162 @@ import java.util.stream.Collectors;
 public class InferenceTradePolicy implements TradePolicy {
     protected Graph originalNet;
     protected Portfolio portfolio;
-    //protected MetropolisHastingsChain chain;
     protected CliqueTree cliqueTree;
-    protected int burnIn = 20;
     protected int epochs = 1;
     protected double buyPercent = 1d;
     protected double sellPercent = 1d;
+    protected int windowSize = 7;
     protected List<Map<String,Integer>> assignmentList;
     protected LearningAlgorithm learningAlgorithm;
     protected double stopLoss;
     protected double takeProfit;
-    public InferenceTradePolicy(Graph originalNet, Portfolio portfolio,LearningAlgorithm learningAlgorithm, double stopLoss, double takeProfit) {
-        this.originalNet = originalNet;
-        this.learningAlgorithm=learningAlgorithm;
+    // incremental mode, null when the network is retrained every step
+    protected OnlineTimeGraphModel onlineModel;
+    // engine for the incremental path, null for the model's ClosedFormMarginals
+    @Setter
+    protected InferenceEngine inferenceEngine;
+    // frozen mode: the online model is used as learned and does not observe the steps traded on
+    @Setter
+    protected boolean frozen;
+    // memo of the exact marginals, only hit in frozen mode
+    @Setter
+    protected MarginalCache marginalCache;
+    protected int[] companyToSymbol;
+    protected double[] futureMarginals;
+    // runs the retrain path alongside the incremental one and fails on any divergence
+    @Setter
+    protected boolean verifyIncremental;
+    public static final double INCREMENTAL_TOLERANCE = 1e-6;
+    // Retrains its own TimeGraph.newNetwork() every step; the network is never shared, since
+    // every step rewrites its training data and factors
+    public InferenceTradePolicy(TimeGraph timeGraph, Portfolio portfolio, double stopLoss, double takeProfit) {
+        this(timeGraph,portfolio,stopLoss,takeProfit,null);
+    }
+    // Both paths, for verifyIncremental; onlineModel may be null
+    public InferenceTradePolicy(TimeGraph timeGraph, Portfolio portfolio, double stopLoss, double takeProfit, OnlineTimeGraphModel onlineModel) {
+        this(portfolio,onlineModel,stopLoss,takeProfit);
+        this.originalNet=timeGraph.newNetwork();
+        this.learningAlgorithm=new BayesianLearningAlgorithm(originalNet,timeGraph.getAlpha());
+    }
+    // Incremental mode over the given model, which it updates every step unless frozen
+    public InferenceTradePolicy(Portfolio portfolio, OnlineTimeGraphModel onlineModel, double stopLoss, double takeProfit) {
         this.portfolio=portfolio;
         this.takeProfit=takeProfit;
         this.stopLoss=stopLoss;
         this.assignmentList=new ArrayList<>();
-        //chain = new MetropolisHastingsChain(originalNet,new HashMap<>());
-        //for(int i = 0; i < burnIn*100 && chain.hasNext(); i++) chain.next();
+        this.onlineModel=onlineModel;
+        if(onlineModel!=null) {
+            this.windowSize=onlineModel.getWindowSize();
+            mapCompanies(onlineModel.getFactors().getLayout());
+        }
+    }
+    // Incremental mode over its own overlay of a shared trained model, which it never modifies
+    public InferenceTradePolicy(Portfolio portfolio, FrozenTimeGraphModel base, double stopLoss, double takeProfit) {
+        this(portfolio,base.overlay(),stopLoss,takeProfit);
+    }
+    // Only for getTrades(double[], int), with marginals computed by the caller from a model over layout
+    public InferenceTradePolicy(Portfolio portfolio, TimeGraphLayout layout, double stopLoss, double takeProfit) {
+        this(portfolio,(OnlineTimeGraphModel)null,stopLoss,takeProfit);
+        mapCompanies(layout);
+    }
+
+    private void mapCompanies(TimeGraphLayout layout) {
+        List<String> companies = layout.getCompanies();
+        this.companyToSymbol=new int[companies.size()];
+        for(int c = 0; c < companies.size(); c++) {
+            companyToSymbol[c]=portfolio.getPrices().symbolId(companies.get(c));
+        }
+        this.futureMarginals=new double[companies.size()];
     }
+
     @Override
-    public List<Trade> getTrades(Map<String,Integer> assignment, int idx) {
-        Map<String,Integer> currentAssignments = assignment.entrySet().stream().filter(e->!e.getKey().endsWith("_future")).collect(Collectors.toMap(e->e.getKey(),e->e.getValue()));
+    public List<Trade> getTrades(Assignment assignment, int idx) {
+        List<Pair<Integer,Double>> all;
+        if(onlineModel==null) {
+            all = retrainAndInfer(assignment);
+        } else {
+            all = inferIncrementally(assignment, null);
+            if(verifyIncremental) verify(all, retrainAndInfer(assignment));
+        }
+        return tradesFor(all, idx);
+    }
+
+    // Missing history is inferred by the inference engine and the step is not learned from
+    @Override
+    public List<Trade> getTrades(Assignment assignment, Assignment observed, int idx) {
+        if(observed==null) return getTrades(assignment, idx);
+        if(onlineModel==null) throw new IllegalStateException("Missing bars need the incremental path, the retrain path learns every step");
+        return tradesFor(inferIncrementally(assignment, observed), idx);
+    }
+
+    // Trades for future marginals computed elsewhere from the same model, indexed by company
+    public List<Trade> getTrades(double[] futureMarginals, int idx) {
+        return tradesFor(rank(futureMarginals), idx);
+    }
+
+    // Sufficient statistics update plus marginals, sorted like retrainAndInfer. Only complete
+    // steps (observed null) are learned from; missing history needs an approximate engine
+    protected List<Pair<Integer,Double>> inferIncrementally(Assignment assignment, Assignment observed) {
+        if(!frozen&&observed==null) onlineModel.observe(assignment);
+        if(inferenceEngine!=null) onlineModel.futureMarginals(inferenceEngine, assignment, observed, futureMarginals);
+        else if(observed!=null) onlineModel.futureMarginals(onlineModel.getClosedForm(), assignment, observed, futureMarginals);
+        else if(marginalCache!=null) marginalCache.futureMarginals(assignment, futureMarginals);
+        else onlineModel.futureMarginals(assignment, futureMarginals);
+        return rank(futureMarginals);
+    }
+
+    protected List<Pair<Integer,Double>> rank(double[] futureMarginals) {
+        List<Pair<Integer,Double>> all = new ArrayList<>(futureMarginals.length);
+        for(int c = 0; c < futureMarginals.length; c++) {
+            all.add(new Pair<>(companyToSymbol[c],futureMarginals[c]));
+        }
+        all.sort((p1,p2)->p2._2.compareTo(p1._2));
+        return all;
+    }
+
+    private void verify(List<Pair<Integer,Double>> incremental, List<Pair<Integer,Double>> retrained) {
+        Map<Integer,Double> expected = new HashMap<>();
+        retrained.forEach(pair->expected.put(pair._1,pair._2));
+        for(Pair<Integer,Double> pair : incremental) {
+            Double other = expected.get(pair._1);
+            if(other==null||Math.abs(other-pair._2)>INCREMENTAL_TOLERANCE) {
+                throw new IllegalStateException("Incremental marginal "+pair._2+" of "+portfolio.getPrices().symbol(pair._1)+" differs from retrained marginal "+other);
+            }
+        }
+    }
+
+    protected List<Pair<Integer,Double>> retrainAndInfer(Assignment assignment) {
+        if(originalNet==null) throw new IllegalStateException("No network to retrain: the policy is incremental only");
+        Map<String,Integer> currentAssignments = assignment.toEvidenceMap();
 
         // train
-        assignmentList.add(assignment);
-        if(assignmentList.size()>7)assignmentList=assignmentList.subList(assignmentList.size()-7,assignmentList.size());
+        long start = Metrics.start();
+        assignmentList.add(assignment.toMap());
+        if(assignmentList.size()>windowSize)assignmentList=new ArrayList<>(assignmentList.subList(assignmentList.size()-windowSize,assignmentList.size()));
         originalNet.setTrainingData(assignmentList);
         originalNet.applyLearningAlgorithm(learningAlgorithm,epochs);
+        Metrics.LEARN.stop(start);
 
-        //originalNet.setCurrentAssignment(currentAssignments);
-        //chain.setPermanentAssignments(assignment);
-        //for(int i = 0; i < burnIn; i++) chain.next();
-        //Map<String,FactorNode> nextFactors = chain.next();
+        // the GraphicalModeling clique tree is rebuilt every step; reusing it across
+        // relearning is out of scope, the incremental path does without one
+        start = Metrics.start();
         cliqueTree=originalNet.createCliqueTree();
         cliqueTree.setCurrentAssignment(currentAssignments);
+        Metrics.CLIQUE_TREE.stop(start);
+        start = Metrics.start();
         Map<String,FactorNode> nextFactors = cliqueTree.runBeliefPropagation(originalNet.getAllNodesList().stream().map(n->n.getLabel()).filter(label->label.endsWith("_future")).collect(Collectors.toList()));
+        Metrics.INFERENCE.stop(start);
 
-        List<Pair<String,Double>> all = nextFactors.entrySet().stream().filter(e->e.getKey().endsWith("_future")).map(e->{
-            return new Pair<>(e.getKey().replace("_future",""),e.getValue().getWeights()[1]);
+        PriceMatrix prices = portfolio.getPrices();
+        List<Pair<Integer,Double>> all = nextFactors.entrySet().stream().filter(e->e.getKey().endsWith("_future")).map(e->{
+            return new Pair<>(prices.symbolId(e.getKey().replace("_future","")),e.getValue().getWeights()[1]);
         }).sorted((p1,p2)->p2._2.compareTo(p1._2)).collect(Collectors.toList());
+        return all;
+    }
 
+    protected List<Trade> tradesFor(List<Pair<Integer,Double>> all, int idx) {
+        long start = Metrics.start();
+        PriceMatrix prices = portfolio.getPrices();
         List<Trade> trades = new ArrayList<>();
         // To buy
         double availableCash = portfolio.getAvailableCash();
@@ -72,7 +194,7 @@ public class InferenceTradePolicy implements TradePolicy {
             all.subList(0, all.size()/2).forEach(pair -> {
                 double stockPrice = portfolio.stockPriceAtTime(pair._1, idx);
                 double shares = ((pair._2 * (availableCash-portfolio.getTransactionCost()) / (stockPrice))) * buyPercent;
-                Trade trade = new Trade(pair._1, shares);
+                Trade trade = new Trade(pair._1, prices.symbol(pair._1), shares);
                 if (portfolio.makeTrade(trade, stockPrice)) {
                     trades.add(trade);
                 }
@@ -80,8 +202,8 @@ public class InferenceTradePolicy implements TradePolicy {
         }
         // To sell
         all.subList(all.size()/2, all.size()).forEach(pair -> {
-            Double currentShare = portfolio.getLastProfile().get(pair._1);
-            if (currentShare != null && currentShare > 0) {
+            double currentShare = portfolio.position(pair._1);
+            if (currentShare > 0) {
                 double stockPrice = portfolio.stockPriceAtTime(pair._1, idx);
                 if(idx>0) {
                     double lastPrice = portfolio.stockPriceAtTime(pair._1, idx - 1);
@@ -91,7 +213,7 @@ public class InferenceTradePolicy implements TradePolicy {
                     if (shouldSell) {
                         double shares = -(1d - pair._2) * currentShare * sellPercent;
                         if(shares*(stockPrice-lastPrice)>portfolio.getTransactionCost()||availableCash>portfolio.getTransactionCost()) {
-                            Trade trade = new Trade(pair._1, shares);
+                            Trade trade = new Trade(pair._1, prices.symbol(pair._1), shares);
                             if (portfolio.makeTrade(trade, stockPrice)) {
                                 trades.add(trade);
                             }
@@ -100,6 +222,7 @@ public class InferenceTradePolicy implements TradePolicy {
                 }
             }
         });
+        Metrics.TRADE_SIZING.stop(start);
         return trades;
     }
 }
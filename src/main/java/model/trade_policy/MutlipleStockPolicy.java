@@ -2,11 +2,11 @@ package model.trade_policy;
 
 import finance.Portfolio;
 import finance.Trade;
+import model.Assignment;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Created by Evan on 4/30/2017.
@@ -14,22 +14,27 @@ import java.util.Map;
 public class MutlipleStockPolicy implements TradePolicy {
     protected Portfolio portfolio;
     protected String[] stocks;
+    protected int[] stockIds;
     public MutlipleStockPolicy(Portfolio portfolio, String... stocks) {
         this.portfolio=portfolio;
         this.stocks=stocks;
+        this.stockIds=new int[stocks.length];
+        for(int i = 0; i < stocks.length; i++) {
+            stockIds[i]=portfolio.getPrices().symbolId(stocks[i]);
+        }
     }
     @Override
-    public List<Trade> getTrades(Map<String,Integer> assignment, int idx) {
+    public List<Trade> getTrades(Assignment assignment, int idx) {
         if(idx==0) {
             // buy all shares of dow jones industrial (dji)
             // To buy
             double availableCash = portfolio.getAvailableCash();
             List<Trade> trades = new ArrayList<>();
             if (availableCash > portfolio.getTransactionCost()*stocks.length) {
-                for(String stock : stocks) {
-                    double stockPrice = portfolio.stockPriceAtTime(stock, idx);
+                for(int i = 0; i < stocks.length; i++) {
+                    double stockPrice = portfolio.stockPriceAtTime(stockIds[i], idx);
                     double shares = (availableCash-portfolio.getTransactionCost()) / (stockPrice*stocks.length);
-                    Trade trade = new Trade(stock, shares);
+                    Trade trade = new Trade(stockIds[i], stocks[i], shares);
                     if (portfolio.makeTrade(trade, stockPrice)) {
                         trades.add(trade);
                     }
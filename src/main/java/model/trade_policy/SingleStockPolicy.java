@@ -2,11 +2,11 @@ package model.trade_policy;
 
 import finance.Portfolio;
 import finance.Trade;
+import model.Assignment;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Created by Evan on 4/30/2017.
@@ -14,21 +14,23 @@ import java.util.Map;
 public class SingleStockPolicy implements TradePolicy {
     protected Portfolio portfolio;
     protected String stock;
+    protected int stockId;
     public SingleStockPolicy(String stock, Portfolio portfolio) {
         this.portfolio=portfolio;
         this.stock=stock;
+        this.stockId=portfolio.getPrices().symbolId(stock);
     }
     @Override
-    public List<Trade> getTrades(Map<String,Integer> assignment, int idx) {
+    public List<Trade> getTrades(Assignment assignment, int idx) {
         if(idx==0) {
             // buy all shares of dow jones industrial (dji)
             // To buy
             double availableCash = portfolio.getAvailableCash();
             List<Trade> trades = new ArrayList<>();
             if (availableCash > portfolio.getTransactionCost()) {
-                double stockPrice = portfolio.stockPriceAtTime(stock, idx);
+                double stockPrice = portfolio.stockPriceAtTime(stockId, idx);
                 double shares = (availableCash-portfolio.getTransactionCost()) / stockPrice;
-                Trade trade = new Trade(stock, shares);
+                Trade trade = new Trade(stockId, stock, shares);
                 if (portfolio.makeTrade(trade, stockPrice)) {
                     trades.add(trade);
                 }
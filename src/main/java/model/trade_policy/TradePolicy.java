@@ -1,13 +1,20 @@
 package model.trade_policy;
 
 import finance.Trade;
+import model.Assignment;
 
 import java.util.List;
-import java.util.Map;
 
 /**
  * Created by Evan on 4/30/2017.
  */
 public interface TradePolicy {
-    List<Trade> getTrades(Map<String,Integer> assignment, int idx);
+    // assignment is only valid for the duration of the call; copy it to keep it
+    List<Trade> getTrades(Assignment assignment, int idx);
+
+    // Same for a step with missing bars: observed has a bit set for every observed non future
+    // node, or is null when the step is complete. Policies that cannot use it read missing nodes as 0
+    default List<Trade> getTrades(Assignment assignment, Assignment observed, int idx) {
+        return getTrades(assignment, idx);
+    }
 }
@@ -0,0 +1,25 @@
+package model.walkforward;
+
+import lombok.Getter;
+
+/**
+ * Train window [trainStart, testStart) and test window [testStart, testEnd) of one
+ * walk-forward fold, as step indices into TimeGraphDataset.getAllAssignments().
+ */
+public class Fold {
+    @Getter
+    private final int index;
+    @Getter
+    private final int trainStart;
+    @Getter
+    private final int testStart;
+    @Getter
+    private final int testEnd;
+
+    public Fold(int index, int trainStart, int testStart, int testEnd) {
+        this.index=index;
+        this.trainStart=trainStart;
+        this.testStart=testStart;
+        this.testEnd=testEnd;
+    }
+}
@@ -0,0 +1,25 @@
+package model.walkforward;
+
+import lombok.Getter;
+
+/**
+ * Backtest outcome of one fold's test window.
+ */
+public class FoldResult {
+    @Getter
+    private final Fold fold;
+    // dates of the first and last test step, null when the data has no dates
+    @Getter
+    private final String startDate;
+    @Getter
+    private final String endDate;
+    @Getter
+    private final double rateOfReturn;
+
+    public FoldResult(Fold fold, String startDate, String endDate, double rateOfReturn) {
+        this.fold=fold;
+        this.startDate=startDate;
+        this.endDate=endDate;
+        this.rateOfReturn=rateOfReturn;
+    }
+}
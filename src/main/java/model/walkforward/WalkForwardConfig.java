@@ -0,0 +1,98 @@
+package model.walkforward;
+
+import finance.ExecutionCosts;
+import finance.ExecutionSimulator;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Window sizes and trading parameters of a walk-forward evaluation. Fold k trains on
+ * steps [k*stepSize, k*stepSize+trainSize) and tests on the testSize steps right after.
+ */
+public class WalkForwardConfig {
+    @Getter
+    private int trainSize = 250;
+    @Getter
+    private int testSize = 20;
+    @Getter
+    private int stepSize = 20;
+    @Getter
+    private double alpha = 2d;
+    @Getter
+    private double stopLoss = Double.MAX_VALUE;
+    @Getter
+    private double takeProfit = Double.MAX_VALUE;
+    @Getter
+    private double transactionCost = 1d;
+    // fills each step through an ExecutionSimulator when set, in place of the flat transactionCost
+    @Getter
+    private ExecutionCosts executionCosts;
+    @Getter
+    private ExecutionSimulator.Settlement settlement = ExecutionSimulator.Settlement.SELLS_FIRST;
+
+    public WalkForwardConfig trainSize(int trainSize) {
+        if(trainSize<1) throw new IllegalArgumentException("Train size must be positive");
+        this.trainSize=trainSize;
+        return this;
+    }
+
+    public WalkForwardConfig testSize(int testSize) {
+        if(testSize<1) throw new IllegalArgumentException("Test size must be positive");
+        this.testSize=testSize;
+        return this;
+    }
+
+    public WalkForwardConfig stepSize(int stepSize) {
+        if(stepSize<1) throw new IllegalArgumentException("Step size must be positive");
+        this.stepSize=stepSize;
+        return this;
+    }
+
+    public WalkForwardConfig alpha(double alpha) {
+        if(alpha<=0) throw new IllegalArgumentException("Alpha must be positive");
+        this.alpha=alpha;
+        return this;
+    }
+
+    public WalkForwardConfig stopLoss(double stopLoss) {
+        this.stopLoss=stopLoss;
+        return this;
+    }
+
+    public WalkForwardConfig takeProfit(double takeProfit) {
+        this.takeProfit=takeProfit;
+        return this;
+    }
+
+    public WalkForwardConfig transactionCost(double transactionCost) {
+        this.transactionCost=transactionCost;
+        return this;
+    }
+
+    public WalkForwardConfig executionCosts(ExecutionCosts executionCosts) {
+        this.executionCosts=executionCosts;
+        return this;
+    }
+
+    // Order the ExecutionSimulator settles a step's batch in, see ExecutionSimulator
+    public WalkForwardConfig settlement(ExecutionSimulator.Settlement settlement) {
+        this.settlement=settlement;
+        return this;
+    }
+
+    // Every fold that fits in a series of the given number of steps
+    public List<Fold> folds(int numSteps) {
+        List<Fold> folds = new ArrayList<>();
+        for(int trainStart = 0; trainStart+trainSize+testSize <= numSteps; trainStart+=stepSize) {
+            folds.add(new Fold(folds.size(), trainStart, trainStart+trainSize, trainStart+trainSize+testSize));
+        }
+        return folds;
+    }
+
+    @Override
+    public String toString() {
+        return "train="+trainSize+" test="+testSize+" step="+stepSize+" alpha="+alpha+" stopLoss="+stopLoss+" takeProfit="+takeProfit+" cost="+transactionCost;
+    }
+}
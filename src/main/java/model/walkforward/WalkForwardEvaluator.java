@@ -0,0 +1,99 @@
+package model.walkforward;
+
+import finance.ExecutionSimulator;
+import finance.Portfolio;
+import model.*;
+import model.trade_policy.InferenceTradePolicy;
+import model.trade_policy.TradePolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Rolling-origin evaluation of the TimeGraph model over the whole history of a dataset.
+ *
+ * Each fold's model is learned from the factor counts of its train window and then
+ * backtested, unchanged, over its test window. Folds are split into contiguous chunks
+ * that run in parallel. Within a chunk one OnlineTimeGraphModel with a window of
+ * trainSize steps slides from one train window to the next, so a fold costs stepSize
+ * observations instead of a retrain over trainSize steps.
+ *
+ * A dataset that learns its cross edges picks them from its fixed first half, which
+ * overlaps the test windows of the early folds. With such a dataset every fold learns
+ * its own structure from its train window and counts that window from scratch.
+ */
+public class WalkForwardEvaluator {
+    // chunks per worker, trading a few extra recounts for better load balance
+    private static final int CHUNKS_PER_THREAD = 4;
+    private final TimeGraphDataset dataset;
+    private final double startingCash;
+    private final ForkJoinPool pool;
+
+    public WalkForwardEvaluator(TimeGraphDataset dataset, double startingCash) {
+        this(dataset, startingCash, ForkJoinPool.commonPool());
+    }
+
+    public WalkForwardEvaluator(TimeGraphDataset dataset, double startingCash, ForkJoinPool pool) {
+        this.dataset=dataset;
+        this.startingCash=startingCash;
+        this.pool=pool;
+    }
+
+    public WalkForwardReport run(WalkForwardConfig config) {
+        long start = System.currentTimeMillis();
+        List<Fold> folds = config.folds(dataset.getAllAssignments().size());
+        if(folds.isEmpty()) throw new IllegalArgumentException("No fold of "+config+" fits in "+dataset.getAllAssignments().size()+" steps");
+        int numChunks = Math.min(folds.size(), pool.getParallelism()*CHUNKS_PER_THREAD);
+        List<CompletableFuture<List<FoldResult>>> chunks = new ArrayList<>(numChunks);
+        for(int c = 0; c < numChunks; c++) {
+            List<Fold> chunk = folds.subList(c*folds.size()/numChunks, (c+1)*folds.size()/numChunks);
+            chunks.add(CompletableFuture.supplyAsync(()->runChunk(chunk, config), pool));
+        }
+        List<FoldResult> results = new ArrayList<>(folds.size());
+        for(CompletableFuture<List<FoldResult>> chunk : chunks) {
+            results.addAll(chunk.join());
+        }
+        return new WalkForwardReport(config, results, System.currentTimeMillis()-start);
+    }
+
+    private List<FoldResult> runChunk(List<Fold> folds, WalkForwardConfig config) {
+        AssignmentSeries steps = dataset.getAllAssignments();
+        double[] marginals = new double[dataset.getLayout().numCompanies()];
+        List<FoldResult> results = new ArrayList<>(folds.size());
+        OnlineTimeGraphModel model = null;
+        MarginalCache cache = null;
+        int observed = 0;
+        for(Fold fold : folds) {
+            // a window of trainSize steps that has seen every step up to testStart holds exactly the train window
+            if(dataset.learnsCrossEdges()) {
+                // no look-ahead: the structure only sees this fold's train window
+                ClosedFormMarginals closedForm = dataset.closedFormFor(steps.subSeries(fold.getTrainStart(), fold.getTestStart()));
+                model = new OnlineTimeGraphModel(closedForm, config.getAlpha(), config.getTrainSize());
+                cache = new MarginalCache(model);
+                observed = fold.getTrainStart();
+            } else if(model==null||fold.getTrainStart()>observed) {
+                model = new OnlineTimeGraphModel(dataset.getClosedForm(), config.getAlpha(), config.getTrainSize());
+                cache = new MarginalCache(model);
+                observed = fold.getTrainStart();
+            }
+            model.observeAll(steps.subSeries(observed, fold.getTestStart()), pool);
+            observed = fold.getTestStart();
+
+            // the model is frozen over the test window, so repeated evidence is looked up
+            MarginalCache trained = cache;
+            Portfolio portfolio = new Portfolio(dataset.getAllStockPrices().view(fold.getTestStart(), fold.getTestEnd()), startingCash, config.getTransactionCost());
+            if(config.getExecutionCosts()!=null) {
+                ExecutionSimulator simulator = new ExecutionSimulator(portfolio.getPrices().numSymbols(), config.getExecutionCosts());
+                simulator.setSettlement(config.getSettlement());
+                portfolio.setExecutionSimulator(simulator);
+            }
+            InferenceTradePolicy inference = new InferenceTradePolicy(portfolio, dataset.getLayout(), config.getStopLoss(), config.getTakeProfit());
+            TradePolicy policy = (evidence, idx)->inference.getTrades(trained.futureMarginals(evidence, marginals), idx);
+            double rateOfReturn = portfolio.determineTrades(new TimeGraphAlgorithm(steps.subSeries(fold.getTestStart(), fold.getTestEnd())), policy);
+            results.add(new FoldResult(fold, dataset.getAllStockPrices().date(fold.getTestStart()), dataset.getAllStockPrices().date(fold.getTestEnd()-1), rateOfReturn));
+        }
+        return results;
+    }
+}
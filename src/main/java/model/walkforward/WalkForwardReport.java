@@ -0,0 +1,94 @@
+package model.walkforward;
+
+import lombok.Getter;
+
+import java.io.PrintStream;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Per-fold returns of a walk-forward evaluation in fold order, plus aggregates over them.
+ */
+public class WalkForwardReport {
+    @Getter
+    private final WalkForwardConfig config;
+    @Getter
+    private final List<FoldResult> results;
+    @Getter
+    private final long elapsedMillis;
+    private final double[] sortedReturns;
+
+    public WalkForwardReport(WalkForwardConfig config, List<FoldResult> results, long elapsedMillis) {
+        this.config=config;
+        this.results=Collections.unmodifiableList(results);
+        this.elapsedMillis=elapsedMillis;
+        this.sortedReturns=new double[results.size()];
+        for(int i = 0; i < sortedReturns.length; i++) {
+            sortedReturns[i]=results.get(i).getRateOfReturn();
+        }
+        Arrays.sort(sortedReturns);
+    }
+
+    public int numFolds() {
+        return results.size();
+    }
+
+    public double meanReturn() {
+        double sum = 0d;
+        for(double r : sortedReturns) sum+=r;
+        return sum/sortedReturns.length;
+    }
+
+    public double medianReturn() {
+        int n = sortedReturns.length;
+        return n%2==1 ? sortedReturns[n/2] : (sortedReturns[n/2-1]+sortedReturns[n/2])/2;
+    }
+
+    public double stdDevReturn() {
+        double mean = meanReturn();
+        double sum = 0d;
+        for(double r : sortedReturns) sum+=(r-mean)*(r-mean);
+        return sortedReturns.length>1 ? Math.sqrt(sum/(sortedReturns.length-1)) : 0d;
+    }
+
+    public double minReturn() {
+        return sortedReturns[0];
+    }
+
+    public double maxReturn() {
+        return sortedReturns[sortedReturns.length-1];
+    }
+
+    // Fraction of folds with a positive return
+    public double winRate() {
+        int wins = 0;
+        for(double r : sortedReturns) if(r>0) wins++;
+        return ((double)wins)/sortedReturns.length;
+    }
+
+    // Return of reinvesting fold after fold; only meaningful when test windows do not overlap (stepSize >= testSize)
+    public double compoundedReturn() {
+        double growth = 1d;
+        for(FoldResult result : results) growth*=1d+result.getRateOfReturn();
+        return growth-1d;
+    }
+
+    public void print(PrintStream out, boolean perFold) {
+        NumberFormat formatter = new DecimalFormat("#0.00");
+        if(perFold) {
+            for(FoldResult result : results) {
+                Fold fold = result.getFold();
+                out.println("Fold "+fold.getIndex()+" ["+fold.getTrainStart()+","+fold.getTestStart()+","+fold.getTestEnd()+")"
+                        +(result.getStartDate()==null ? "" : " "+result.getStartDate()+" to "+result.getEndDate())
+                        +": "+formatter.format(result.getRateOfReturn()*100)+"%");
+            }
+        }
+        out.println("Walk-forward "+config+": "+numFolds()+" folds in "+elapsedMillis+"ms");
+        out.println("    Mean: "+formatter.format(meanReturn()*100)+"%  Median: "+formatter.format(medianReturn()*100)+"%  Std dev: "+formatter.format(stdDevReturn()*100)+"%");
+        out.println("    Min: "+formatter.format(minReturn()*100)+"%  Max: "+formatter.format(maxReturn()*100)+"%  Win rate: "+formatter.format(winRate()*100)+"%");
+        if(config.getStepSize()>=config.getTestSize()) out.println("    Compounded: "+formatter.format(compoundedReturn()*100)+"%");
+    }
+}
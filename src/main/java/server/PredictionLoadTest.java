@@ -0,0 +1,124 @@
+package server;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test for a running TestServer: concurrent POST /predict requests each carrying
+ * observations for a batch of symbols, reporting latency percentiles and requests/second.
+ */
+public class PredictionLoadTest {
+    private static final int DISTINCT_REQUESTS = 64;
+
+    public static void main(String[] args) throws Exception {
+        // optional args: base url, threads, requests, symbols per request
+        String baseUrl = args.length>0 ? args[0] : "http://localhost:"+TestServer.PORT;
+        int threads = args.length>1 ? Integer.valueOf(args[1]) : 8;
+        int numRequests = args.length>2 ? Integer.valueOf(args[2]) : 10000;
+        int batchSize = args.length>3 ? Integer.valueOf(args[3]) : Integer.MAX_VALUE;
+
+        String[] lines = get(new URL(baseUrl+"/symbols")).split("\n");
+        int numLayers = Integer.valueOf(lines[0].trim());
+        List<String> symbols = Arrays.asList(lines[1].trim().split(","));
+        List<byte[]> bodies = requestBodies(symbols, numLayers, Math.min(batchSize,symbols.size()), new Random(42L));
+        URL predict = new URL(baseUrl+"/predict");
+
+        // warm up the server and the client connections
+        run(predict, bodies, threads, Math.min(numRequests,1000));
+        long start = System.nanoTime();
+        long[] latencies = run(predict, bodies, threads, numRequests);
+        double seconds = (System.nanoTime()-start)/1e9;
+
+        Arrays.sort(latencies);
+        System.out.println("Requests: "+numRequests+" with "+threads+" threads, "+Math.min(batchSize,symbols.size())+" symbols each");
+        System.out.println("Requests/second: "+String.format("%.1f",numRequests/seconds));
+        System.out.println("p50: "+millis(percentile(latencies,0.5))+" ms");
+        System.out.println("p99: "+millis(percentile(latencies,0.99))+" ms");
+        System.out.println("max: "+millis(latencies[latencies.length-1])+" ms");
+    }
+
+    private static List<byte[]> requestBodies(List<String> symbols, int numLayers, int batchSize, Random random) throws UnsupportedEncodingException {
+        List<byte[]> bodies = new ArrayList<>(DISTINCT_REQUESTS);
+        for(int r = 0; r < DISTINCT_REQUESTS; r++) {
+            StringJoiner observations = new StringJoiner(",");
+            StringJoiner requested = new StringJoiner(",");
+            int offset = random.nextInt(symbols.size());
+            for(int i = 0; i < batchSize; i++) {
+                String symbol = symbols.get((offset+i)%symbols.size());
+                StringBuilder movements = new StringBuilder(symbol).append(':');
+                for(int layer = 1; layer < numLayers; layer++) movements.append(random.nextBoolean() ? '1' : '0');
+                observations.add(movements);
+                requested.add(symbol);
+            }
+            bodies.add(("observations="+URLEncoder.encode(observations.toString(),"UTF-8")
+                    +"&symbols="+URLEncoder.encode(requested.toString(),"UTF-8")).getBytes(StandardCharsets.UTF_8));
+        }
+        return bodies;
+    }
+
+    private static long[] run(URL predict, List<byte[]> bodies, int threads, int numRequests) throws InterruptedException {
+        long[] latencies = new long[numRequests];
+        AtomicInteger next = new AtomicInteger(0);
+        AtomicInteger failures = new AtomicInteger(0);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for(int t = 0; t < threads; t++) {
+            pool.execute(()->{
+                int i;
+                while((i=next.getAndIncrement())<numRequests) {
+                    long start = System.nanoTime();
+                    try {
+                        post(predict, bodies.get(i%bodies.size()));
+                    } catch(IOException e) {
+                        if(failures.getAndIncrement()==0) e.printStackTrace();
+                    }
+                    latencies[i]=System.nanoTime()-start;
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.DAYS);
+        if(failures.get()>0) System.out.println("Failed requests: "+failures.get());
+        return latencies;
+    }
+
+    private static void post(URL url, byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type","application/x-www-form-urlencoded");
+        try(OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+        if(connection.getResponseCode()!=HttpURLConnection.HTTP_OK) throw new IOException("Status "+connection.getResponseCode());
+        // drain the response so the connection goes back to the keep-alive pool
+        try(InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            while(in.read(buffer)>=0);
+        }
+    }
+
+    private static String get(URL url) throws IOException {
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+            StringJoiner lines = new StringJoiner("\n");
+            String line;
+            while((line=reader.readLine())!=null) lines.add(line);
+            return lines.toString();
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length-1,(int)Math.ceil(p*sorted.length)-1)];
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f",nanos/1e6);
+    }
+}
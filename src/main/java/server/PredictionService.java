@@ -0,0 +1,178 @@
+package server;
+
+import data.PriceMatrix;
+import data.PriceSnapshot;
+import finance.Portfolio;
+import finance.Trade;
+import lombok.Getter;
+import model.*;
+import model.trade_policy.InferenceTradePolicy;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Future marginals and InferenceTradePolicy trades for the period after the last row of
+ * a snapshot. The model is learned once at construction from the last windowSize steps,
+ * exactly the state an InferenceTradePolicy backtest ends in, or loaded from a
+ * ModelSnapshot of such a service, and is only read afterwards, so predict can be called
+ * from any number of threads.
+ */
+public class PredictionService {
+    @Getter
+    private final TimeGraphLayout layout;
+    @Getter
+    private final OnlineTimeGraphModel model;
+    // the model never changes after construction, so repeated evidence is served from here;
+    // null unless every evidence pattern fits, otherwise almost every request would miss
+    @Getter
+    private final MarginalCache cache;
+    @Getter
+    private final double stopLoss;
+    @Getter
+    private final double takeProfit;
+    @Getter
+    private final double transactionCost;
+    // the most recent numLayers-1 movements of every company, used where a request has none
+    private final Assignment latest;
+    // the last two rows, so stop loss and take profit can compare against the previous price
+    private final PriceMatrix latestPrices;
+
+    public PredictionService(PriceSnapshot data, int numLayers, double alpha, int windowSize, double stopLoss, double takeProfit, double transactionCost) {
+        TimeGraphDataset dataset = new TimeGraphDataset(data, numLayers);
+        this.layout=dataset.getLayout();
+        this.model=new OnlineTimeGraphModel(dataset.getClosedForm(), alpha, windowSize);
+        this.cache=cacheFor(model);
+        this.stopLoss=stopLoss;
+        this.takeProfit=takeProfit;
+        this.transactionCost=transactionCost;
+        AssignmentSeries steps = dataset.getTestAssignments();
+        model.observeAll(steps.subSeries(Math.max(0,steps.size()-windowSize),steps.size()), ForkJoinPool.commonPool());
+        Assignment assignment = steps.get(steps.size()-1,new Assignment(layout));
+        // shift the last step back one layer so its future node becomes the newest observation
+        this.latest=new Assignment(layout);
+        for(int c = 0; c < layout.numCompanies(); c++) {
+            for(int layer = 1; layer < numLayers; layer++) {
+                latest.set(layout.node(c,layer), assignment.get(layout.node(c,layer+1)));
+            }
+        }
+        PriceMatrix prices = data.getPrices();
+        this.latestPrices=prices.view(prices.size()-2, prices.size());
+    }
+
+    public PredictionService(ModelSnapshot snapshot, double stopLoss, double takeProfit, double transactionCost) {
+        if(snapshot.getLatest()==null||snapshot.getPrices()==null||snapshot.getPrices().size()!=2) {
+            throw new IllegalArgumentException("Snapshot was not saved from a PredictionService");
+        }
+        this.model=snapshot.getModel();
+        this.layout=model.getFactors().getLayout();
+        this.cache=cacheFor(model);
+        this.stopLoss=stopLoss;
+        this.takeProfit=takeProfit;
+        this.transactionCost=transactionCost;
+        this.latest=snapshot.getLatest();
+        this.latestPrices=snapshot.getPrices();
+    }
+
+    private static MarginalCache cacheFor(OnlineTimeGraphModel model) {
+        return MarginalCache.coversAllPatterns(model, MarginalCache.DEFAULT_CAPACITY) ? new MarginalCache(model) : null;
+    }
+
+    // Everything the second constructor needs to serve the same predictions
+    public ModelSnapshot snapshot() {
+        return new ModelSnapshot(model, latest, latestPrices);
+    }
+
+    /**
+     * observations maps a symbol to its up (1) / down (0) movements over the last
+     * numLayers-1 periods, oldest first. Marginals are returned for symbols, or for every
+     * company when symbols is empty. Trades are those InferenceTradePolicy would make
+     * holding cash and the given shares per symbol. Invalid input, including an unknown
+     * symbol or a negative or non finite holding, throws IllegalArgumentException.
+     */
+    public Prediction predict(Map<String,int[]> observations, Collection<String> symbols, double cash, Map<String,Double> holdings) {
+        checkHoldings(holdings);
+        Assignment evidence = latest.copy();
+        for(Map.Entry<String,int[]> e : observations.entrySet()) {
+            int c = layout.companyIndex(e.getKey());
+            int[] movements = e.getValue();
+            if(movements.length!=layout.getNumLayers()-1) {
+                throw new IllegalArgumentException("Expected "+(layout.getNumLayers()-1)+" movements for "+e.getKey()+" but got "+movements.length);
+            }
+            for(int layer = 1; layer < layout.getNumLayers(); layer++) {
+                int movement = movements[layer-1];
+                if(movement!=0&&movement!=1) throw new IllegalArgumentException("Movements must be 0 or 1: "+e.getKey());
+                evidence.set(layout.node(c,layer), movement);
+            }
+        }
+        double[] marginals = new double[layout.numCompanies()];
+        if(cache!=null) cache.futureMarginals(evidence, marginals);
+        else model.futureMarginals(evidence, marginals);
+
+        Portfolio portfolio = new Portfolio(latestPrices, cash, transactionCost);
+        for(Map.Entry<String,Double> e : holdings.entrySet()) {
+            portfolio.applyTrade(new Trade(latestPrices.symbolId(e.getKey()), e.getKey(), e.getValue()));
+        }
+        portfolio.endStep();
+        List<Trade> trades = new InferenceTradePolicy(portfolio, model, stopLoss, takeProfit).getTrades(marginals, 1);
+
+        Map<String,Double> requested = new LinkedHashMap<>();
+        if(symbols.isEmpty()) {
+            for(int c = 0; c < marginals.length; c++) requested.put(layout.getCompanies().get(c), marginals[c]);
+        } else {
+            for(String symbol : symbols) requested.put(symbol, marginals[layout.companyIndex(symbol)]);
+        }
+        return new Prediction(requested, trades);
+    }
+
+    // Portfolio.applyTrade fails with a RuntimeException on a short position, so reject those first
+    private void checkHoldings(Map<String,Double> holdings) {
+        for(Map.Entry<String,Double> e : holdings.entrySet()) {
+            latestPrices.symbolId(e.getKey());
+            Double shares = e.getValue();
+            if(shares==null||!(shares>=0)||shares.isInfinite()) {
+                throw new IllegalArgumentException("Holding of "+e.getKey()+" must be a non negative number of shares: "+shares);
+            }
+        }
+    }
+
+    public static class Prediction {
+        @Getter
+        private final Map<String,Double> marginals;
+        @Getter
+        private final List<Trade> trades;
+
+        public Prediction(Map<String,Double> marginals, List<Trade> trades) {
+            this.marginals=marginals;
+            this.trades=trades;
+        }
+
+        public String toJson() {
+            StringBuilder json = new StringBuilder("{\"marginals\":{");
+            boolean first = true;
+            for(Map.Entry<String,Double> e : marginals.entrySet()) {
+                if(!first) json.append(',');
+                first=false;
+                appendString(json, e.getKey()).append(':').append(e.getValue());
+            }
+            json.append("},\"trades\":[");
+            for(int i = 0; i < trades.size(); i++) {
+                if(i>0) json.append(',');
+                appendString(json.append("{\"symbol\":"), trades.get(i).getStock()).append(",\"shares\":").append(trades.get(i).getAmount()).append('}');
+            }
+            return json.append("]}").toString();
+        }
+
+        // Quoted JSON string, symbols come from the data file and may hold any character
+        private static StringBuilder appendString(StringBuilder json, String value) {
+            json.append('"');
+            for(int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if(c=='"'||c=='\\') json.append('\\').append(c);
+                else if(c<0x20) json.append(String.format("\\u%04x",(int)c));
+                else json.append(c);
+            }
+            return json.append('"');
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package server;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Random;
+
+import static spark.Spark.get;
+import static spark.Spark.port;
+
+/**
+ * Local stand in for a quote provider, answering the requests of google_api.HttpQuoteSource
+ * with a deterministic random walk per symbol. Weekends are skipped and each symbol is
+ * missing a few other days so merge policies get exercised. Run it and point
+ * google_api.Requester at http://localhost:4568/quotes.
+ */
+public class StubQuoteServer {
+    public static final int PORT = 4568;
+    private static final double MISSING_DAY_PROBABILITY = 0.02;
+
+    public static void main(String[] args) {
+        // optional args: port and artificial latency per request in millis
+        port(args.length>0 ? Integer.valueOf(args[0]) : PORT);
+        long latencyMillis = args.length>1 ? Long.valueOf(args[1]) : 0L;
+        get("/quotes",(req,res)->{
+            if(latencyMillis>0) Thread.sleep(latencyMillis);
+            res.type("text/csv");
+            return quotes(req.queryParams("symbol"), LocalDate.parse(req.queryParams("start")), LocalDate.parse(req.queryParams("end")));
+        });
+    }
+
+    // The walk always starts at the same date so overlapping requests agree on every price
+    public static String quotes(String symbol, LocalDate startDate, LocalDate endDate) {
+        StringBuilder csv = new StringBuilder("date,open,high,low,close\n");
+        Random random = new Random(symbol.hashCode());
+        double price = 10d+random.nextDouble()*500d;
+        for(LocalDate date = LocalDate.of(1990,1,1); !date.isAfter(endDate); date=date.plusDays(1)) {
+            if(date.getDayOfWeek()==DayOfWeek.SATURDAY||date.getDayOfWeek()==DayOfWeek.SUNDAY) continue;
+            double open = price;
+            price=Math.max(1d, price*(1d+random.nextGaussian()*0.01));
+            boolean missing = random.nextDouble()<MISSING_DAY_PROBABILITY;
+            if(missing||date.isBefore(startDate)) continue;
+            csv.append(date).append(',').append(open).append(',').append(Math.max(open,price)).append(',')
+                    .append(Math.min(open,price)).append(',').append(price).append('\n');
+        }
+        return csv.toString();
+    }
+}
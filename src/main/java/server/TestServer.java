@@ -1,16 +1,112 @@
 package server;
 
-import static spark.Spark.get;
-import static spark.Spark.port;
+import data.PriceSnapshot;
+import metrics.Histogram;
+import metrics.Metrics;
+import model.ModelSnapshot;
+import spark.Route;
+
+import java.io.File;
+import java.util.*;
+
+import static spark.Spark.*;
 
 /**
  * Created by Evan on 5/14/2017.
+ *
+ * Prediction service over a PredictionService built once at startup.
+ *
+ * GET  /symbols  first line numLayers, second line the comma separated symbols
+ * GET|POST /predict  parameters:
+ *     observations  symbol:movements pairs, e.g. goog:011,msft:110 with the oldest movement first
+ *     symbols       comma separated symbols to return marginals for, all when absent
+ *     cash          cash available to the trade policy, defaults to 100000
+ *     holdings      symbol:shares pairs already held
+ * and answers {"marginals":{symbol:P(up),..},"trades":[{"symbol":..,"shares":..},..]}
+ * GET  /metrics  phase and request latency histograms in the Prometheus text format, also
+ *     exposed over JMX; collection is on unless started with -Dmetrics.enabled=false
  */
 public class TestServer {
+    public static final int PORT = 4567;
+    public static final double DEFAULT_CASH = 100000d;
+    public static final Histogram PREDICT = Metrics.histogram("server.predict.nanos");
+
     public static void main(String[] args) {
-        port(4567);
+        // optional args: price csv, price snapshot or model snapshot, numLayers (ignored for a model snapshot), port
+        File data = new File(args.length>0 ? args[0] : "sample_stock_output.csv");
+        int numLayers = args.length>1 ? Integer.valueOf(args[1]) : 4;
+        PredictionService service;
+        try {
+            long start = System.nanoTime();
+            if(ModelSnapshot.isSnapshot(data)) {
+                service = new PredictionService(ModelSnapshot.load(data), 1d, 1d, 1d);
+            } else {
+                service = new PredictionService(PriceSnapshot.read(data), numLayers, 2d, 7, 1d, 1d, 1d);
+                // -Dmodel.save=file writes the trained model for the next start, checked by loading it back
+                String save = System.getProperty("model.save");
+                if(save!=null) {
+                    service.snapshot().write(new File(save));
+                    ModelSnapshot.validate(service.getModel(), ModelSnapshot.load(new File(save)).getModel(), 1e-12);
+                }
+            }
+            System.out.println("Loaded "+data+" in "+(System.nanoTime()-start)/1000000+" ms");
+        } catch(Exception e) {
+            throw new RuntimeException("Unable to load "+data, e);
+        }
+
+        Metrics.setEnabled(Boolean.parseBoolean(System.getProperty("metrics.enabled","true")));
+        Metrics.registerMBeans();
+
+        port(args.length>2 ? Integer.valueOf(args[2]) : PORT);
         get("/",(req,res)->{
-            return "Hello World!";
+            return "TimeGraph prediction service over "+service.getLayout().numCompanies()+" symbols";
+        });
+        String symbols = service.getLayout().getNumLayers()+"\n"+String.join(",",service.getLayout().getCompanies());
+        get("/symbols",(req,res)->symbols);
+        Route predict = (req,res)->{
+            long start = Metrics.start();
+            res.type("application/json");
+            String json = service.predict(movements(req.queryParams("observations")), list(req.queryParams("symbols")),
+                    req.queryParams("cash")==null ? DEFAULT_CASH : Double.valueOf(req.queryParams("cash")), shares(req.queryParams("holdings"))).toJson();
+            PREDICT.stop(start);
+            return json;
+        };
+        get("/predict",predict);
+        post("/predict",predict);
+        get("/metrics",(req,res)->{
+            res.type("text/plain; version=0.0.4");
+            return Metrics.toText();
+        });
+        exception(IllegalArgumentException.class,(e,req,res)->{
+            res.status(400);
+            res.body(e.getMessage());
         });
     }
+
+    private static List<String> list(String param) {
+        if(param==null||param.isEmpty()) return Collections.emptyList();
+        return Arrays.asList(param.split(","));
+    }
+
+    private static Map<String,int[]> movements(String param) {
+        Map<String,int[]> movements = new HashMap<>();
+        for(String pair : list(param)) {
+            String[] split = pair.split(":");
+            if(split.length!=2) throw new IllegalArgumentException("Invalid observation: "+pair);
+            int[] values = new int[split[1].length()];
+            for(int i = 0; i < values.length; i++) values[i]=split[1].charAt(i)-'0';
+            movements.put(split[0],values);
+        }
+        return movements;
+    }
+
+    private static Map<String,Double> shares(String param) {
+        Map<String,Double> shares = new HashMap<>();
+        for(String pair : list(param)) {
+            String[] split = pair.split(":");
+            if(split.length!=2) throw new IllegalArgumentException("Invalid holding: "+pair);
+            shares.put(split[0],Double.valueOf(split[1]));
+        }
+        return shares;
+    }
 }
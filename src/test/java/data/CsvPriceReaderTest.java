@@ -0,0 +1,48 @@
+package data;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class CsvPriceReaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // long enough to refill and compact the 1MB buffer several times
+    @Test
+    public void datesAreDecodedFromTheCurrentRow() throws IOException {
+        int numRows = 60000;
+        File csv = folder.newFile();
+        try(Writer writer = new FileWriter(csv)) {
+            writer.write("date,price_a,price_b\r\n");
+            for(int r = 0; r < numRows; r++) writer.write("d"+r+","+r+".25,-"+r+"\r\n");
+        }
+        try(CsvPriceReader reader = new CsvPriceReader(csv)) {
+            assertEquals(Arrays.asList("a","b"), reader.getSymbols());
+            int r = 0;
+            while(reader.next()) {
+                assertEquals(r+0.25, reader.getPrices()[0], 0d);
+                assertEquals(-r, reader.getPrices()[1], 0d);
+                // only every third date is asked for, the others are never decoded
+                if(r%3==0) {
+                    assertEquals("d"+r, reader.getDate());
+                    assertSame(reader.getDate(), reader.getDate());
+                }
+                r++;
+            }
+            assertEquals(numRows, r);
+        }
+        PriceMatrix matrix = CsvPriceReader.read(csv);
+        assertEquals(numRows, matrix.size());
+        assertEquals("d0", matrix.date(0));
+        assertEquals("d"+(numRows-1), matrix.date(numRows-1));
+    }
+}
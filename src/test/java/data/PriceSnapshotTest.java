@@ -0,0 +1,71 @@
+package data;
+
+import model.TestPrices;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import static org.junit.Assert.*;
+
+public class PriceSnapshotTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void assertSamePrices(PriceSnapshot expected, PriceSnapshot actual) {
+        PriceMatrix a = expected.getPrices();
+        PriceMatrix b = actual.getPrices();
+        assertEquals(a.getSymbols(), b.getSymbols());
+        assertEquals(a.size(), b.size());
+        for(int s = 0; s < a.numSymbols(); s++) {
+            assertArrayEquals(expected.getUpDown().words(s), actual.getUpDown().words(s));
+            for(int r = 0; r < a.size(); r++) {
+                assertEquals(a.date(r), b.date(r));
+                assertEquals(a.price(s, r), b.price(s, r), 0d);
+            }
+        }
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        PriceSnapshot data = TestPrices.randomWalk(70, 130, 10);
+        File file = folder.newFile();
+        data.write(file);
+        assertTrue(PriceSnapshot.isSnapshot(file));
+        assertSamePrices(data, PriceSnapshot.read(file));
+    }
+
+    private static void writeCsv(File csv, String... rows) throws IOException {
+        try(Writer writer = new FileWriter(csv)) {
+            writer.write("date,price_a,price_b\n");
+            for(String row : rows) writer.write(row+"\n");
+        }
+    }
+
+    @Test
+    public void cachedSnapshotIsRebuiltWhenTheCsvChanges() throws IOException {
+        File csv = folder.newFile("prices.csv");
+        File snapshot = new File(csv.getPath()+".snapshot");
+        writeCsv(csv, "2017-01-01,1.0,2.0", "2017-01-02,1.5,1.0");
+        assertFalse(PriceSnapshot.isCurrent(snapshot, csv));
+        PriceSnapshot first = PriceSnapshot.cached(csv, snapshot);
+        assertTrue(PriceSnapshot.isCurrent(snapshot, csv));
+        assertSamePrices(first, PriceSnapshot.cached(csv, snapshot));
+
+        writeCsv(csv, "2017-01-01,1.0,2.0", "2017-01-02,1.5,1.0", "2017-01-03,1.25,3.0");
+        assertTrue(csv.setLastModified(csv.lastModified()+2000));
+        assertFalse(PriceSnapshot.isCurrent(snapshot, csv));
+        PriceSnapshot second = PriceSnapshot.cached(csv, snapshot);
+        assertEquals(3, second.getPrices().size());
+        assertSamePrices(second, PriceSnapshot.load(snapshot));
+        assertTrue(PriceSnapshot.isCurrent(snapshot, csv));
+
+        // a snapshot written without a source is never current
+        second.write(snapshot);
+        assertFalse(PriceSnapshot.isCurrent(snapshot, csv));
+    }
+}
@@ -0,0 +1,68 @@
+package finance;
+
+import data.PriceMatrix;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ExecutionSimulatorTest {
+    // a holds 10 shares at 10, b costs 20 a share, and the cash only covers the buy after selling a
+    private static Portfolio portfolio() {
+        PriceMatrix prices = new PriceMatrix(Arrays.asList("a", "b"), new double[][]{{10d, 10d}, {20d, 20d}}, 2);
+        Portfolio portfolio = new Portfolio(prices, 150d, 1d);
+        portfolio.applyFill(0, 10d);
+        portfolio.setAvailableCash(50d);
+        portfolio.endStep();
+        return portfolio;
+    }
+
+    private static ExecutionSimulator simulator(ExecutionSimulator.Settlement settlement) {
+        ExecutionSimulator simulator = new ExecutionSimulator(2, ExecutionCosts.flat(1d));
+        simulator.setSettlement(settlement);
+        // buys first, as InferenceTradePolicy submits them
+        simulator.submit(1, 5d);
+        simulator.submit(0, -10d);
+        return simulator;
+    }
+
+    @Test
+    public void sellsFirstFundsTheBuys() {
+        Portfolio portfolio = portfolio();
+        ExecutionSimulator simulator = simulator(ExecutionSimulator.Settlement.SELLS_FIRST);
+        assertEquals(2, simulator.settle(portfolio, 1));
+        assertEquals(0, simulator.fillSymbol(0));
+        assertEquals(-10d, simulator.fillShares(0), 0d);
+        assertEquals(5d, simulator.fillShares(1), 0d);
+        assertEquals(0, simulator.getNumRejected());
+        assertEquals(50d+100d-1d-100d-1d, portfolio.getAvailableCash(), 1e-12);
+    }
+
+    @Test
+    public void submissionOrderRejectsLikeMakeTrade() {
+        Portfolio portfolio = portfolio();
+        ExecutionSimulator simulator = simulator(ExecutionSimulator.Settlement.SUBMISSION_ORDER);
+        assertEquals(1, simulator.settle(portfolio, 1));
+        assertEquals(0, simulator.fillSymbol(0));
+        assertEquals(1, simulator.getNumRejected());
+        assertEquals(50d+100d-1d, portfolio.getAvailableCash(), 1e-12);
+
+        // the legacy path on the same orders
+        Portfolio legacy = portfolio();
+        assertFalse(legacy.makeTrade(new Trade(1, "b", 5d), 20d));
+        assertTrue(legacy.makeTrade(new Trade(0, "a", -10d), 10d));
+        assertEquals(portfolio.getAvailableCash(), legacy.getAvailableCash(), 1e-12);
+    }
+
+    @Test
+    public void opposingOrdersNet() {
+        Portfolio portfolio = portfolio();
+        ExecutionSimulator simulator = new ExecutionSimulator(2, ExecutionCosts.flat(1d));
+        simulator.submit(0, -4d);
+        simulator.submit(0, 4d);
+        assertEquals(0, simulator.settle(portfolio, 1));
+        assertEquals(1, simulator.getNumNetted());
+        assertEquals(50d, portfolio.getAvailableCash(), 0d);
+    }
+}
@@ -0,0 +1,169 @@
+package google_api;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import server.StubQuoteServer;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class RequesterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // StubQuoteServer's quotes without the http round trip, priced at the close
+    private static class StubSource implements QuoteSource {
+        private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public NavigableMap<LocalDate,Double> fetch(String symbol, LocalDate startDate, LocalDate endDate) {
+            requests.add(symbol+" "+startDate+" "+endDate);
+            NavigableMap<LocalDate,Double> data = new TreeMap<>();
+            String[] lines = StubQuoteServer.quotes(symbol, startDate, endDate).split("\n");
+            for(int i = 1; i < lines.length; i++) {
+                String[] cells = lines[i].split(",");
+                data.put(LocalDate.parse(cells[0]), Double.valueOf(cells[4]));
+            }
+            return data;
+        }
+
+        private List<String> requests() {
+            List<String> sorted = new ArrayList<>(requests);
+            Collections.sort(sorted);
+            return sorted;
+        }
+    }
+
+    private static class MapSource implements QuoteSource {
+        private final Map<String,NavigableMap<LocalDate,Double>> quotes = new HashMap<>();
+
+        private MapSource put(String symbol, LocalDate date, double price) {
+            quotes.computeIfAbsent(symbol, s->new TreeMap<>()).put(date, price);
+            return this;
+        }
+
+        @Override
+        public NavigableMap<LocalDate,Double> fetch(String symbol, LocalDate startDate, LocalDate endDate) {
+            return new TreeMap<>(quotes.get(symbol).subMap(startDate, true, endDate, true));
+        }
+    }
+
+    private static LocalDate day(int d) {
+        return LocalDate.of(2017, 1, d);
+    }
+
+    private static List<String> row(Object... cells) {
+        List<String> row = new ArrayList<>();
+        for(Object cell : cells) row.add(String.valueOf(cell));
+        return row;
+    }
+
+    @Test
+    public void missingRangesSkipEveryStoredRange() throws IOException {
+        QuoteCache cache = new QuoteCache(folder.newFolder());
+        NavigableMap<LocalDate,Double> empty = new TreeMap<>();
+        cache.write("a", day(5), day(10), empty);
+        cache.write("a", day(7), day(12), empty);
+        // inside the two above
+        cache.write("a", day(9), day(11), empty);
+        cache.write("a", day(20), day(25), empty);
+        List<LocalDate[]> missing = cache.missingRanges("a", day(1), day(31));
+        assertEquals(3, missing.size());
+        assertArrayEquals(new LocalDate[]{day(1), day(4)}, missing.get(0));
+        assertArrayEquals(new LocalDate[]{day(13), day(19)}, missing.get(1));
+        assertArrayEquals(new LocalDate[]{day(26), day(31)}, missing.get(2));
+        assertTrue(cache.missingRanges("a", day(6), day(11)).isEmpty());
+        assertEquals(1, cache.missingRanges("b", day(6), day(11)).size());
+    }
+
+    @Test
+    public void secondRunFetchesOnlyTheMissingRanges() throws IOException {
+        QuoteCache cache = new QuoteCache(folder.newFolder());
+        String[] symbols = {"aaa", "bbb", "ccc"};
+        StubSource first = new StubSource();
+        List<List<String>> firstRows = new Requester(first, cache, 2, MergePolicy.FORWARD_FILL).request(LocalDate.of(2016,3,1), LocalDate.of(2016,8,31), symbols);
+        assertEquals(Arrays.asList("aaa 2016-03-01 2016-08-31", "bbb 2016-03-01 2016-08-31", "ccc 2016-03-01 2016-08-31"), first.requests());
+
+        StubSource second = new StubSource();
+        List<List<String>> secondRows = new Requester(second, cache, 2, MergePolicy.FORWARD_FILL).request(LocalDate.of(2016,1,1), LocalDate.of(2016,12,31), symbols);
+        assertEquals(Arrays.asList(
+                "aaa 2016-01-01 2016-02-29", "aaa 2016-09-01 2016-12-31",
+                "bbb 2016-01-01 2016-02-29", "bbb 2016-09-01 2016-12-31",
+                "ccc 2016-01-01 2016-02-29", "ccc 2016-09-01 2016-12-31"), second.requests());
+        // the cached and fetched parts merge into what a single fetch returns
+        List<List<String>> uncached = new Requester(new StubSource(), null, 2, MergePolicy.FORWARD_FILL).request(LocalDate.of(2016,1,1), LocalDate.of(2016,12,31), symbols);
+        assertEquals(uncached, secondRows);
+        assertTrue(secondRows.containsAll(firstRows.subList(1, firstRows.size())));
+
+        StubSource third = new StubSource();
+        assertEquals(uncached, new Requester(third, cache, 2, MergePolicy.FORWARD_FILL).request(LocalDate.of(2016,1,1), LocalDate.of(2016,12,31), symbols));
+        assertTrue(third.requests().isEmpty());
+    }
+
+    @Test
+    public void mergePolicies() throws IOException {
+        MapSource source = new MapSource()
+                .put("a", day(2), 1d).put("a", day(3), 2d).put("a", day(5), 4d)
+                .put("b", day(3), 20d).put("b", day(4), 30d).put("b", day(5), 40d).put("b", day(6), 50d);
+        List<List<String>> drop = new Requester(source, null, 1, MergePolicy.DROP).request(day(1), day(31), "a", "b");
+        assertEquals(Arrays.asList(
+                row("date", "price_a", "price_b"),
+                row(day(3), 2d, 20d),
+                row(day(5), 4d, 40d)), drop);
+        List<List<String>> forwardFill = new Requester(source, null, 1, MergePolicy.FORWARD_FILL).request(day(1), day(31), "a", "b");
+        assertEquals(Arrays.asList(
+                row("date", "price_a", "price_b"),
+                row(day(3), 2d, 20d),
+                row(day(4), 2d, 30d),
+                row(day(5), 4d, 40d),
+                row(day(6), 4d, 50d)), forwardFill);
+    }
+
+    // every symbol of the stub misses a few days, at different dates
+    @Test
+    public void mergePoliciesOverStubQuotes() throws IOException {
+        StubSource source = new StubSource();
+        String[] symbols = {"aaa", "bbb", "ccc", "ddd"};
+        LocalDate start = LocalDate.of(2015,1,1);
+        LocalDate end = LocalDate.of(2016,12,31);
+        List<NavigableMap<LocalDate,Double>> series = new ArrayList<>();
+        SortedSet<LocalDate> union = new TreeSet<>();
+        LocalDate firstComplete = start;
+        for(String symbol : symbols) {
+            NavigableMap<LocalDate,Double> quotes = source.fetch(symbol, start, end);
+            series.add(quotes);
+            union.addAll(quotes.keySet());
+            if(quotes.firstKey().isAfter(firstComplete)) firstComplete=quotes.firstKey();
+        }
+
+        List<List<String>> drop = new Requester(source, null, 3, MergePolicy.DROP).request(start, end, symbols);
+        List<LocalDate> dropDates = new ArrayList<>();
+        for(LocalDate date : union) {
+            if(series.stream().allMatch(quotes->quotes.containsKey(date))) dropDates.add(date);
+        }
+        assertTrue(dropDates.size()<union.size());
+        assertEquals(dropDates.size()+1, drop.size());
+        for(int r = 0; r < dropDates.size(); r++) {
+            List<String> row = drop.get(r+1);
+            assertEquals(dropDates.get(r).toString(), row.get(0));
+            for(int s = 0; s < symbols.length; s++) {
+                assertEquals(String.valueOf(series.get(s).get(dropDates.get(r))), row.get(s+1));
+            }
+        }
+
+        List<List<String>> forwardFill = new Requester(source, null, 3, MergePolicy.FORWARD_FILL).request(start, end, symbols);
+        List<LocalDate> fillDates = new ArrayList<>(union.tailSet(firstComplete));
+        assertEquals(fillDates.size()+1, forwardFill.size());
+        for(int r = 0; r < fillDates.size(); r++) {
+            List<String> row = forwardFill.get(r+1);
+            assertEquals(fillDates.get(r).toString(), row.get(0));
+            for(int s = 0; s < symbols.length; s++) {
+                assertEquals(String.valueOf(series.get(s).floorEntry(fillDates.get(r)).getValue()), row.get(s+1));
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package model;
+
+import data.PriceSnapshot;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AssignmentTest {
+    // 30 companies of 5 layers span three words, with company blocks straddling word boundaries
+    private static TimeGraphLayout layout(int numCompanies, int numLayers) {
+        List<String> companies = new ArrayList<>();
+        for(int c = 0; c < numCompanies; c++) companies.add("C"+c);
+        return new TimeGraphLayout(companies, numLayers);
+    }
+
+    @Test
+    public void setAndGetEveryNode() {
+        TimeGraphLayout layout = layout(30, 5);
+        assertEquals(3, layout.numWords());
+        Random random = new Random(1);
+        Assignment assignment = new Assignment(layout);
+        int[] expected = new int[layout.numNodes()];
+        for(int i = 0; i < 10000; i++) {
+            int node = random.nextInt(expected.length);
+            int value = random.nextInt(2);
+            assignment.set(node, value);
+            expected[node]=value;
+        }
+        for(int node = 0; node < expected.length; node++) {
+            assertEquals("node "+node, expected[node], assignment.get(node));
+        }
+    }
+
+    @Test
+    public void setCompanyMatchesSetAcrossWordBoundaries() {
+        for(int numLayers : new int[]{2, 3, 5, 7, 64}) {
+            TimeGraphLayout layout = layout(30, numLayers);
+            Random random = new Random(numLayers);
+            Assignment packed = new Assignment(layout);
+            Assignment single = new Assignment(layout);
+            for(int c = 0; c < layout.numCompanies(); c++) {
+                long bits = random.nextLong();
+                packed.setCompany(c, bits);
+                for(int j = 1; j <= numLayers; j++) {
+                    single.set(layout.node(c, j), (int)((bits >>> (j-1)) & 1L));
+                }
+            }
+            assertEquals("layers "+numLayers, single, packed);
+            assertEquals(single.hashCode(), packed.hashCode());
+        }
+    }
+
+    @Test
+    public void copyRetainAndMaps() {
+        TimeGraphLayout layout = layout(30, 5);
+        Assignment assignment = new Assignment(layout);
+        for(int c = 0; c < layout.numCompanies(); c++) assignment.setCompany(c, c*7L);
+        Assignment copy = assignment.copy();
+        assertEquals(assignment, copy);
+        copy.set(0, 1-copy.get(0));
+        assertNotEquals(assignment, copy);
+        copy.copyFrom(assignment);
+        assertEquals(assignment, copy);
+
+        Assignment mask = new Assignment(layout);
+        for(int c = 0; c < layout.numCompanies(); c++) mask.set(layout.lastLayerNode(c), 1);
+        copy.retain(mask);
+        for(int node = 0; node < layout.numNodes(); node++) {
+            int expected = mask.get(node)==1 ? assignment.get(node) : 0;
+            assertEquals(expected, copy.get(node));
+        }
+
+        Map<String,Integer> map = assignment.toMap();
+        Map<String,Integer> evidence = assignment.toEvidenceMap();
+        assertEquals(layout.numNodes(), map.size());
+        assertEquals(layout.numNodes()-layout.numCompanies(), evidence.size());
+        for(int node = 0; node < layout.numNodes(); node++) {
+            String label = layout.label(node);
+            assertEquals(node, layout.nodeIndex(label));
+            assertEquals(assignment.get(node), (int)map.get(label));
+            if(layout.isFuture(node)) assertFalse(evidence.containsKey(label));
+            else assertEquals(assignment.get(node), (int)evidence.get(label));
+        }
+    }
+
+    @Test
+    public void seriesStepsMatchTheUpDownBits() {
+        PriceSnapshot data = TestPrices.randomWalk(13, 300, 2);
+        for(int numLayers : new int[]{2, 4, 9}) {
+            TimeGraphLayout layout = new TimeGraphLayout(data.getPrices().getSymbols(), numLayers);
+            AssignmentSeries series = new AssignmentSeries(data.getUpDown(), layout, numLayers, 300-numLayers);
+            Assignment into = new Assignment(layout);
+            for(int t = 0; t < series.size(); t++) {
+                series.get(t, into);
+                for(int node = 0; node < layout.numNodes(); node++) {
+                    int row = numLayers+t-numLayers+layout.layer(node);
+                    assertEquals(data.getUpDown().get(layout.company(node), row), into.get(node));
+                    assertEquals(into.get(node), series.get(t, node));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the closed form against the network it replaces, built by hand: add-alpha
+ * conditional tables counted over the window, and future marginals by enumerating every
+ * joint value of the future nodes under the product of all factors with the history observed.
+ */
+public class ClosedFormMarginalsTest {
+    private static final double ALPHA = 0.5;
+    private static final int WINDOW = 12;
+
+    @Test
+    public void denseNetwork() {
+        check(new TimeGraphDataset(TestPrices.randomWalk(4, 80, 3), 3), false);
+    }
+
+    @Test
+    public void sparseNetwork() {
+        check(new TimeGraphDataset(TestPrices.randomWalk(6, 80, 4), 3, 2), false);
+    }
+
+    @Test
+    public void correlationPrunedNetwork() {
+        TimeGraphDataset dataset = new TimeGraphDataset(TestPrices.randomWalk(6, 80, 4), 3, 2, CrossEdges.Score.CORRELATION);
+        CrossEdges expected = CrossEdges.select(dataset.getTrainingAssignments(), 2, CrossEdges.Score.CORRELATION);
+        for(int c = 0; c < dataset.getLayout().numCompanies(); c++) {
+            assertArrayEquals(expected.parents(c), dataset.getCrossEdges().parents(c));
+        }
+        check(dataset, false);
+    }
+
+    @Test
+    public void offHeapWeights() {
+        check(new TimeGraphDataset(TestPrices.randomWalk(4, 80, 5), 4), true);
+    }
+
+    private static void check(TimeGraphDataset dataset, boolean offHeap) {
+        OnlineTimeGraphModel model = new OnlineTimeGraphModel(dataset.getClosedForm(), ALPHA, WINDOW, offHeap);
+        AssignmentSeries training = dataset.getTrainingAssignments();
+        for(int t = 0; t < training.size(); t++) {
+            model.observe(training.get(t));
+            if(t==WINDOW/2||t==training.size()-1) {
+                checkWeights(model);
+                checkMarginals(model, dataset.getTestAssignments());
+            }
+        }
+    }
+
+    private static void checkWeights(OnlineTimeGraphModel model) {
+        TimeGraphFactors factors = model.getFactors();
+        for(int f = 0; f < factors.numFactors(); f++) {
+            int rows = factors.isUnary(f) ? 1 : 2;
+            for(int u = 0; u < rows; u++) {
+                long[] n = new long[2];
+                for(int i = 0; i < model.numObservations(); i++) {
+                    Assignment observation = model.observation(i);
+                    if(factors.isUnary(f)) n[observation.get(factors.first(f))]++;
+                    else if(observation.get(factors.first(f))==u) n[observation.get(factors.second(f))]++;
+                }
+                for(int v = 0; v < 2; v++) {
+                    double expected = (n[v]+ALPHA)/(n[0]+n[1]+2*ALPHA);
+                    int cell = factors.offset(f)+2*u+v;
+                    assertEquals("factor "+f+" cell "+cell, expected, Math.exp(model.logWeight(cell)), 1e-12);
+                    assertEquals(n[v], model.getCounts().count(cell));
+                }
+            }
+        }
+    }
+
+    private static void checkMarginals(OnlineTimeGraphModel model, AssignmentSeries evidence) {
+        TimeGraphFactors factors = model.getFactors();
+        TimeGraphLayout layout = factors.getLayout();
+        int numCompanies = layout.numCompanies();
+        double[] actual = new double[numCompanies];
+        for(int t = 0; t < evidence.size(); t++) {
+            Assignment assignment = evidence.get(t);
+            model.futureMarginals(assignment, actual);
+            double total = 0d;
+            double[] up = new double[numCompanies];
+            for(int futures = 0; futures < 1 << numCompanies; futures++) {
+                for(int c = 0; c < numCompanies; c++) {
+                    assignment.set(layout.futureNode(c), (futures >>> c) & 1);
+                }
+                double logScore = 0d;
+                for(int f = 0; f < factors.numFactors(); f++) {
+                    logScore+=model.logWeight(factors.cell(f, assignment));
+                }
+                double score = Math.exp(logScore);
+                total+=score;
+                for(int c = 0; c < numCompanies; c++) {
+                    if(assignment.future(c)==1) up[c]+=score;
+                }
+            }
+            for(int c = 0; c < numCompanies; c++) {
+                assertEquals("step "+t+" company "+c, up[c]/total, actual[c], 1e-12);
+            }
+        }
+    }
+}
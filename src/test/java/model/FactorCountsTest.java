@@ -0,0 +1,63 @@
+package model;
+
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class FactorCountsTest {
+    @Test
+    public void parallelCountsEqualSequentialCounts() {
+        TimeGraphDataset dataset = new TimeGraphDataset(TestPrices.randomWalk(9, 2000, 6), 3, 4);
+        TimeGraphFactors factors = dataset.getClosedForm().getFactors();
+        AssignmentSeries series = dataset.getAllAssignments();
+        FactorCounts sequential = new FactorCounts(factors);
+        Assignment assignment = new Assignment(factors.getLayout());
+        for(int t = 0; t < series.size(); t++) {
+            sequential.add(series.get(t, assignment));
+        }
+        FactorCounts batch = new FactorCounts(factors);
+        batch.addAll(series);
+        assertArrayEquals(sequential.toArray(), batch.toArray());
+        for(int parallelism : new int[]{1, 2, 3, 8}) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                for(int size : new int[]{0, 1, 17, series.size()}) {
+                    FactorCounts expected = new FactorCounts(factors);
+                    expected.addAll(series.subSeries(0, size));
+                    FactorCounts parallel = new FactorCounts(factors);
+                    parallel.addAll(series.subSeries(0, size), pool);
+                    assertArrayEquals("parallelism "+parallelism+" size "+size, expected.toArray(), parallel.toArray());
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void observeAllMatchesObservingEveryStep() {
+        TimeGraphDataset dataset = new TimeGraphDataset(TestPrices.randomWalk(7, 600, 7), 3);
+        AssignmentSeries series = dataset.getAllAssignments();
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            for(int window : new int[]{1, 50, series.size()+10}) {
+                OnlineTimeGraphModel stepwise = new OnlineTimeGraphModel(dataset.getClosedForm(), 1d, window, false);
+                for(int t = 0; t < series.size(); t++) stepwise.observe(series.get(t));
+                OnlineTimeGraphModel batch = new OnlineTimeGraphModel(dataset.getClosedForm(), 1d, window, false);
+                batch.observeAll(series, pool);
+                assertArrayEquals(stepwise.getCounts().toArray(), batch.getCounts().toArray());
+                for(int cell = 0; cell < dataset.getClosedForm().getFactors().numCells(); cell++) {
+                    assertEquals(stepwise.logWeight(cell), batch.logWeight(cell), 0d);
+                }
+                assertEquals(stepwise.numObservations(), batch.numObservations());
+                for(int i = 0; i < stepwise.numObservations(); i++) {
+                    assertEquals(stepwise.observation(i), batch.observation(i));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class FrozenTimeGraphModelTest {
+    private static OnlineTimeGraphModel trained(TimeGraphDataset dataset, boolean offHeap) {
+        OnlineTimeGraphModel model = new OnlineTimeGraphModel(dataset.getClosedForm(), 1d, 20, offHeap);
+        AssignmentSeries training = dataset.getTrainingAssignments();
+        for(int t = 0; t < training.size(); t++) model.observe(training.get(t));
+        return model;
+    }
+
+    // counts, log weights and marginals of every test step
+    private static void assertSameState(String message, OnlineTimeGraphModel expected, OnlineTimeGraphModel actual, AssignmentSeries evidence) {
+        int numCells = expected.getFactors().numCells();
+        for(int cell = 0; cell < numCells; cell++) {
+            assertEquals(message, expected.getCounts().count(cell), actual.getCounts().count(cell));
+            assertEquals(message, expected.logWeight(cell), actual.logWeight(cell), 0d);
+        }
+        int numCompanies = expected.getFactors().getLayout().numCompanies();
+        for(int t = 0; t < evidence.size(); t++) {
+            assertArrayEquals(message, expected.futureMarginals(evidence.get(t), new double[numCompanies]),
+                    actual.futureMarginals(evidence.get(t), new double[numCompanies]), 0d);
+        }
+    }
+
+    private static void assertSameState(String message, OnlineTimeGraphModel expected, FrozenTimeGraphModel actual, AssignmentSeries evidence) {
+        int numCells = expected.getFactors().numCells();
+        for(int cell = 0; cell < numCells; cell++) {
+            assertEquals(message, expected.getCounts().count(cell), actual.count(cell));
+            assertEquals(message, expected.logWeight(cell), actual.logWeight(cell), 0d);
+        }
+        int numCompanies = expected.getFactors().getLayout().numCompanies();
+        for(int t = 0; t < evidence.size(); t++) {
+            assertArrayEquals(message, expected.futureMarginals(evidence.get(t), new double[numCompanies]),
+                    actual.futureMarginals(evidence.get(t), new double[numCompanies]), 0d);
+        }
+    }
+
+    @Test
+    public void overlaysObservingDifferentStepsChangeNeitherBaseNorEachOther() {
+        TimeGraphDataset dataset = new TimeGraphDataset(TestPrices.randomWalk(6, 300, 21), 3);
+        AssignmentSeries test = dataset.getTestAssignments();
+        for(boolean offHeap : new boolean[]{false, true}) {
+            String heap = offHeap ? "off heap" : "on heap";
+            OnlineTimeGraphModel base = trained(dataset, offHeap);
+            FrozenTimeGraphModel frozen = base.freeze();
+            assertEquals(offHeap, frozen.isOffHeap());
+            OnlineTimeGraphModel first = frozen.overlay();
+            OnlineTimeGraphModel second = frozen.overlay();
+            // the same steps observed by models that share nothing
+            OnlineTimeGraphModel firstExpected = trained(dataset, offHeap);
+            OnlineTimeGraphModel secondExpected = trained(dataset, offHeap);
+            for(int t = 0; t < 30; t++) {
+                first.observe(test.get(t));
+                firstExpected.observe(test.get(t));
+                second.observe(test.get(test.size()-1-t));
+                secondExpected.observe(test.get(test.size()-1-t));
+            }
+            assertSameState(heap+" base", base, frozen, test);
+            assertSameState(heap+" first overlay", firstExpected, first, test);
+            assertSameState(heap+" second overlay", secondExpected, second, test);
+            // a third overlay still starts from the untouched base
+            assertSameState(heap+" new overlay", base, frozen.overlay(), test);
+        }
+    }
+
+    @Test
+    public void concurrentOverlaysMatchTheirSequentialRuns() throws Exception {
+        TimeGraphDataset dataset = new TimeGraphDataset(TestPrices.randomWalk(6, 300, 22), 3);
+        AssignmentSeries test = dataset.getTestAssignments();
+        int numOverlays = 8;
+        for(boolean offHeap : new boolean[]{false, true}) {
+            String heap = offHeap ? "off heap" : "on heap";
+            OnlineTimeGraphModel base = trained(dataset, offHeap);
+            FrozenTimeGraphModel frozen = base.freeze();
+            ExecutorService executor = Executors.newFixedThreadPool(numOverlays);
+            try {
+                List<Future<OnlineTimeGraphModel>> futures = new ArrayList<>();
+                for(int i = 0; i < numOverlays; i++) {
+                    final int offset = i;
+                    futures.add(executor.submit(() -> {
+                        OnlineTimeGraphModel overlay = frozen.overlay();
+                        for(int t = offset; t < test.size(); t += numOverlays) overlay.observe(test.get(t));
+                        return overlay;
+                    }));
+                }
+                for(int i = 0; i < numOverlays; i++) {
+                    OnlineTimeGraphModel expected = trained(dataset, offHeap);
+                    for(int t = i; t < test.size(); t += numOverlays) expected.observe(test.get(t));
+                    assertSameState(heap+" overlay "+i, expected, futures.get(i).get(), test);
+                }
+            } finally {
+                executor.shutdown();
+            }
+            assertSameState(heap+" base", base, frozen, test);
+        }
+    }
+}
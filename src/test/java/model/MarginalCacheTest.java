@@ -0,0 +1,130 @@
+package model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class MarginalCacheTest {
+    private static OnlineTimeGraphModel trained(TimeGraphDataset dataset) {
+        OnlineTimeGraphModel model = new OnlineTimeGraphModel(dataset.getClosedForm(), 1d, 50, false);
+        AssignmentSeries training = dataset.getTrainingAssignments();
+        for(int t = 0; t < training.size(); t++) model.observe(training.get(t));
+        return model;
+    }
+
+    private static Assignment randomEvidence(TimeGraphLayout layout, Random random) {
+        Assignment assignment = new Assignment(layout);
+        for(int c = 0; c < layout.numCompanies(); c++) assignment.setCompany(c, random.nextLong());
+        return assignment;
+    }
+
+    @Test
+    public void hitsMatchDirectMarginals() {
+        TimeGraphDataset dataset = new TimeGraphDataset(TestPrices.randomWalk(6, 400, 11), 3);
+        OnlineTimeGraphModel model = trained(dataset);
+        MarginalCache cache = new MarginalCache(model);
+        AssignmentSeries test = dataset.getTestAssignments();
+        double[] cached = new double[6];
+        double[] direct = new double[6];
+        for(int pass = 0; pass < 2; pass++) {
+            for(int t = 0; t < test.size(); t++) {
+                cache.futureMarginals(test.get(t), cached);
+                model.futureMarginals(test.get(t), direct);
+                assertArrayEquals(direct, cached, 0d);
+            }
+        }
+        // 6 companies leave at most 64 patterns, so the second pass only hits
+        assertTrue(cache.size()<=64);
+        assertEquals(cache.size(), cache.getMisses());
+        assertEquals(2*test.size()-cache.size(), cache.getHits());
+    }
+
+    @Test
+    public void observeDropsEveryEntry() {
+        TimeGraphDataset dataset = new TimeGraphDataset(TestPrices.randomWalk(6, 400, 12), 3);
+        OnlineTimeGraphModel model = trained(dataset);
+        MarginalCache cache = new MarginalCache(model);
+        AssignmentSeries test = dataset.getTestAssignments();
+        double[] cached = new double[6];
+        double[] direct = new double[6];
+        for(int t = 0; t < test.size(); t++) cache.futureMarginals(test.get(t), cached);
+        assertTrue(cache.size()>1);
+
+        model.observe(test.get(0));
+        cache.futureMarginals(test.get(1), cached);
+        assertEquals(1, cache.getInvalidations());
+        assertEquals(1, cache.size());
+        model.futureMarginals(test.get(1), direct);
+        assertArrayEquals(direct, cached, 0d);
+    }
+
+    @Test
+    public void sizeStaysAtCapacityAndRecentEntriesSurvive() {
+        TimeGraphDataset dataset = new TimeGraphDataset(TestPrices.randomWalk(16, 200, 13), 2);
+        OnlineTimeGraphModel model = trained(dataset);
+        TimeGraphLayout layout = dataset.getLayout();
+        int capacity = 32;
+        MarginalCache cache = new MarginalCache(model, capacity);
+        Random random = new Random(14);
+        Assignment[] hot = new Assignment[4];
+        for(int i = 0; i < hot.length; i++) hot[i]=randomEvidence(layout, random);
+        double[] out = new double[layout.numCompanies()];
+        int rounds = 500;
+        long hotHits = 0;
+        for(int round = 0; round < rounds; round++) {
+            for(Assignment evidence : hot) {
+                long before = cache.getHits();
+                cache.futureMarginals(evidence, out);
+                hotHits+=cache.getHits()-before;
+            }
+            // a stream of patterns that are never seen again
+            for(int i = 0; i < 4; i++) cache.futureMarginals(randomEvidence(layout, random), out);
+            assertTrue(cache.size()<=capacity);
+        }
+        assertEquals(capacity, cache.size());
+        assertTrue(cache.getEvictions()>1000);
+        // hash order eviction would drop the hot patterns as often as the cold ones
+        assertTrue("hot hits "+hotHits, hotHits>=0.98*(rounds-1)*hot.length);
+    }
+
+    @Test
+    public void concurrentLookupsStayCorrectAndBounded() throws Exception {
+        TimeGraphDataset dataset = new TimeGraphDataset(TestPrices.randomWalk(12, 200, 15), 2);
+        OnlineTimeGraphModel model = trained(dataset);
+        TimeGraphLayout layout = dataset.getLayout();
+        int capacity = 64;
+        int numThreads = 4;
+        MarginalCache cache = new MarginalCache(model, capacity);
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for(int thread = 0; thread < numThreads; thread++) {
+                long seed = thread;
+                futures.add(pool.submit(()->{
+                    Random random = new Random(seed);
+                    double[] cached = new double[layout.numCompanies()];
+                    double[] direct = new double[layout.numCompanies()];
+                    for(int i = 0; i < 5000; i++) {
+                        Assignment evidence = randomEvidence(layout, random);
+                        cache.futureMarginals(evidence, cached);
+                        model.futureMarginals(evidence, direct);
+                        assertArrayEquals(direct, cached, 0d);
+                        // an insert holds its map entry briefly before taking a slot
+                        assertTrue(cache.size()<=capacity+numThreads);
+                    }
+                }));
+            }
+            for(Future<?> future : futures) future.get();
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(capacity, cache.size());
+    }
+}
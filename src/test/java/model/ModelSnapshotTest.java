@@ -0,0 +1,87 @@
+package model;
+
+import data.PriceMatrix;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class ModelSnapshotTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private OnlineTimeGraphModel trained(TimeGraphDataset dataset, boolean offHeap) {
+        OnlineTimeGraphModel model = new OnlineTimeGraphModel(dataset.getClosedForm(), 1d, 25, offHeap);
+        AssignmentSeries training = dataset.getTrainingAssignments();
+        for(int t = 0; t < training.size(); t++) model.observe(training.get(t));
+        return model;
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        TimeGraphDataset dataset = new TimeGraphDataset(TestPrices.randomWalk(11, 200, 8), 3, 3);
+        for(boolean offHeap : new boolean[]{false, true}) {
+            OnlineTimeGraphModel model = trained(dataset, offHeap);
+            Assignment latest = dataset.getTestAssignments().get(0);
+            PriceMatrix prices = dataset.getTestStockPrices();
+            File file = folder.newFile();
+            new ModelSnapshot(model, latest, prices).write(file);
+            assertTrue(ModelSnapshot.isSnapshot(file));
+
+            ModelSnapshot loaded = ModelSnapshot.load(file);
+            OnlineTimeGraphModel copy = loaded.getModel();
+            assertEquals(model.getAlpha(), copy.getAlpha(), 0d);
+            assertEquals(model.getWindowSize(), copy.getWindowSize());
+            assertArrayEquals(model.getCounts().toArray(), copy.getCounts().toArray());
+            for(int cell = 0; cell < model.getFactors().numCells(); cell++) {
+                assertEquals(model.logWeight(cell), copy.logWeight(cell), 0d);
+            }
+            assertEquals(model.numObservations(), copy.numObservations());
+            for(int i = 0; i < model.numObservations(); i++) {
+                assertEquals(model.observation(i), copy.observation(i));
+            }
+            assertEquals(latest, loaded.getLatest());
+            assertEquals(prices.getSymbols(), loaded.getPrices().getSymbols());
+            assertEquals(prices.size(), loaded.getPrices().size());
+            for(int r = 0; r < prices.size(); r++) {
+                assertEquals(prices.date(r), loaded.getPrices().date(r));
+                for(int s = 0; s < prices.numSymbols(); s++) {
+                    assertEquals(prices.price(s, r), loaded.getPrices().price(s, r), 0d);
+                }
+            }
+            assertEquals(0d, ModelSnapshot.maxMarginalDifference(model, copy, dataset.getTestAssignments()), 0d);
+
+            // the loaded model keeps learning like the original
+            AssignmentSeries test = dataset.getTestAssignments();
+            for(int t = 0; t < test.size(); t++) {
+                model.observe(test.get(t));
+                copy.observe(test.get(t));
+            }
+            assertArrayEquals(model.getCounts().toArray(), copy.getCounts().toArray());
+            assertEquals(0d, ModelSnapshot.maxMarginalDifference(model, copy, test), 0d);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptedWeightsAreRejected() throws IOException {
+        TimeGraphDataset dataset = new TimeGraphDataset(TestPrices.randomWalk(5, 120, 9), 3);
+        OnlineTimeGraphModel model = trained(dataset, false);
+        File file = folder.newFile();
+        new ModelSnapshot(model, null, null).write(file);
+        // flip a bit of the last log weight, which sits right before the window
+        long windowBytes = 8L*model.numObservations()*model.getFactors().getLayout().numWords();
+        try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long position = raf.length()-windowBytes-1;
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 1);
+        }
+        ModelSnapshot.load(file);
+    }
+}
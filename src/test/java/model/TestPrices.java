@@ -0,0 +1,32 @@
+package model;
+
+import data.PriceMatrix;
+import data.PriceSnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeded random walk prices for the tests.
+ */
+public class TestPrices {
+    public static PriceSnapshot randomWalk(int numSymbols, int numRows, long seed) {
+        Random random = new Random(seed);
+        List<String> symbols = new ArrayList<>();
+        double[][] columns = new double[numSymbols][numRows];
+        String[] dates = new String[numRows];
+        for(int s = 0; s < numSymbols; s++) {
+            symbols.add("S"+s);
+            double price = 100d;
+            for(int r = 0; r < numRows; r++) {
+                price+=random.nextGaussian();
+                columns[s][r]=price;
+            }
+        }
+        for(int r = 0; r < numRows; r++) {
+            dates[r]="2017-01-"+r;
+        }
+        return PriceSnapshot.fromPrices(new PriceMatrix(symbols, columns, dates, numRows));
+    }
+}
@@ -0,0 +1,70 @@
+package model.inference;
+
+import model.*;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class InferenceEngineTest {
+    private static OnlineTimeGraphModel trained(TimeGraphDataset dataset, boolean offHeap) {
+        OnlineTimeGraphModel model = new OnlineTimeGraphModel(dataset.getClosedForm(), 1d, 20, offHeap);
+        AssignmentSeries training = dataset.getTrainingAssignments();
+        for(int t = 0; t < training.size(); t++) model.observe(training.get(t));
+        return model;
+    }
+
+    // every fifth history node missing
+    private static Assignment observed(TimeGraphLayout layout) {
+        Assignment observed = new Assignment(layout);
+        for(int node = 0; node < layout.numNodes(); node++) {
+            if(!layout.isFuture(node)&&node%5!=0) observed.set(node, 1);
+        }
+        return observed;
+    }
+
+    @Test
+    public void arenaAndHeapGiveTheSameMarginals() {
+        TimeGraphDataset dataset = new TimeGraphDataset(TestPrices.randomWalk(8, 160, 11), 3, 3);
+        TimeGraphFactors factors = dataset.getClosedForm().getFactors();
+        OnlineTimeGraphModel heap = trained(dataset, false);
+        OnlineTimeGraphModel offHeap = trained(dataset, true);
+        assertTrue(offHeap.isOffHeap());
+        Assignment observed = observed(dataset.getLayout());
+        InferenceEngine[][] engines = {
+                {new LoopyBeliefPropagation(factors), new LoopyBeliefPropagation(factors)},
+                {new GibbsSampler(factors, 5), new GibbsSampler(factors, 5)}
+        };
+        int numCompanies = dataset.getLayout().numCompanies();
+        double[] expected = new double[numCompanies];
+        double[] actual = new double[numCompanies];
+        AssignmentSeries test = dataset.getTestAssignments();
+        for(InferenceEngine[] pair : engines) {
+            for(int t = 0; t < test.size(); t++) {
+                heap.futureMarginals(pair[0], test.get(t), observed, expected);
+                offHeap.futureMarginals(pair[1], test.get(t), observed, actual);
+                assertArrayEquals(expected, actual, 0d);
+            }
+        }
+    }
+
+    @Test
+    public void fullyObservedHistoryIsExact() {
+        TimeGraphDataset dataset = new TimeGraphDataset(TestPrices.randomWalk(6, 160, 12), 4);
+        TimeGraphFactors factors = dataset.getClosedForm().getFactors();
+        int numCompanies = dataset.getLayout().numCompanies();
+        double[] expected = new double[numCompanies];
+        double[] actual = new double[numCompanies];
+        for(boolean offHeap : new boolean[]{false, true}) {
+            OnlineTimeGraphModel model = trained(dataset, offHeap);
+            InferenceEngine[] engines = {new LoopyBeliefPropagation(factors), new GibbsSampler(factors, 0, 1, 6)};
+            AssignmentSeries test = dataset.getTestAssignments();
+            for(InferenceEngine engine : engines) {
+                for(int t = 0; t < test.size(); t++) {
+                    model.futureMarginals(test.get(t), expected);
+                    model.futureMarginals(engine, test.get(t), null, actual);
+                    assertArrayEquals(expected, actual, 1e-9);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package model.streaming;
+
+import data.PriceMatrix;
+import data.PriceSnapshot;
+import finance.Trade;
+import model.*;
+import model.inference.LoopyBeliefPropagation;
+import model.trade_policy.InferenceTradePolicy;
+import model.trade_policy.TradePolicy;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class StreamingPipelineTest {
+    private static final List<String> SYMBOLS = Arrays.asList("a", "b");
+
+    @Test
+    public void emptyCellsAreMissingPrices() throws IOException {
+        double[] prices = new double[3];
+        Bar bar = CsvBars.parse("2017-01-01,1.5,,", prices);
+        assertEquals("2017-01-01", bar.getDate());
+        assertEquals(1.5, prices[0], 0d);
+        assertTrue(Double.isNaN(prices[1]));
+        assertTrue(Double.isNaN(prices[2]));
+    }
+
+    @Test
+    public void missingBarsLeaveTheirMovementsUnobserved() {
+        TimeGraphLayout layout = new TimeGraphLayout(SYMBOLS, 3);
+        MovementWindow window = new MovementWindow(layout, new int[]{0, 1});
+        double[][] bars = {{1, 1}, {2, 1}, {3, 2}, {2, 3}};
+        for(double[] bar : bars) window.push(bar);
+        assertTrue(window.isFull());
+        assertTrue(window.isComplete());
+        // b has no bar: its movement into this bar and out of it are unknown
+        window.push(new double[]{3, Double.NaN});
+        assertFalse(window.isComplete());
+        Assignment observed = window.fillObserved(new Assignment(layout));
+        assertEquals(1, observed.get(layout.node(0, 1)));
+        assertEquals(1, observed.get(layout.node(0, 2)));
+        assertEquals(0, observed.get(layout.futureNode(0)));
+        assertEquals(1, observed.get(layout.node(1, 2)));
+        window.push(new double[]{4, 5});
+        window.fillObserved(observed);
+        assertEquals(0, observed.get(layout.node(1, 2)));
+        assertEquals(1, observed.get(layout.node(1, 1)));
+        window.push(new double[]{5, 6});
+        window.push(new double[]{6, 7});
+        assertFalse(window.isComplete());
+        window.push(new double[]{7, 6});
+        assertTrue(window.isComplete());
+        Assignment assignment = window.fill(new Assignment(layout));
+        assertEquals(0, assignment.future(1));
+        assertEquals(1, assignment.get(layout.node(1, 2)));
+    }
+
+    @Test
+    public void tradingWaitsForEveryCompanyToHaveAPrice() {
+        TimeGraphLayout layout = new TimeGraphLayout(SYMBOLS, 2);
+        MovementWindow window = new MovementWindow(layout, new int[]{0, 1});
+        for(int t = 0; t < 5; t++) window.push(new double[]{t, Double.NaN});
+        assertFalse(window.isFull());
+        window.push(new double[]{5, 1});
+        assertTrue(window.isFull());
+    }
+
+    private static StreamingPipeline pipeline(TimeGraphDataset dataset, PriceMatrix prices, boolean approximate) {
+        return new StreamingPipeline(new ReplaySource(prices), dataset.getLayout(), 100000d, 1d, portfolio->{
+            InferenceTradePolicy policy = new InferenceTradePolicy(portfolio, new OnlineTimeGraphModel(dataset.getClosedForm(), 2d, 7), 0.5, 0.5);
+            if(approximate) policy.setInferenceEngine(new LoopyBeliefPropagation(dataset.getClosedForm().getFactors()));
+            return policy;
+        });
+    }
+
+    // every seventh price of the first symbol missing
+    private static PriceMatrix withGaps(PriceMatrix prices) {
+        double[][] columns = new double[prices.numSymbols()][prices.size()];
+        for(int s = 0; s < columns.length; s++) {
+            for(int r = 0; r < prices.size(); r++) {
+                columns[s][r] = s==0&&r%7==3 ? Double.NaN : prices.price(s, r);
+            }
+        }
+        return new PriceMatrix(prices.getSymbols(), columns, prices.size());
+    }
+
+    @Test
+    public void approximateEngineInfersMissingHistory() {
+        PriceSnapshot data = TestPrices.randomWalk(5, 200, 14);
+        TimeGraphDataset dataset = new TimeGraphDataset(data, 3);
+        PriceMatrix gaps = withGaps(data.getPrices());
+        StreamingPipeline pipeline = pipeline(dataset, gaps, true);
+        int traded = 0;
+        for(int r = 0; r < gaps.size(); r++) {
+            double[] row = gaps.row(r, new double[gaps.numSymbols()]);
+            List<Trade> trades = pipeline.process(new Bar(null, row));
+            for(Trade trade : trades) assertFalse(Double.isNaN(trade.getAmount()));
+            traded+=trades.size();
+        }
+        assertTrue(traded>0);
+        assertFalse(Double.isNaN(pipeline.rateOfReturn()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void exactInferenceRejectsMissingHistory() throws Exception {
+        PriceSnapshot data = TestPrices.randomWalk(5, 200, 14);
+        TimeGraphDataset dataset = new TimeGraphDataset(data, 3);
+        pipeline(dataset, withGaps(data.getPrices()), false).run();
+    }
+
+    // records the observed mask of every step, null for complete steps
+    private static TradePolicy recording(List<Assignment> masks) {
+        return new TradePolicy() {
+            @Override
+            public List<Trade> getTrades(Assignment assignment, int idx) {
+                masks.add(null);
+                return Collections.emptyList();
+            }
+
+            @Override
+            public List<Trade> getTrades(Assignment assignment, Assignment observed, int idx) {
+                masks.add(observed.copy());
+                return Collections.emptyList();
+            }
+        };
+    }
+
+    @Test
+    public void onlyStepsWithMissingBarsCarryAMask() throws Exception {
+        PriceSnapshot data = TestPrices.randomWalk(5, 60, 15);
+        TimeGraphDataset dataset = new TimeGraphDataset(data, 3);
+        List<Assignment> masks = new ArrayList<>();
+        StreamingPipeline pipeline = new StreamingPipeline(new ReplaySource(withGaps(data.getPrices())), dataset.getLayout(), 1000d, 1d, portfolio->recording(masks));
+        pipeline.run();
+        assertEquals(pipeline.getNumSteps(), masks.size());
+        int complete = 0;
+        for(Assignment mask : masks) if(mask==null) complete++;
+        assertTrue(complete>0&&complete<masks.size());
+
+        masks.clear();
+        pipeline = new StreamingPipeline(new ReplaySource(data.getPrices()), dataset.getLayout(), 1000d, 1d, portfolio->recording(masks));
+        pipeline.run();
+        assertEquals(pipeline.getNumSteps(), masks.size());
+        for(Assignment mask : masks) assertNull(mask);
+    }
+}
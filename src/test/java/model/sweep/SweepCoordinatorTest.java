@@ -0,0 +1,73 @@
+package model.sweep;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SweepCoordinatorTest {
+    // Takes every JOB it is sent and never answers; reconnects when the coordinator drops it
+    private static Thread stalledWorker(int port, boolean reconnect, AtomicInteger jobs) {
+        Thread thread = new Thread(()->{
+            do {
+                try(Socket socket = new Socket("localhost", port);
+                    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while((line = in.readLine())!=null) {
+                        if(line.startsWith("JOB ")) jobs.incrementAndGet();
+                        if(line.equals("DONE")) return;
+                    }
+                } catch(IOException e) {
+                    return;
+                }
+            } while(reconnect);
+        }, "stalled-worker");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    @Test
+    public void unitTimeoutIsFiniteByDefault() throws IOException {
+        try(SweepCoordinator coordinator = new SweepCoordinator(0, 1000d)) {
+            assertTrue(coordinator.getUnitTimeoutMillis()>0);
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void stalledPointsFailAfterTheirAttempts() throws Exception {
+        try(SweepCoordinator coordinator = new SweepCoordinator(0, 1000d)) {
+            coordinator.setUnitTimeoutMillis(200);
+            coordinator.setMaxAttempts(2);
+            AtomicInteger jobs = new AtomicInteger();
+            stalledWorker(coordinator.getPort(), true, jobs);
+            SweepReport report = coordinator.run(new SweepGrid(), null);
+            assertTrue(report.ranked().isEmpty());
+            assertEquals(1, coordinator.getFailures().size());
+            assertEquals(2, jobs.get());
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void runEndsWhenTheStalledWorkerNeverComesBack() throws Exception {
+        try(SweepCoordinator coordinator = new SweepCoordinator(0, 1000d)) {
+            coordinator.setUnitTimeoutMillis(200);
+            coordinator.setWorkerWaitMillis(500);
+            AtomicInteger jobs = new AtomicInteger();
+            stalledWorker(coordinator.getPort(), false, jobs);
+            try {
+                coordinator.run(new SweepGrid(), null);
+                fail("Expected the sweep to give up");
+            } catch(IllegalStateException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("1 of 1 sweep points are unsettled"));
+            }
+            assertEquals(1, jobs.get());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package model.walkforward;
+
+import data.PriceMatrix;
+import data.PriceSnapshot;
+import model.TimeGraphDataset;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class WalkForwardEvaluatorTest {
+    // random walks that agree on the first prefix rows and then continue from different seeds
+    private static PriceSnapshot walk(int numSymbols, int numRows, int prefix, long tailSeed) {
+        Random head = new Random(1);
+        Random tail = new Random(tailSeed);
+        List<String> symbols = new ArrayList<>();
+        double[][] columns = new double[numSymbols][numRows];
+        String[] dates = new String[numRows];
+        for(int s = 0; s < numSymbols; s++) symbols.add("S"+s);
+        double[] price = new double[numSymbols];
+        for(int r = 0; r < numRows; r++) {
+            Random random = r<prefix ? head : tail;
+            for(int s = 0; s < numSymbols; s++) {
+                price[s]+=random.nextGaussian();
+                columns[s][r]=100d+price[s];
+            }
+            dates[r]="d"+r;
+        }
+        return PriceSnapshot.fromPrices(new PriceMatrix(symbols, columns, dates, numRows));
+    }
+
+    private static List<FoldResult> run(PriceSnapshot data, int maxCrossParents, WalkForwardConfig config) {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            return new WalkForwardEvaluator(new TimeGraphDataset(data, 3, maxCrossParents), 10000d, pool).run(config).getResults();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void foldsDoNotSeePricesAfterTheirTestWindow() {
+        int numRows = 1200;
+        int prefix = 300;
+        WalkForwardConfig config = new WalkForwardConfig().trainSize(100).testSize(20).stepSize(20);
+        for(int maxCrossParents : new int[]{-1, 2}) {
+            List<FoldResult> a = run(walk(10, numRows, prefix, 2), maxCrossParents, config);
+            List<FoldResult> b = run(walk(10, numRows, prefix, 3), maxCrossParents, config);
+            assertEquals(a.size(), b.size());
+            int checked = 0;
+            for(int f = 0; f < a.size(); f++) {
+                // step t of the dataset ends on row t+numLayers
+                if(a.get(f).getFold().getTestEnd()+3>prefix) break;
+                assertEquals("parents "+maxCrossParents+" fold "+f, a.get(f).getRateOfReturn(), b.get(f).getRateOfReturn(), 0d);
+                checked++;
+            }
+            assertTrue(checked>=5);
+        }
+    }
+}
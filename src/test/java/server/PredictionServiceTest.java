@@ -0,0 +1,154 @@
+package server;
+
+import data.PriceSnapshot;
+import data.UpDownSeries;
+import finance.Portfolio;
+import finance.Trade;
+import model.*;
+import model.trade_policy.InferenceTradePolicy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class PredictionServiceTest {
+    private static final PriceSnapshot DATA = TestPrices.randomWalk(6, 120, 13);
+    private static final PredictionService SERVICE = new PredictionService(DATA, 3, 2d, 7, 1d, 1d, 1d);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static PredictionService.Prediction predict(Map<String,Double> holdings) {
+        return SERVICE.predict(Collections.emptyMap(), Collections.emptyList(), 1000d, holdings);
+    }
+
+    private static void assertSamePrediction(PredictionService.Prediction expected, PredictionService.Prediction actual) {
+        assertEquals(expected.getMarginals(), actual.getMarginals());
+        assertEquals(expected.toJson(), actual.toJson());
+    }
+
+    // The last numLayers-1 movements of every symbol, oldest first
+    private static Map<String,int[]> latestMovements(PriceSnapshot data, TimeGraphLayout layout) {
+        UpDownSeries upDown = data.getUpDown();
+        int numMovements = layout.getNumLayers()-1;
+        Map<String,int[]> observations = new HashMap<>();
+        for(String symbol : layout.getCompanies()) {
+            int id = data.getPrices().symbolId(symbol);
+            int[] movements = new int[numMovements];
+            for(int i = 0; i < numMovements; i++) movements[i]=upDown.get(id, upDown.size()-numMovements+i);
+            observations.put(symbol, movements);
+        }
+        return observations;
+    }
+
+    @Test
+    public void predictionsMatchTheBacktestPolicyInItsFinalState() {
+        TimeGraphDataset dataset = new TimeGraphDataset(DATA, 3);
+        TimeGraphLayout layout = dataset.getLayout();
+        Portfolio portfolio = new Portfolio(dataset.getTestStockPrices(), 1000d, 1d);
+        OnlineTimeGraphModel backtestModel = new OnlineTimeGraphModel(dataset.getClosedForm(), 2d, 7);
+        InferenceTradePolicy policy = new InferenceTradePolicy(portfolio, backtestModel, 1d, 1d);
+        portfolio.determineTrades(new TimeGraphAlgorithm(dataset.getTestAssignments()), policy);
+
+        OnlineTimeGraphModel model = SERVICE.getModel();
+        for(int cell = 0; cell < model.getFactors().numCells(); cell++) {
+            assertEquals(backtestModel.getCounts().count(cell), model.getCounts().count(cell));
+            assertEquals(backtestModel.logWeight(cell), model.logWeight(cell), 0d);
+        }
+
+        // the next step, asked of the backtest's policy holding the backtest's cash and shares
+        Map<String,int[]> observations = latestMovements(DATA, layout);
+        Assignment evidence = new Assignment(layout);
+        for(int c = 0; c < layout.numCompanies(); c++) {
+            int[] movements = observations.get(layout.getCompanies().get(c));
+            for(int layer = 1; layer < layout.getNumLayers(); layer++) evidence.set(layout.node(c, layer), movements[layer-1]);
+        }
+        Map<String,Double> holdings = new HashMap<>();
+        for(String symbol : layout.getCompanies()) {
+            double shares = portfolio.position(portfolio.getPrices().symbolId(symbol));
+            if(shares!=0d) holdings.put(symbol, shares);
+        }
+        assertFalse(holdings.isEmpty());
+        PredictionService.Prediction prediction = SERVICE.predict(Collections.emptyMap(), Collections.emptyList(), portfolio.getAvailableCash(), holdings);
+        assertSamePrediction(prediction, SERVICE.predict(observations, Collections.emptyList(), portfolio.getAvailableCash(), holdings));
+        double[] expected = backtestModel.futureMarginals(evidence, new double[layout.numCompanies()]);
+        for(int c = 0; c < layout.numCompanies(); c++) {
+            assertEquals(expected[c], prediction.getMarginals().get(layout.getCompanies().get(c)), 0d);
+        }
+
+        policy.setFrozen(true);
+        int last = dataset.getTestStockPrices().size()-1;
+        double cash = portfolio.getAvailableCash();
+        assertSameTrades(policy.getTrades(evidence, last), prediction.getTrades());
+        // the backtest ends fully invested, so also with cash to buy
+        portfolio.setAvailableCash(cash+1000d);
+        List<Trade> trades = policy.getTrades(evidence, last);
+        assertFalse(trades.isEmpty());
+        assertSameTrades(trades, SERVICE.predict(observations, Collections.emptyList(), cash+1000d, holdings).getTrades());
+    }
+
+    private static void assertSameTrades(List<Trade> expected, List<Trade> actual) {
+        assertEquals(expected.size(), actual.size());
+        for(int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getStock(), actual.get(i).getStock());
+            assertEquals(expected.get(i).getAmount(), actual.get(i).getAmount(), 0d);
+        }
+    }
+
+    @Test
+    public void serviceFromSnapshotAnswersLikeTheTrainedOne() throws IOException {
+        File file = folder.newFile();
+        SERVICE.snapshot().write(file);
+        PredictionService loaded = new PredictionService(ModelSnapshot.load(file), 1d, 1d, 1d);
+        Map<String,Double> holdings = new HashMap<>();
+        holdings.put("S0", 2d);
+        holdings.put("S3", 5d);
+        Random random = new Random(14);
+        for(int i = 0; i < 20; i++) {
+            Map<String,int[]> observations = new HashMap<>();
+            for(String symbol : SERVICE.getLayout().getCompanies()) {
+                if(random.nextBoolean()) observations.put(symbol, new int[]{random.nextInt(2), random.nextInt(2)});
+            }
+            List<String> symbols = i%2==0 ? Collections.emptyList() : Arrays.asList("S5", "S1");
+            assertSamePrediction(SERVICE.predict(observations, symbols, 1000d, holdings), loaded.predict(observations, symbols, 1000d, holdings));
+            assertSamePrediction(SERVICE.predict(observations, symbols, 50d, Collections.emptyMap()), loaded.predict(observations, symbols, 50d, Collections.emptyMap()));
+        }
+    }
+
+    @Test
+    public void holdingsAreAccepted() {
+        Map<String,Double> holdings = new HashMap<>();
+        holdings.put("S1", 3d);
+        holdings.put("S2", 0d);
+        assertEquals(6, predict(holdings).getMarginals().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeHoldingIsRejected() {
+        predict(Collections.singletonMap("S1", -1d));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonFiniteHoldingIsRejected() {
+        predict(Collections.singletonMap("S1", Double.NaN));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownSymbolIsRejected() {
+        predict(Collections.singletonMap("nope", 1d));
+    }
+
+    @Test
+    public void symbolsAreEscaped() {
+        Map<String,Double> marginals = new LinkedHashMap<>();
+        marginals.put("a\"b\\c\n", 0.5);
+        List<Trade> trades = Collections.singletonList(new Trade(0, "x\"y", 2d));
+        String json = new PredictionService.Prediction(marginals, trades).toJson();
+        assertEquals("{\"marginals\":{\"a\\\"b\\\\c\\u000a\":0.5},\"trades\":[{\"symbol\":\"x\\\"y\",\"shares\":2.0}]}", json);
+    }
+}